@@ -1,15 +1,35 @@
 package http_client;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import kv.VersionedValue;
+import service.task.exceptions.ManagerSaveException;
+
 import java.io.IOException;
+import java.lang.reflect.Type;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class KVTaskClient {
     private URI KVServerURI;
     private String api_token;
     private HttpClient client;
+    private final Map<String, KeyPuts> keyToPuts = new HashMap<>();
+    private final Gson gson = new Gson();
+    private final Type valuesType = new TypeToken<Map<String, String>>() {
+    }.getType();
+    private boolean isBatchInFlight;
+    private Map<String, String> nextBatch;
+    private CompletableFuture<Boolean> nextBatchSent;
 
     public KVTaskClient(URI uri) {
         KVServerURI = uri;
@@ -26,9 +46,7 @@ public class KVTaskClient {
     }
 
     public void put(String key, String json) {
-        URI putUrl = URI.create(KVServerURI.toString() + "/save/" + key + "?API_TOKEN=" + api_token);
-        HttpRequest request = HttpRequest.newBuilder().uri(putUrl).POST(HttpRequest.BodyPublishers.ofString(json)).
-                build();
+        HttpRequest request = putRequest(key, json);
         try {
             client.send(request, HttpResponse.BodyHandlers.ofString());
         } catch (IOException | InterruptedException e) {
@@ -38,8 +56,7 @@ public class KVTaskClient {
     }
 
     public String load(String key) {
-        URI loadUrl = URI.create(KVServerURI.toString() + "/load/" + key + "?API_TOKEN=" + api_token);
-        HttpRequest request = HttpRequest.newBuilder().uri(loadUrl).GET().build();
+        HttpRequest request = loadRequest(key);
         HttpResponse<String> response;
         try {
             response = client.send(request, HttpResponse.BodyHandlers.ofString());
@@ -49,4 +66,244 @@ public class KVTaskClient {
         }
         return null;
     }
+
+    /**
+     * @return значение по ключу с его версией или null, если его нет или получить его не удалось
+     */
+    public VersionedValue loadVersioned(String key) {
+        HttpRequest request = loadRequest(key);
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                return null;
+            }
+            long version = VersionedValue.parseVersion(response.headers().firstValue("ETag").orElse("0"));
+            return new VersionedValue(response.body(), version);
+        } catch (IOException | InterruptedException | NumberFormatException e) {
+            System.out.println("Во время получения данных с сервера возникло исключение " + e);
+        }
+        return null;
+    }
+
+    /**
+     * @param expectedVersion версия ключа на сервере; 0 — ключа ещё нет
+     * @return новая версия ключа или -1, если на сервере другая версия
+     * @throws ManagerSaveException если запрос не удался или сервер ответил ошибкой
+     */
+    public long compareAndSet(String key, String json, long expectedVersion) {
+        try {
+            return compareAndSetAsync(key, json, expectedVersion).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof ManagerSaveException) {
+                throw (ManagerSaveException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Как {@link #compareAndSet}, но при ошибке future завершается с {@link ManagerSaveException}.
+     */
+    public CompletableFuture<Long> compareAndSetAsync(String key, String json, long expectedVersion) {
+        HttpRequest request = putRequestBuilder(key, json)
+                .header("If-Match", VersionedValue.formatVersion(expectedVersion))
+                .build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, e) -> {
+                    if (e != null) {
+                        throw new ManagerSaveException("Не удалось сохранить значение по ключу " + key
+                                + ", произошло исключение: " + e);
+                    }
+                    if (response.statusCode() == 409) {
+                        return -1L;
+                    }
+                    String etag = response.headers().firstValue("ETag").orElse(null);
+                    if (response.statusCode() != 200 || etag == null) {
+                        throw new ManagerSaveException("Сервер не сохранил значение по ключу " + key
+                                + ", код ответа " + response.statusCode());
+                    }
+                    try {
+                        return VersionedValue.parseVersion(etag);
+                    } catch (NumberFormatException ex) {
+                        throw new ManagerSaveException("Сервер вернул неверную версию ключа " + key + ": " + etag);
+                    }
+                });
+    }
+
+    /**
+     * Ошибка отправки, как и в {@link #put}, только выводится.
+     */
+    public CompletableFuture<Void> putAsync(String key, String json) {
+        return client.sendAsync(putRequest(key, json), HttpResponse.BodyHandlers.discarding())
+                .handle((response, e) -> {
+                    if (e != null) {
+                        System.out.println("Во время сохранения данных на сервере возникло исключение " + e);
+                    }
+                    return null;
+                });
+    }
+
+    public CompletableFuture<String> loadAsync(String key) {
+        return client.sendAsync(loadRequest(key), HttpResponse.BodyHandlers.ofString())
+                .handle((response, e) -> {
+                    if (e != null) {
+                        System.out.println("Во время получения данных с сервера возникло исключение " + e);
+                        return null;
+                    }
+                    return response.body();
+                });
+    }
+
+    /**
+     * По каждому ключу в пути не больше одного запроса; после ответа уходит только последнее из значений,
+     * переданных за это время.
+     */
+    public synchronized CompletableFuture<Void> putLatest(String key, String json) {
+        KeyPuts puts = keyToPuts.get(key);
+        if (puts == null) {
+            puts = new KeyPuts();
+            keyToPuts.put(key, puts);
+            CompletableFuture<Void> sent = new CompletableFuture<>();
+            send(key, json, sent);
+            return sent;
+        }
+        puts.nextJson = json;
+        if (puts.next == null) {
+            puts.next = new CompletableFuture<>();
+        }
+        return puts.next;
+    }
+
+    /**
+     * @return значения найденных ключей; пустой, если получить их не удалось
+     */
+    public Map<String, String> loadAll(Collection<String> keys) {
+        return loadAllAsync(keys).join();
+    }
+
+    public CompletableFuture<Map<String, String>> loadAllAsync(Collection<String> keys) {
+        URI loadUrl = URI.create(KVServerURI.toString() + "/mget?API_TOKEN=" + api_token);
+        HttpRequest request = HttpRequest.newBuilder().uri(loadUrl)
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(keys))).build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .handle((response, e) -> {
+                    if (e != null) {
+                        System.out.println("Во время получения данных с сервера возникло исключение " + e);
+                        return new LinkedHashMap<>();
+                    }
+                    try {
+                        Map<String, String> values = gson.fromJson(response.body(), valuesType);
+                        return values == null ? new LinkedHashMap<>() : values;
+                    } catch (JsonParseException ex) {
+                        System.out.println("Сервер вернул вместо значений " + response.body());
+                        return new LinkedHashMap<>();
+                    }
+                });
+    }
+
+    /**
+     * @return true, если сервер принял значения
+     */
+    public boolean putAll(Map<String, String> values) {
+        return putAllAsync(values).join();
+    }
+
+    /**
+     * Ошибка отправки выводится, а future завершается с false.
+     */
+    public CompletableFuture<Boolean> putAllAsync(Map<String, String> values) {
+        URI putUrl = URI.create(KVServerURI.toString() + "/mput?API_TOKEN=" + api_token);
+        HttpRequest request = HttpRequest.newBuilder().uri(putUrl)
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(values))).build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, e) -> {
+                    if (e != null) {
+                        System.out.println("Во время сохранения данных на сервере возникло исключение " + e);
+                        return false;
+                    }
+                    if (response.statusCode() != 200) {
+                        System.out.println("Сервер не сохранил значения, код ответа " + response.statusCode());
+                        return false;
+                    }
+                    return true;
+                });
+    }
+
+    /**
+     * В пути не больше одного пакета; пакеты, переданные за это время, объединяются и уходят одним запросом.
+     *
+     * @return true, если сервер принял пакет с values
+     */
+    public synchronized CompletableFuture<Boolean> putAllLatest(Map<String, String> values) {
+        if (!isBatchInFlight) {
+            isBatchInFlight = true;
+            CompletableFuture<Boolean> sent = new CompletableFuture<>();
+            sendBatch(new LinkedHashMap<>(values), sent);
+            return sent;
+        }
+        if (nextBatch == null) {
+            nextBatch = new LinkedHashMap<>();
+            nextBatchSent = new CompletableFuture<>();
+        }
+        nextBatch.putAll(values);
+        return nextBatchSent;
+    }
+
+    private void sendBatch(Map<String, String> values, CompletableFuture<Boolean> sent) {
+        putAllAsync(values).whenComplete((isSaved, e) -> {
+            sendNextBatch();
+            sent.complete(isSaved != null && isSaved);
+        });
+    }
+
+    private synchronized void sendNextBatch() {
+        if (nextBatch == null) {
+            isBatchInFlight = false;
+            return;
+        }
+        Map<String, String> values = nextBatch;
+        CompletableFuture<Boolean> sent = nextBatchSent;
+        nextBatch = null;
+        nextBatchSent = null;
+        sendBatch(values, sent);
+    }
+
+    private void send(String key, String json, CompletableFuture<Void> sent) {
+        putAsync(key, json).whenComplete((result, e) -> {
+            sendNext(key);
+            sent.complete(null);
+        });
+    }
+
+    private synchronized void sendNext(String key) {
+        KeyPuts puts = keyToPuts.get(key);
+        if (puts.next == null) {
+            keyToPuts.remove(key);
+            return;
+        }
+        CompletableFuture<Void> sent = puts.next;
+        String json = puts.nextJson;
+        puts.next = null;
+        puts.nextJson = null;
+        send(key, json, sent);
+    }
+
+    private HttpRequest putRequest(String key, String json) {
+        return putRequestBuilder(key, json).build();
+    }
+
+    private HttpRequest.Builder putRequestBuilder(String key, String json) {
+        URI putUrl = URI.create(KVServerURI.toString() + "/save/" + key + "?API_TOKEN=" + api_token);
+        return HttpRequest.newBuilder().uri(putUrl).POST(HttpRequest.BodyPublishers.ofString(json));
+    }
+
+    private HttpRequest loadRequest(String key) {
+        URI loadUrl = URI.create(KVServerURI.toString() + "/load/" + key + "?API_TOKEN=" + api_token);
+        return HttpRequest.newBuilder().uri(loadUrl).GET().build();
+    }
+
+    private static final class KeyPuts {
+        private String nextJson;
+        private CompletableFuture<Void> next;
+    }
 }
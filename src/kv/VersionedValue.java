@@ -0,0 +1,42 @@
+package kv;
+
+/**
+ * Каждая запись по ключу увеличивает его версию на единицу.
+ */
+public class VersionedValue {
+    private final String value;
+    private final long version;
+
+    public VersionedValue(String value, long version) {
+        this.value = value;
+        this.version = version;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Версия ключа передаётся в заголовках ETag и If-Match в кавычках, как того требует HTTP.
+     * Версия 0 в If-Match означает, что ключа ещё не должно быть.
+     */
+    public static String formatVersion(long version) {
+        return "\"" + version + "\"";
+    }
+
+    public static long parseVersion(String header) {
+        String version = header.trim();
+        if (version.length() > 1 && version.startsWith("\"") && version.endsWith("\"")) {
+            version = version.substring(1, version.length() - 1);
+        }
+        long parsed = Long.parseLong(version);
+        if (parsed < 0) {
+            throw new NumberFormatException("Отрицательная версия: " + header);
+        }
+        return parsed;
+    }
+}
@@ -6,19 +6,28 @@ import model.Status;
 import model.Subtask;
 import model.Task;
 import server.KVServer;
+import server.storage.InMemoryKVStorage;
+import server.storage.KVStorage;
+import server.storage.LogStructuredKVStorage;
 import service.Managers;
 import service.task.TaskManager;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
 
 public class Main {
+    private static final String DATA_DIR_OPTION = "--kv-data-dir";
 
+    /**
+     * С параметром {@code --kv-data-dir <каталог>} KVServer хранит значения на диске в этом каталоге,
+     * без него — в памяти.
+     */
     public static void main(String[] args) throws IOException, InterruptedException {
-        KVServer kvServer = new KVServer();
+        KVStorage storage = createStorage(args);
+        KVServer kvServer = new KVServer(null, storage);
         kvServer.start();
         KVTaskClient taskClient = new KVTaskClient(URI.create("http://localhost:8078"));
         taskClient.put("key1", "key1 value");
@@ -90,15 +99,31 @@ public class Main {
         System.out.println();
 
         kvServer.stop();
+        if (storage instanceof LogStructuredKVStorage) {
+            ((LogStructuredKVStorage) storage).close();
+        }
+    }
+
+    private static KVStorage createStorage(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (!DATA_DIR_OPTION.equals(args[i])) {
+                continue;
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("После " + DATA_DIR_OPTION + " нужно указать каталог");
+            }
+            return new LogStructuredKVStorage(new File(args[i + 1]));
+        }
+        return new InMemoryKVStorage();
     }
 
-    private static void printSubtasks(ArrayList<Subtask> subtasks) {
+    private static void printSubtasks(List<Subtask> subtasks) {
         for (Subtask subtask : subtasks) {
             System.out.println(subtask);
         }
     }
 
-    private static void printEpics(ArrayList<Epic> epics) {
+    private static void printEpics(List<Epic> epics) {
         for (Epic epic : epics) {
             System.out.println(epic);
         }
@@ -1,12 +1,16 @@
 package server;
 
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonSyntaxException;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.typeadapters.RuntimeTypeAdapterFactory;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import model.Epic;
+import model.Status;
 import model.Subtask;
 import model.Task;
 import org.apache.logging.log4j.LogManager;
@@ -15,6 +19,7 @@ import server.endpoint_processor.EndpointProcessor;
 import server.exceptions.RequestFailedException;
 import server.exceptions.ResponseFailedException;
 import service.Managers;
+import service.task.PrioritizedCursor;
 import service.task.TaskManager;
 
 import java.io.IOException;
@@ -24,6 +29,8 @@ import java.lang.reflect.Type;
 import java.net.InetSocketAddress;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,8 +38,10 @@ import java.util.regex.Pattern;
 
 public class HttpTaskServer {
     private static final int PORT = 8080;
+    private static final int MAX_PAGE_SIZE = 1000;
     private static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
     private Gson gson;
+    private Gson batchGson;
     private HttpServer httpServer;
     private static TaskManager taskManager;
     private static Logger logger;
@@ -43,6 +52,11 @@ public class HttpTaskServer {
         httpServer.bind(new InetSocketAddress(PORT), 0);
         httpServer.createContext("/tasks", new TaskHandler());
         gson = Managers.getGson();
+        RuntimeTypeAdapterFactory<Task> factory = RuntimeTypeAdapterFactory.of(Task.class, "type", true)
+                .registerSubtype(Task.class, "Task")
+                .registerSubtype(Subtask.class, "Subtask")
+                .registerSubtype(Epic.class, "Epic");
+        batchGson = new GsonBuilder().registerTypeAdapterFactory(factory).create();
         logger = LogManager.getLogger(HttpTaskServer.class);
     }
 
@@ -207,6 +221,35 @@ public class HttpTaskServer {
             }
         };
 
+        EndpointProcessor addBatch = (exchange, path, taskManager) -> {
+            List<Task> tasks = readBatch(exchange, "добавлении");
+            List<Integer> ids = taskManager.addAll(tasks);
+            writeResponse(exchange, "{\"ids\": " + gson.toJson(ids) + "}", 200);
+        };
+
+        EndpointProcessor updateBatch = (exchange, path, taskManager) -> {
+            List<Task> tasks = readBatch(exchange, "обновлении");
+            List<Boolean> results = taskManager.updateAll(tasks);
+            writeResponse(exchange, "{\"isUpdated\": " + gson.toJson(results) + "}", 200);
+        };
+
+        EndpointProcessor removeBatch = (exchange, path, taskManager) -> {
+            Type idListType = new TypeToken<List<Integer>>() {
+            }.getType();
+            List<Integer> ids;
+            try {
+                String body = new String(exchange.getRequestBody().readAllBytes(), DEFAULT_CHARSET);
+                ids = gson.fromJson(body, idListType);
+            } catch (IOException | JsonSyntaxException exception) {
+                logger.error("Ошибка при чтении тела запроса при пакетном удалении задач: "
+                        + exception.getMessage());
+                throw new RequestFailedException("При чтении тела запроса возникла ошибка: "
+                        + exception.getMessage());
+            }
+            List<Boolean> results = taskManager.removeAll(ids == null ? List.of() : ids);
+            writeResponse(exchange, "{\"isRemoved\": " + gson.toJson(results) + "}", 200);
+        };
+
         EndpointProcessor getEpicSubtasks = new EndpointProcessor() {
             @Override
             public void process(HttpExchange exchange, String path, TaskManager taskManager) {
@@ -233,6 +276,75 @@ public class HttpTaskServer {
             writeResponse(exchange, prioritizedTasks, 200);
         };
 
+        EndpointProcessor getTasksPage = (exchange, path, taskManager) -> {
+            List<Task> page = taskManager.getTasksPage(getIntParameter(path, "after", 0), getPageSize(path));
+            writeTaskList(exchange, page);
+        };
+
+        EndpointProcessor getSubtasksPage = (exchange, path, taskManager) -> {
+            Type subtaskListType = new TypeToken<List<Subtask>>() {
+            }.getType();
+            List<Subtask> page = taskManager.getSubtasksPage(getIntParameter(path, "after", 0), getPageSize(path));
+            writeResponse(exchange, gson.toJson(page, subtaskListType), 200);
+        };
+
+        EndpointProcessor getEpicsPage = (exchange, path, taskManager) -> {
+            Type epicListType = new TypeToken<List<Epic>>() {
+            }.getType();
+            List<Epic> page = taskManager.getEpicsPage(getIntParameter(path, "after", 0), getPageSize(path));
+            writeResponse(exchange, gson.toJson(page, epicListType), 200);
+        };
+
+        EndpointProcessor getPrioritizedTasksPage = (exchange, path, taskManager) -> {
+            String afterStart = getQueryParameter(path, "afterStart");
+            String afterId = getQueryParameter(path, "afterId");
+            PrioritizedCursor after = null;
+            if (!afterStart.isEmpty() || !afterId.isEmpty()) {
+                LocalDateTime startTime;
+                try {
+                    startTime = afterStart.isEmpty() ? null : LocalDateTime.parse(afterStart);
+                } catch (DateTimeParseException exception) {
+                    logger.error("Неверный формат даты в запросе " + path + ": " + exception.getMessage());
+                    writeResponse(exchange, "Неверный формат даты", 400);
+                    return;
+                }
+                int id = getIntParameter(path, "afterId", Integer.MAX_VALUE);
+                after = new PrioritizedCursor(startTime, id);
+            }
+            writeTaskList(exchange, taskManager.getPrioritizedTasksPage(after, getPageSize(path)));
+        };
+
+        EndpointProcessor getTasksByStatus = (exchange, path, taskManager) -> {
+            Status status = Status.valueOf(getQueryParameter(path, "status"));
+            writeTaskList(exchange, taskManager.getTasksByStatus(status));
+        };
+
+        EndpointProcessor getTasksStartingBetween = (exchange, path, taskManager) -> {
+            LocalDateTime from;
+            LocalDateTime to;
+            try {
+                from = LocalDateTime.parse(getQueryParameter(path, "from"));
+                to = LocalDateTime.parse(getQueryParameter(path, "to"));
+            } catch (DateTimeParseException exception) {
+                logger.error("Неверный формат даты в запросе " + path + ": " + exception.getMessage());
+                writeResponse(exchange, "Неверный формат даты", 400);
+                return;
+            }
+            writeTaskList(exchange, taskManager.getTasksStartingBetween(from, to));
+        };
+
+        EndpointProcessor getTasksEndingBefore = (exchange, path, taskManager) -> {
+            LocalDateTime deadline;
+            try {
+                deadline = LocalDateTime.parse(getQueryParameter(path, "endBefore"));
+            } catch (DateTimeParseException exception) {
+                logger.error("Неверный формат даты в запросе " + path + ": " + exception.getMessage());
+                writeResponse(exchange, "Неверный формат даты", 400);
+                return;
+            }
+            writeTaskList(exchange, taskManager.getTasksEndingBefore(deadline));
+        };
+
         EndpointProcessor getSubtask = new EndpointProcessor() {
             @Override
             public void process(HttpExchange exchange, String path, TaskManager taskManager) {
@@ -297,6 +409,57 @@ public class HttpTaskServer {
                 -> writeResponse(exchange, "Неверный запрос", 400);
 
 
+        private void writeTaskList(HttpExchange exchange, List<Task> tasks) {
+            Type taskListType = new TypeToken<List<Task>>() {
+            }.getType();
+            writeResponse(exchange, gson.toJson(tasks, taskListType), 200);
+        }
+
+        private int getPageSize(String path) {
+            return Math.min(getIntParameter(path, "limit", MAX_PAGE_SIZE), MAX_PAGE_SIZE);
+        }
+
+        private int getIntParameter(String path, String name, int defaultValue) {
+            String value = getQueryParameter(path, name);
+            if (value.isEmpty()) {
+                return defaultValue;
+            }
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException exception) {
+                logger.error(String.format("При считывании параметра %s: %s произошло исключение: %s",
+                        name, value, exception.getMessage()));
+                throw new RequestFailedException(String.format("При считывании параметра %s: %s произошло " +
+                        "исключение: %s", name, value, exception.getMessage()));
+            }
+        }
+
+        private String getQueryParameter(String path, String name) {
+            String query = path.substring(path.indexOf('?') + 1);
+            for (String parameter : query.split("&")) {
+                String[] nameAndValue = parameter.split("=", 2);
+                if (nameAndValue.length == 2 && nameAndValue[0].equals(name)) {
+                    return nameAndValue[1];
+                }
+            }
+            return "";
+        }
+
+        private List<Task> readBatch(HttpExchange exchange, String operation) {
+            Type taskListType = new TypeToken<List<Task>>() {
+            }.getType();
+            try {
+                String body = new String(exchange.getRequestBody().readAllBytes(), DEFAULT_CHARSET);
+                List<Task> tasks = batchGson.fromJson(body, taskListType);
+                return tasks == null ? List.of() : tasks;
+            } catch (IOException | JsonParseException exception) {
+                logger.error(String.format("Ошибка при чтении тела запроса при пакетном %s задач: %s",
+                        operation, exception.getMessage()));
+                throw new RequestFailedException("При чтении тела запроса возникла ошибка: "
+                        + exception.getMessage());
+            }
+        }
+
         private int getTaskId(PathType type, String path) {
             String idAsString = "";
             switch (type) {
@@ -339,6 +502,28 @@ public class HttpTaskServer {
             Pair prioritizedTasksPair = new Pair("^/tasks/$", "GET");
             endpointMap.put(prioritizedTasksPair, getPrioritizedTasks);
 
+            Pair tasksPagePair = new Pair("^/tasks/task/\\?(after=\\d+&)?limit=\\d+$", "GET");
+            endpointMap.put(tasksPagePair, getTasksPage);
+
+            Pair subtasksPagePair = new Pair("^/tasks/subtask/\\?(after=\\d+&)?limit=\\d+$", "GET");
+            endpointMap.put(subtasksPagePair, getSubtasksPage);
+
+            Pair epicsPagePair = new Pair("^/tasks/epic/\\?(after=\\d+&)?limit=\\d+$", "GET");
+            endpointMap.put(epicsPagePair, getEpicsPage);
+
+            Pair prioritizedTasksPagePair = new Pair("^/tasks/\\?(afterStart=[^&]+&)?(afterId=\\d+&)?limit=\\d+$",
+                    "GET");
+            endpointMap.put(prioritizedTasksPagePair, getPrioritizedTasksPage);
+
+            Pair tasksByStatusPair = new Pair("^/tasks/\\?status=(NEW|IN_PROGRESS|DONE)$", "GET");
+            endpointMap.put(tasksByStatusPair, getTasksByStatus);
+
+            Pair tasksStartingBetweenPair = new Pair("^/tasks/\\?from=[^&]+&to=[^&]+$", "GET");
+            endpointMap.put(tasksStartingBetweenPair, getTasksStartingBetween);
+
+            Pair tasksEndingBeforePair = new Pair("^/tasks/\\?endBefore=[^&]+$", "GET");
+            endpointMap.put(tasksEndingBeforePair, getTasksEndingBefore);
+
             Pair getTaskPair = new Pair("^/tasks/task/\\?id=\\d+$", "GET");
             endpointMap.put(getTaskPair, getTask);
 
@@ -377,6 +562,15 @@ public class HttpTaskServer {
 
             Pair postEpicPair = new Pair("^/tasks/epic/$", "POST");
             endpointMap.put(postEpicPair, addOrUpdateEpic);
+
+            Pair postBatchPair = new Pair("^/tasks/batch/$", "POST");
+            endpointMap.put(postBatchPair, addBatch);
+
+            Pair putBatchPair = new Pair("^/tasks/batch/$", "PUT");
+            endpointMap.put(putBatchPair, updateBatch);
+
+            Pair removeBatchPair = new Pair("^/tasks/batch/$", "DELETE");
+            endpointMap.put(removeBatchPair, removeBatch);
         }
 
         private void writeResponse(HttpExchange exchange, String responseString, int responseCode) {
@@ -1,12 +1,34 @@
 package server;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpServer;
+import kv.VersionedValue;
+import server.storage.InMemoryKVStorage;
+import server.storage.KVStorage;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Type;
 import java.net.InetSocketAddress;
-import java.util.HashMap;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
@@ -15,16 +37,75 @@ import static java.nio.charset.StandardCharsets.UTF_8;
  */
 public class KVServer {
 	public static final int PORT = 8078;
+	public static final long DEFAULT_MAX_VALUE_LENGTH = 64 * 1024 * 1024;
+	// Длина значения в хранилище — int, а массивы в Java чуть короче Integer.MAX_VALUE
+	private static final long MAX_VALUE_LENGTH = Integer.MAX_VALUE - 1024;
+	private static final int COPY_BUFFER_SIZE = 64 * 1024;
+	private static final int FALLBACK_QUEUE_CAPACITY = 1024;
+
 	private final String apiToken;
 	private final HttpServer server;
-	private final Map<String, String> data = new HashMap<>();
+	private final KVStorage storage;
+	private final long maxValueLength;
+	private final Gson gson = new Gson();
+	private final Type keysType = new TypeToken<List<String>>() {
+	}.getType();
+	private final Type valuesType = new TypeToken<Map<String, String>>() {
+	}.getType();
 
 	public KVServer() throws IOException {
+		this(null);
+	}
+
+	/**
+	 * @param executor исполнитель запросов или null для потока-диспетчера HttpServer. Сервер его не останавливает
+	 */
+	public KVServer(Executor executor) throws IOException {
+		this(executor, new InMemoryKVStorage());
+	}
+
+	/**
+	 * @param storage хранилище значений. Сервер его не закрывает
+	 */
+	public KVServer(Executor executor, KVStorage storage) throws IOException {
+		this(executor, storage, DEFAULT_MAX_VALUE_LENGTH);
+	}
+
+	public KVServer(Executor executor, KVStorage storage, long maxValueLength) throws IOException {
+		if (maxValueLength <= 0 || maxValueLength > MAX_VALUE_LENGTH) {
+			throw new IllegalArgumentException("Длина значения должна быть от 1 до " + MAX_VALUE_LENGTH
+					+ " байт: " + maxValueLength);
+		}
+		this.storage = storage;
+		this.maxValueLength = maxValueLength;
 		apiToken = generateApiToken();
 		server = HttpServer.create(new InetSocketAddress("localhost", PORT), 0);
 		server.createContext("/register", this::register);
 		server.createContext("/save", this::save);
 		server.createContext("/load", this::load);
+		server.createContext("/mget", this::mget);
+		server.createContext("/mput", this::mput);
+		server.setExecutor(executor);
+	}
+
+	/**
+	 * Когда очередь заполнена, запрос обрабатывается в потоке-диспетчере, и новые соединения ждут.
+	 */
+	public static ExecutorService boundedPool(int threads, int queueCapacity) {
+		return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), new ThreadPoolExecutor.CallerRunsPolicy());
+	}
+
+	/**
+	 * На Java 21+ — виртуальный поток на запрос, иначе {@link #boundedPool} на два потока на ядро,
+	 * чтобы под нагрузкой число потоков не росло без предела.
+	 */
+	public static ExecutorService virtualThreadPerRequest() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+			return boundedPool(Runtime.getRuntime().availableProcessors() * 2, FALLBACK_QUEUE_CAPACITY);
+		}
 	}
 
 	private void load(HttpExchange h) throws IOException {
@@ -32,26 +113,27 @@ public class KVServer {
 			System.out.println("\n/load");
 			if (!hasAuth(h)) {
 				System.out.println("Запрос неавторизован, нужен параметр в query API_TOKEN со значением апи-ключа");
-				h.sendResponseHeaders(403, 0);
+				h.sendResponseHeaders(403, -1);
 				return;
 			}
 			if ("GET".equals(h.getRequestMethod())) {
 				String key = h.getRequestURI().getPath().substring("/load/".length());
 				if (key.isEmpty()) {
 					System.out.println("Key для загрузки пустой. key указывается в пути: /load/{key}");
-					h.sendResponseHeaders(400, 0);
+					h.sendResponseHeaders(400, -1);
 					return;
 				}
-				String json = data.get(key);
-				if (json != null) {
-					sendText(h, json);
-				} else {
+				boolean isFound = storage.read(key, (version, length, value) -> {
+					h.getResponseHeaders().set("ETag", VersionedValue.formatVersion(version));
+					sendValue(h, length, value);
+				});
+				if (!isFound) {
 					System.out.println("По ключу " + key + " значение не найдено");
-					h.sendResponseHeaders(400, 0);
+					h.sendResponseHeaders(400, -1);
 				}
 			} else {
 				System.out.println("/load ждёт GET-запрос, а получил: " + h.getRequestMethod());
-				h.sendResponseHeaders(405, 0);
+				h.sendResponseHeaders(405, -1);
 			}
 		} finally {
 			h.close();
@@ -63,28 +145,148 @@ public class KVServer {
 			System.out.println("\n/save");
 			if (!hasAuth(h)) {
 				System.out.println("Запрос неавторизован, нужен параметр в query API_TOKEN со значением апи-ключа");
-				h.sendResponseHeaders(403, 0);
+				h.sendResponseHeaders(403, -1);
 				return;
 			}
 			if ("POST".equals(h.getRequestMethod())) {
 				String key = h.getRequestURI().getPath().substring("/save/".length());
 				if (key.isEmpty()) {
 					System.out.println("Key для сохранения пустой. key указывается в пути: /save/{key}");
-					h.sendResponseHeaders(400, 0);
+					h.sendResponseHeaders(400, -1);
 					return;
 				}
-				String value = readText(h);
-				if (value.isEmpty()) {
-					System.out.println("Value для сохранения пустой. value указывается в теле запроса");
-					h.sendResponseHeaders(400, 0);
-					return;
+				String ifMatch = h.getRequestHeaders().getFirst("If-Match");
+				long expectedVersion = -1;
+				if (ifMatch != null) {
+					try {
+						expectedVersion = VersionedValue.parseVersion(ifMatch);
+					} catch (NumberFormatException e) {
+						System.out.println("If-Match должен содержать версию ключа, а содержит: " + ifMatch);
+						h.sendResponseHeaders(400, -1);
+						return;
+					}
+				}
+				long length = contentLength(h);
+				if (length == -1) {
+					saveSpooled(h, key, expectedVersion);
+				} else {
+					saveValue(h, key, requestBody(h), length, expectedVersion);
 				}
-				data.put(key, value);
-				System.out.println("Значение для ключа " + key + " успешно обновлено!");
-				h.sendResponseHeaders(200, 0);
 			} else {
 				System.out.println("/save ждёт POST-запрос, а получил: " + h.getRequestMethod());
-				h.sendResponseHeaders(405, 0);
+				h.sendResponseHeaders(405, -1);
+			}
+		} finally {
+			h.close();
+		}
+	}
+
+	private void saveValue(HttpExchange h, String key, InputStream value, long length, long expectedVersion)
+			throws IOException {
+		if (length == 0) {
+			System.out.println("Value для сохранения пустой. value указывается в теле запроса");
+			h.sendResponseHeaders(400, -1);
+			return;
+		}
+		if (length > maxValueLength) {
+			System.out.println("Value для сохранения длиннее " + maxValueLength + " байт");
+			h.sendResponseHeaders(413, -1);
+			return;
+		}
+		long version = storage.put(key, value, (int) length, expectedVersion);
+		// HttpServer может не переиспользовать соединение, если тело запроса не дочитано до конца
+		value.transferTo(OutputStream.nullOutputStream());
+		if (version == -1) {
+			System.out.println("Версия ключа " + key + " не равна " + expectedVersion);
+			h.sendResponseHeaders(409, -1);
+			return;
+		}
+		System.out.println("Значение для ключа " + key + " успешно обновлено!");
+		h.getResponseHeaders().set("ETag", VersionedValue.formatVersion(version));
+		h.sendResponseHeaders(200, -1);
+	}
+
+	/**
+	 * Тело без Content-Length копируется во временный файл, а не в память, и уже оттуда передаётся хранилищу.
+	 */
+	private void saveSpooled(HttpExchange h, String key, long expectedVersion) throws IOException {
+		Path spooled = Files.createTempFile("kv-value-", ".tmp");
+		try {
+			long length = 0;
+			try (InputStream body = requestBody(h); OutputStream out = Files.newOutputStream(spooled)) {
+				byte[] buffer = new byte[COPY_BUFFER_SIZE];
+				int read;
+				while (length <= maxValueLength && (read = body.read(buffer)) != -1) {
+					out.write(buffer, 0, read);
+					length += read;
+				}
+			}
+			try (InputStream value = Files.newInputStream(spooled)) {
+				saveValue(h, key, value, length, expectedVersion);
+			}
+		} finally {
+			Files.deleteIfExists(spooled);
+		}
+	}
+
+	private void mget(HttpExchange h) throws IOException {
+		try {
+			System.out.println("\n/mget");
+			if (!hasAuth(h)) {
+				System.out.println("Запрос неавторизован, нужен параметр в query API_TOKEN со значением апи-ключа");
+				h.sendResponseHeaders(403, -1);
+				return;
+			}
+			if ("POST".equals(h.getRequestMethod())) {
+				List<String> keys;
+				try {
+					keys = gson.fromJson(requestReader(h), keysType);
+				} catch (JsonParseException e) {
+					keys = null;
+				}
+				if (keys == null || keys.isEmpty() || keys.contains(null)) {
+					System.out.println("Ключи для загрузки указываются в теле запроса JSON-массивом строк");
+					h.sendResponseHeaders(400, -1);
+					return;
+				}
+				sendJson(h, storage.getAll(keys), valuesType);
+			} else {
+				System.out.println("/mget ждёт POST-запрос, а получил: " + h.getRequestMethod());
+				h.sendResponseHeaders(405, -1);
+			}
+		} finally {
+			h.close();
+		}
+	}
+
+	private void mput(HttpExchange h) throws IOException {
+		try {
+			System.out.println("\n/mput");
+			if (!hasAuth(h)) {
+				System.out.println("Запрос неавторизован, нужен параметр в query API_TOKEN со значением апи-ключа");
+				h.sendResponseHeaders(403, -1);
+				return;
+			}
+			if ("POST".equals(h.getRequestMethod())) {
+				Map<String, String> values;
+				try {
+					values = gson.fromJson(requestReader(h), valuesType);
+				} catch (JsonParseException e) {
+					values = null;
+				}
+				if (values == null || values.isEmpty() || values.containsKey("") || values.containsValue(null)
+						|| values.containsValue("")) {
+					System.out.println("Значения для сохранения указываются в теле запроса JSON-объектом " +
+							"с непустыми ключами и значениями");
+					h.sendResponseHeaders(400, -1);
+					return;
+				}
+				storage.putAll(values);
+				System.out.println("Значения для ключей " + values.keySet() + " успешно обновлены!");
+				h.sendResponseHeaders(200, -1);
+			} else {
+				System.out.println("/mput ждёт POST-запрос, а получил: " + h.getRequestMethod());
+				h.sendResponseHeaders(405, -1);
 			}
 		} finally {
 			h.close();
@@ -98,7 +300,7 @@ public class KVServer {
 				sendText(h, apiToken);
 			} else {
 				System.out.println("/register ждёт GET-запрос, а получил " + h.getRequestMethod());
-				h.sendResponseHeaders(405, 0);
+				h.sendResponseHeaders(405, -1);
 			}
 		} finally {
 			h.close();
@@ -126,8 +328,49 @@ public class KVServer {
 		return rawQuery != null && (rawQuery.contains("API_TOKEN=" + apiToken) || rawQuery.contains("API_TOKEN=DEBUG"));
 	}
 
-	protected String readText(HttpExchange h) throws IOException {
-		return new String(h.getRequestBody().readAllBytes(), UTF_8);
+	protected InputStream requestBody(HttpExchange h) throws IOException {
+		return h.getRequestBody();
+	}
+
+	/**
+	 * Тело разбирается прямо из потока, без копии в строку. Пакет /mput всё равно целиком оказывается в памяти:
+	 * {@link KVStorage#putAll} записывает значения атомарно и принимает их одним Map.
+	 */
+	protected Reader requestReader(HttpExchange h) throws IOException {
+		return new InputStreamReader(requestBody(h), UTF_8);
+	}
+
+	/**
+	 * Длина значения известна из хранилища, поэтому ответ идёт с Content-Length, а не частями:
+	 * клиент сразу знает размер тела, и на каждую часть не тратится заголовок.
+	 */
+	protected void sendValue(HttpExchange h, int length, InputStream value) throws IOException {
+		h.getResponseHeaders().add("Content-Type", "application/json");
+		h.sendResponseHeaders(200, length == 0 ? -1 : length);
+		value.transferTo(h.getResponseBody());
+	}
+
+	private static long contentLength(HttpExchange h) {
+		String contentLength = h.getRequestHeaders().getFirst("Content-Length");
+		if (contentLength == null) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(contentLength.trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Длина ответа заранее неизвестна, поэтому он отправляется частями по мере сериализации.
+	 */
+	protected void sendJson(HttpExchange h, Object value, Type type) throws IOException {
+		h.getResponseHeaders().add("Content-Type", "application/json");
+		h.sendResponseHeaders(200, 0);
+		try (Writer writer = new OutputStreamWriter(h.getResponseBody(), UTF_8)) {
+			gson.toJson(value, type, writer);
+		}
 	}
 
 	protected void sendText(HttpExchange h, String text) throws IOException {
@@ -0,0 +1,121 @@
+package server.storage;
+
+import kv.VersionedValue;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Блокировка на запись берётся только в putAll: она лишь не даёт увидеть пакет записанным наполовину.
+ */
+public class InMemoryKVStorage implements KVStorage {
+    private final Map<String, Entry> data = new ConcurrentHashMap<>();
+    private final ReadWriteLock batchLock = new ReentrantReadWriteLock();
+
+    @Override
+    public VersionedValue getVersioned(String key) {
+        Entry entry = data.get(key);
+        return entry == null ? null : new VersionedValue(new String(entry.value, UTF_8), entry.version);
+    }
+
+    @Override
+    public long put(String key, String value) {
+        return write(key, value.getBytes(UTF_8), -1);
+    }
+
+    @Override
+    public long putIfVersion(String key, String value, long expectedVersion) {
+        return write(key, value.getBytes(UTF_8), expectedVersion);
+    }
+
+    @Override
+    public long put(String key, InputStream value, int length, long expectedVersion) throws IOException {
+        // Буфер растёт по мере чтения: заявленной длине до прихода данных верить нельзя
+        byte[] bytes = value.readNBytes(length);
+        if (bytes.length < length) {
+            throw new EOFException("Прочитано " + bytes.length + " байт значения из " + length);
+        }
+        return write(key, bytes, expectedVersion);
+    }
+
+    @Override
+    public boolean read(String key, ValueReader reader) throws IOException {
+        Entry entry = data.get(key);
+        if (entry == null) {
+            return false;
+        }
+        reader.read(entry.version, entry.value.length, new ByteArrayInputStream(entry.value));
+        return true;
+    }
+
+    @Override
+    public Map<String, String> getAll(Collection<String> keys) {
+        Map<String, String> values = new LinkedHashMap<>();
+        batchLock.readLock().lock();
+        try {
+            for (String key : keys) {
+                Entry entry = data.get(key);
+                if (entry != null) {
+                    values.put(key, new String(entry.value, UTF_8));
+                }
+            }
+        } finally {
+            batchLock.readLock().unlock();
+        }
+        return values;
+    }
+
+    @Override
+    public void putAll(Map<String, String> values) {
+        batchLock.writeLock().lock();
+        try {
+            for (Map.Entry<String, String> value : values.entrySet()) {
+                byte[] bytes = value.getValue().getBytes(UTF_8);
+                data.compute(value.getKey(), (k, previous) -> new Entry(bytes, versionOf(previous) + 1));
+            }
+        } finally {
+            batchLock.writeLock().unlock();
+        }
+    }
+
+    private long write(String key, byte[] value, long expectedVersion) {
+        Entry[] written = new Entry[1];
+        batchLock.readLock().lock();
+        try {
+            data.compute(key, (k, previous) -> {
+                if (expectedVersion != -1 && versionOf(previous) != expectedVersion) {
+                    return previous;
+                }
+                written[0] = new Entry(value, versionOf(previous) + 1);
+                return written[0];
+            });
+        } finally {
+            batchLock.readLock().unlock();
+        }
+        return written[0] == null ? -1 : written[0].version;
+    }
+
+    private static long versionOf(Entry entry) {
+        return entry == null ? 0 : entry.version;
+    }
+
+    private static final class Entry {
+        private final byte[] value;
+        private final long version;
+
+        Entry(byte[] value, long version) {
+            this.value = value;
+            this.version = version;
+        }
+    }
+}
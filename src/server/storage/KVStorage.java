@@ -0,0 +1,59 @@
+package server.storage;
+
+import kv.VersionedValue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Хранилище значений KVServer. У каждого ключа есть версия: у отсутствующего ключа она равна 0,
+ * каждая запись увеличивает её на единицу.
+ */
+public interface KVStorage {
+
+    default String get(String key) {
+        VersionedValue versioned = getVersioned(key);
+        return versioned == null ? null : versioned.getValue();
+    }
+
+    VersionedValue getVersioned(String key);
+
+    long put(String key, String value);
+
+    /**
+     * Записывает значение, только если текущая версия ключа равна expectedVersion.
+     *
+     * @return новая версия ключа или -1, если версия не совпала
+     */
+    long putIfVersion(String key, String value, long expectedVersion);
+
+    /**
+     * Значения, записанные одним вызовом {@link #putAll}, возвращаются либо все, либо ни одного.
+     */
+    Map<String, String> getAll(Collection<String> keys);
+
+    /**
+     * Записывает все значения атомарно: читатели и перезапуск хранилища видят либо все, либо ни одного.
+     */
+    void putAll(Map<String, String> values);
+
+    /**
+     * @param expectedVersion версия, которая должна быть у ключа, или -1, чтобы записать без проверки
+     * @return новая версия ключа или -1, если версия не совпала
+     * @throws IOException если в value меньше length байт; значение тогда не записывается
+     */
+    long put(String key, InputStream value, int length, long expectedVersion) throws IOException;
+
+    /**
+     * Передаёт reader значение по ключу в виде потока. Поток действителен только до возврата из reader.
+     *
+     * @return false, если значения по ключу нет
+     */
+    boolean read(String key, ValueReader reader) throws IOException;
+
+    interface ValueReader {
+        void read(long version, int length, InputStream value) throws IOException;
+    }
+}
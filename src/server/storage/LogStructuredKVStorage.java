@@ -0,0 +1,777 @@
+package server.storage;
+
+import kv.VersionedValue;
+import server.exceptions.StorageException;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32C;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Запись в сегменте: CRC32C остальной части записи, длина ключа, длина значения, версия, ключ, значение.
+ * Пакет {@link #putAll} — заголовок с длиной ключа -1 и длиной пакета вместо длины значения, затем записи.
+ * Длина ключа -2 — место под значение, которое ещё читается из запроса; при открытии оно пропускается.
+ */
+public class LogStructuredKVStorage implements KVStorage, AutoCloseable {
+    private static final String SEGMENT_EXTENSION = ".seg";
+    private static final String COMPACTED_EXTENSION = ".compact";
+    private static final int HEADER_SIZE = 20;
+    private static final int BATCH_MARKER = -1;
+    private static final int PADDING_MARKER = -2;
+    private static final long MIN_COMPACTION_BYTES = 4 * 1024 * 1024;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final File directory;
+    private final boolean sync;
+    private final long minCompactionBytes;
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+    private final Map<String, Long> pendingVersions = new HashMap<>();
+    private final NavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final ReadWriteLock segmentsLock = new ReentrantReadWriteLock();
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final AtomicLong liveBytes = new AtomicLong();
+    private final CRC32C crc = new CRC32C();
+    private final ExecutorService compactor;
+    private Segment active;
+    private Future<?> compaction;
+
+    public LogStructuredKVStorage(File directory) {
+        this(directory, false);
+    }
+
+    /**
+     * @param sync если true, put возвращается только после того, как запись сброшена на диск
+     */
+    public LogStructuredKVStorage(File directory, boolean sync) {
+        this(directory, sync, MIN_COMPACTION_BYTES);
+    }
+
+    LogStructuredKVStorage(File directory, boolean sync, long minCompactionBytes) {
+        this.directory = directory;
+        this.sync = sync;
+        this.minCompactionBytes = minCompactionBytes;
+        try {
+            Files.createDirectories(directory.toPath());
+            NavigableMap<Long, File> files = new TreeMap<>();
+            File[] children = directory.listFiles();
+            for (File file : children == null ? new File[0] : children) {
+                String name = file.getName();
+                if (name.endsWith(COMPACTED_EXTENSION)) {
+                    Files.delete(file.toPath());
+                } else if (name.endsWith(SEGMENT_EXTENSION)) {
+                    files.put(Long.parseLong(name.substring(0, name.length() - SEGMENT_EXTENSION.length())), file);
+                }
+            }
+            for (Map.Entry<Long, File> entry : files.entrySet()) {
+                Segment segment = new Segment(entry.getKey(), entry.getValue());
+                load(segment);
+                segments.put(segment.id, segment);
+            }
+            active = segments.isEmpty() ? openSegment(0) : segments.lastEntry().getValue();
+        } catch (IOException | NumberFormatException e) {
+            throw new StorageException(String.format("Ошибка при открытии хранилища %s" +
+                    ", произошло исключение: %s", directory.getPath(), e));
+        }
+        compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "kv-compaction-" + directory.getName());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public VersionedValue getVersioned(String key) {
+        segmentsLock.readLock().lock();
+        try {
+            Location location = index.get(key);
+            if (location == null) {
+                return null;
+            }
+            ByteBuffer value = ByteBuffer.allocate(location.valueLength);
+            location.segment.read(value, location.offset + HEADER_SIZE + location.keyLength);
+            return new VersionedValue(new String(value.array(), UTF_8), location.version);
+        } catch (IOException e) {
+            throw new StorageException(String.format("Ошибка при чтении из хранилища %s" +
+                    ", произошло исключение: %s", directory.getPath(), e));
+        } finally {
+            segmentsLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long put(String key, String value) {
+        return write(key, value, -1);
+    }
+
+    @Override
+    public long putIfVersion(String key, String value, long expectedVersion) {
+        return write(key, value, expectedVersion);
+    }
+
+    private long write(String key, String value, long expectedVersion) {
+        byte[] keyBytes = key.getBytes(UTF_8);
+        byte[] valueBytes = value.getBytes(UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + keyBytes.length + valueBytes.length);
+        synchronized (this) {
+            long version = currentVersion(key);
+            if (expectedVersion != -1 && expectedVersion != version) {
+                return -1;
+            }
+            putRecord(record, keyBytes, valueBytes, version + 1);
+            record.flip();
+            try {
+                long offset = active.append(record);
+                if (sync) {
+                    active.channel.force(false);
+                }
+                index(key, new Location(active, offset, keyBytes.length, valueBytes.length, version + 1));
+                totalBytes.addAndGet(record.limit());
+            } catch (IOException e) {
+                throw new StorageException(String.format("Ошибка при записи в хранилище %s" +
+                        ", произошло исключение: %s", directory.getPath(), e));
+            }
+            compactIfNeeded();
+            return version + 1;
+        }
+    }
+
+    /**
+     * Место и версия занимаются под блокировкой, значение пишется без неё. Запись, которую за время чтения
+     * обогнала более новая версия ключа, в индекс не попадает.
+     */
+    @Override
+    public long put(String key, InputStream value, int length, long expectedVersion) throws IOException {
+        byte[] keyBytes = key.getBytes(UTF_8);
+        long recordLength = (long) HEADER_SIZE + keyBytes.length + length;
+        if (recordLength > Integer.MAX_VALUE) {
+            throw new IOException("Запись длиной " + recordLength + " байт не помещается в хранилище");
+        }
+        Segment segment;
+        long offset;
+        long version;
+        synchronized (this) {
+            long current = currentVersion(key);
+            if (expectedVersion != -1 && expectedVersion != current) {
+                return -1;
+            }
+            version = current + 1;
+            segment = active;
+            offset = segment.size;
+            ByteBuffer padding = ByteBuffer.allocate(HEADER_SIZE);
+            padding.putInt(0).putInt(PADDING_MARKER).putInt((int) recordLength - HEADER_SIZE).putLong(0);
+            crc.reset();
+            crc.update(padding.array(), 4, HEADER_SIZE - 4);
+            padding.putInt(0, (int) crc.getValue()).rewind();
+            segment.write(padding, offset);
+            segment.size = offset + recordLength;
+            segment.pendingWrites++;
+            pendingVersions.put(key, version);
+            totalBytes.addAndGet(recordLength);
+        }
+        boolean isWritten = false;
+        try {
+            writeStreamed(segment, offset, keyBytes, value, length, version);
+            isWritten = true;
+        } finally {
+            synchronized (this) {
+                segment.pendingWrites--;
+                pendingVersions.remove(key, version);
+                if (isWritten) {
+                    Location previous = index.get(key);
+                    if (previous == null || previous.version < version) {
+                        index(key, new Location(segment, offset, keyBytes.length, length, version));
+                    }
+                    compactIfNeeded();
+                }
+                notifyAll();
+            }
+        }
+        return version;
+    }
+
+    private void writeStreamed(Segment segment, long offset, byte[] keyBytes, InputStream value, int length,
+                               long version) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + keyBytes.length);
+        header.putInt(0).putInt(keyBytes.length).putInt(length).putLong(version).put(keyBytes);
+        CRC32C checksum = new CRC32C();
+        checksum.update(header.array(), 4, header.capacity() - 4);
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(1, Math.min(length, COPY_BUFFER_SIZE)));
+        long position = offset + header.capacity();
+        int remaining = length;
+        while (remaining > 0) {
+            int read = value.read(buffer.array(), 0, Math.min(remaining, buffer.capacity()));
+            if (read == -1) {
+                throw new EOFException("Прочитано " + (length - remaining) + " байт значения из " + length);
+            }
+            checksum.update(buffer.array(), 0, read);
+            buffer.clear().limit(read);
+            segment.write(buffer, position);
+            position += read;
+            remaining -= read;
+        }
+        header.putInt(0, (int) checksum.getValue());
+        header.flip();
+        segment.write(header, offset);
+        if (sync) {
+            segment.channel.force(false);
+        }
+    }
+
+    /**
+     * Не держит блокировок, пока reader читает значение: сегмент закрывается компактизацией только после того,
+     * как его отпустит последний читатель.
+     */
+    @Override
+    public boolean read(String key, ValueReader reader) throws IOException {
+        Location location;
+        segmentsLock.readLock().lock();
+        try {
+            location = index.get(key);
+            if (location == null) {
+                return false;
+            }
+            location.segment.retain();
+        } finally {
+            segmentsLock.readLock().unlock();
+        }
+        try {
+            reader.read(location.version, location.valueLength, new ValueInputStream(location));
+            return true;
+        } finally {
+            location.segment.release();
+        }
+    }
+
+    /**
+     * Читает значения под тем же монитором, под которым пишет {@link #putAll}, поэтому пакет записей
+     * виден либо целиком, либо не виден вовсе.
+     */
+    @Override
+    public Map<String, String> getAll(Collection<String> keys) {
+        segmentsLock.readLock().lock();
+        try {
+            Map<String, Location> locations = new LinkedHashMap<>();
+            synchronized (this) {
+                for (String key : keys) {
+                    Location location = index.get(key);
+                    if (location != null) {
+                        locations.put(key, location);
+                    }
+                }
+            }
+            Map<String, String> values = new LinkedHashMap<>();
+            for (Map.Entry<String, Location> entry : locations.entrySet()) {
+                Location location = entry.getValue();
+                ByteBuffer value = ByteBuffer.allocate(location.valueLength);
+                location.segment.read(value, location.offset + HEADER_SIZE + location.keyLength);
+                values.put(entry.getKey(), new String(value.array(), UTF_8));
+            }
+            return values;
+        } catch (IOException e) {
+            throw new StorageException(String.format("Ошибка при чтении из хранилища %s" +
+                    ", произошло исключение: %s", directory.getPath(), e));
+        } finally {
+            segmentsLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * При открытии пакет, в котором недописана или повреждена хотя бы одна запись, отбрасывается целиком.
+     */
+    @Override
+    public void putAll(Map<String, String> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(values.keySet());
+        byte[][] keyBytes = new byte[keys.size()][];
+        byte[][] valueBytes = new byte[keys.size()][];
+        int bodyLength = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            keyBytes[i] = keys.get(i).getBytes(UTF_8);
+            valueBytes[i] = values.get(keys.get(i)).getBytes(UTF_8);
+            bodyLength += HEADER_SIZE + keyBytes[i].length + valueBytes[i].length;
+        }
+        ByteBuffer batch = ByteBuffer.allocate(HEADER_SIZE + bodyLength);
+        synchronized (this) {
+            batch.putInt(0).putInt(BATCH_MARKER).putInt(bodyLength).putLong(keys.size());
+            crc.reset();
+            crc.update(batch.array(), 4, HEADER_SIZE - 4);
+            batch.putInt(0, (int) crc.getValue());
+            long[] versions = new long[keys.size()];
+            for (int i = 0; i < keys.size(); i++) {
+                versions[i] = currentVersion(keys.get(i)) + 1;
+                putRecord(batch, keyBytes[i], valueBytes[i], versions[i]);
+            }
+            batch.flip();
+            try {
+                long offset = active.append(batch) + HEADER_SIZE;
+                if (sync) {
+                    active.channel.force(false);
+                }
+                for (int i = 0; i < keys.size(); i++) {
+                    Location location = new Location(active, offset, keyBytes[i].length, valueBytes[i].length,
+                            versions[i]);
+                    index(keys.get(i), location);
+                    offset += location.size();
+                }
+                totalBytes.addAndGet(batch.limit());
+            } catch (IOException e) {
+                throw new StorageException(String.format("Ошибка при записи в хранилище %s" +
+                        ", произошло исключение: %s", directory.getPath(), e));
+            }
+            compactIfNeeded();
+        }
+    }
+
+    public long getSize() {
+        return totalBytes.get();
+    }
+
+    /**
+     * Записи, сделанные во время компактизации, в неё не попадают, поэтому она может запускаться повторно.
+     */
+    public void awaitCompaction() {
+        while (true) {
+            Future<?> running;
+            synchronized (this) {
+                if (compaction == null || compaction.isDone()) {
+                    await(compaction);
+                    if (!needsCompaction()) {
+                        return;
+                    }
+                    startCompaction();
+                }
+                running = compaction;
+            }
+            await(running);
+        }
+    }
+
+    @Override
+    public void close() {
+        Future<?> running;
+        synchronized (this) {
+            running = compaction;
+        }
+        try {
+            await(running);
+        } finally {
+            compactor.shutdown();
+            segmentsLock.writeLock().lock();
+            try {
+                for (Segment segment : segments.values()) {
+                    segment.channel.close();
+                }
+            } catch (IOException e) {
+                throw new StorageException(String.format("Ошибка при закрытии хранилища %s" +
+                        ", произошло исключение: %s", directory.getPath(), e));
+            } finally {
+                segmentsLock.writeLock().unlock();
+            }
+        }
+    }
+
+    private void putRecord(ByteBuffer buffer, byte[] key, byte[] value, long version) {
+        int start = buffer.position();
+        buffer.putInt(0).putInt(key.length).putInt(value.length).putLong(version).put(key).put(value);
+        crc.reset();
+        crc.update(buffer.array(), start + 4, buffer.position() - start - 4);
+        buffer.putInt(start, (int) crc.getValue());
+    }
+
+    /**
+     * Значения, дочитанные из запроса позже более новой записи, лежат в сегменте после неё.
+     */
+    private void indexIfNewer(String key, Location location) {
+        Location previous = index.get(key);
+        if (previous == null || previous.version < location.version) {
+            index(key, location);
+        }
+    }
+
+    private void index(String key, Location location) {
+        Location previous = index.put(key, location);
+        liveBytes.addAndGet(location.size() - (previous == null ? 0 : previous.size()));
+    }
+
+    /**
+     * @return наибольшая версия ключа, записанная или занятая ещё не дочитанным значением
+     */
+    private long currentVersion(String key) {
+        Location location = index.get(key);
+        long version = location == null ? 0 : location.version;
+        Long pending = pendingVersions.get(key);
+        return pending == null ? version : Math.max(version, pending);
+    }
+
+    private void compactIfNeeded() {
+        if (needsCompaction() && (compaction == null || compaction.isDone())) {
+            startCompaction();
+        }
+    }
+
+    private boolean needsCompaction() {
+        long live = liveBytes.get();
+        return totalBytes.get() - live > Math.max(minCompactionBytes, live);
+    }
+
+    private void await(Future<?> running) {
+        if (running == null) {
+            return;
+        }
+        try {
+            running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageException(String.format("Ожидание компактизации хранилища %s прервано",
+                    directory.getPath()));
+        } catch (ExecutionException e) {
+            throw new StorageException(String.format("Ошибка при компактизации хранилища %s" +
+                    ", произошло исключение: %s", directory.getPath(), e.getCause()));
+        }
+    }
+
+    private void startCompaction() {
+        long compactedId = active.id;
+        try {
+            active = openSegment(compactedId + 1);
+        } catch (IOException e) {
+            throw new StorageException(String.format("Ошибка при создании сегмента хранилища %s" +
+                    ", произошло исключение: %s", directory.getPath(), e));
+        }
+        compaction = compactor.submit(() -> {
+            compact(compactedId);
+            return null;
+        });
+    }
+
+    /**
+     * Записи, изменённые за время компактизации, остаются в более новых сегментах, и индекс для них не меняется.
+     */
+    private void compact(long compactedId) throws IOException, InterruptedException {
+        synchronized (this) {
+            while (hasPendingWrites(compactedId)) {
+                wait();
+            }
+        }
+        File temp = new File(directory, compactedId + COMPACTED_EXTENSION);
+        Segment compacted = new Segment(compactedId, segmentFile(compactedId), temp);
+        List<String> keys = new ArrayList<>();
+        List<Location> from = new ArrayList<>();
+        List<Location> to = new ArrayList<>();
+        for (Map.Entry<String, Location> entry : index.entrySet()) {
+            Location location = entry.getValue();
+            if (location.segment.id > compactedId) {
+                continue;
+            }
+            ByteBuffer record = ByteBuffer.allocate(location.size());
+            location.segment.read(record, location.offset);
+            record.flip();
+            long offset = compacted.append(record);
+            keys.add(entry.getKey());
+            from.add(location);
+            to.add(new Location(compacted, offset, location.keyLength, location.valueLength, location.version));
+        }
+        compacted.channel.force(false);
+
+        segmentsLock.writeLock().lock();
+        try {
+            try {
+                Files.move(temp.toPath(), compacted.file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), compacted.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            for (int i = 0; i < keys.size(); i++) {
+                index.replace(keys.get(i), from.get(i), to.get(i));
+            }
+            Map<Long, Segment> replaced = segments.headMap(compactedId, true);
+            long replacedBytes = 0;
+            for (Segment segment : replaced.values()) {
+                replacedBytes += segment.size;
+                segment.retire(segment.id != compactedId);
+            }
+            replaced.clear();
+            segments.put(compactedId, compacted);
+            totalBytes.addAndGet(compacted.size - replacedBytes);
+        } finally {
+            segmentsLock.writeLock().unlock();
+        }
+    }
+
+    private boolean hasPendingWrites(long lastSegmentId) {
+        for (Segment segment : segments.headMap(lastSegmentId, true).values()) {
+            if (segment.pendingWrites > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void load(Segment segment) throws IOException {
+        long size = segment.channel.size();
+        long position = 0;
+        while (true) {
+            Scanned record = scan(segment, position, size);
+            if (record == null) {
+                break;
+            }
+            if (record.key != null) {
+                indexIfNewer(record.key, record.location);
+                position = record.end;
+                continue;
+            }
+            if (record.isPadding) {
+                position = record.end;
+                continue;
+            }
+            List<Scanned> batch = new ArrayList<>();
+            long batchPosition = position + HEADER_SIZE;
+            while (batchPosition < record.end) {
+                Scanned batched = scan(segment, batchPosition, record.end);
+                if (batched == null || batched.key == null) {
+                    batch = null;
+                    break;
+                }
+                batch.add(batched);
+                batchPosition = batched.end;
+            }
+            if (batch == null) {
+                break;
+            }
+            for (Scanned batched : batch) {
+                indexIfNewer(batched.key, batched.location);
+            }
+            position = record.end;
+        }
+        if (position < size) {
+            segment.channel.truncate(position);
+            segment.channel.force(false);
+        }
+        segment.size = position;
+        totalBytes.addAndGet(position);
+    }
+
+    /**
+     * @return запись или null, если она недописана или повреждена
+     */
+    private Scanned scan(Segment segment, long position, long limit) throws IOException {
+        if (position + HEADER_SIZE > limit) {
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        segment.read(header, position);
+        header.flip();
+        int checksum = header.getInt();
+        int keyLength = header.getInt();
+        int valueLength = header.getInt();
+        long version = header.getLong();
+        crc.reset();
+        crc.update(header.array(), 4, HEADER_SIZE - 4);
+        if (keyLength == BATCH_MARKER || keyLength == PADDING_MARKER) {
+            if (valueLength < 0 || position + HEADER_SIZE + valueLength > limit || (int) crc.getValue() != checksum) {
+                return null;
+            }
+            return new Scanned(null, null, position + HEADER_SIZE + valueLength, keyLength == PADDING_MARKER);
+        }
+        if (keyLength < 0 || valueLength < 0 || position + HEADER_SIZE + (long) keyLength + valueLength > limit) {
+            return null;
+        }
+        ByteBuffer body = ByteBuffer.allocate(keyLength + valueLength);
+        segment.read(body, position + HEADER_SIZE);
+        crc.update(body.array(), 0, body.capacity());
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        Location location = new Location(segment, position, keyLength, valueLength, version);
+        return new Scanned(new String(body.array(), 0, keyLength, UTF_8), location, position + location.size(), false);
+    }
+
+    private Segment openSegment(long id) throws IOException {
+        Segment segment = new Segment(id, segmentFile(id), segmentFile(id));
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private File segmentFile(long id) {
+        return new File(directory, id + SEGMENT_EXTENSION);
+    }
+
+    private static final class Segment {
+        private final long id;
+        private final File file;
+        private final FileChannel channel;
+        private volatile long size;
+        // pendingWrites меняется под монитором хранилища, readers и признаки закрытия — под монитором сегмента
+        private int pendingWrites;
+        private int readers;
+        private boolean isRetired;
+        private boolean isDeletedOnClose;
+
+        Segment(long id, File file) throws IOException {
+            this(id, file, file);
+        }
+
+        Segment(long id, File file, File openedFile) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.channel = FileChannel.open(openedFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            this.size = channel.size();
+        }
+
+        long append(ByteBuffer buffer) throws IOException {
+            long offset = size;
+            write(buffer, offset);
+            size = offset + buffer.limit();
+            return offset;
+        }
+
+        void write(ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, position + buffer.position());
+            }
+        }
+
+        synchronized void retain() {
+            readers++;
+        }
+
+        synchronized void release() throws IOException {
+            readers--;
+            if (readers == 0 && isRetired) {
+                closeRetired();
+            }
+        }
+
+        /**
+         * Закрывает сегмент, заменённый компактизацией, сразу или после того, как его отпустит последний читатель.
+         */
+        synchronized void retire(boolean isDeleted) throws IOException {
+            isRetired = true;
+            isDeletedOnClose = isDeleted;
+            if (readers == 0) {
+                closeRetired();
+            }
+        }
+
+        private void closeRetired() throws IOException {
+            channel.close();
+            if (isDeletedOnClose) {
+                Files.delete(file.toPath());
+            }
+        }
+
+        void read(ByteBuffer buffer, long position) throws IOException {
+            int start = buffer.position();
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position() - start) == -1) {
+                    throw new EOFException("Неожиданный конец сегмента " + file.getPath());
+                }
+            }
+        }
+    }
+
+    private static final class Location {
+        private final Segment segment;
+        private final long offset;
+        private final int keyLength;
+        private final int valueLength;
+        private final long version;
+
+        Location(Segment segment, long offset, int keyLength, int valueLength, long version) {
+            this.segment = segment;
+            this.offset = offset;
+            this.keyLength = keyLength;
+            this.valueLength = valueLength;
+            this.version = version;
+        }
+
+        int size() {
+            return HEADER_SIZE + keyLength + valueLength;
+        }
+    }
+
+    private static final class Scanned {
+        private final String key;
+        private final Location location;
+        private final long end;
+        private final boolean isPadding;
+
+        Scanned(String key, Location location, long end, boolean isPadding) {
+            this.key = key;
+            this.location = location;
+            this.end = end;
+            this.isPadding = isPadding;
+        }
+    }
+
+    private static final class ValueInputStream extends InputStream {
+        private final Segment segment;
+        private long position;
+        private long remaining;
+
+        ValueInputStream(Location location) {
+            this.segment = location.segment;
+            this.position = location.offset + HEADER_SIZE + location.keyLength;
+            this.remaining = location.valueLength;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (remaining == 0) {
+                return -1;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, (int) Math.min(len, remaining));
+            int read = segment.channel.read(buffer, position);
+            if (read == -1) {
+                throw new EOFException("Неожиданный конец сегмента " + segment.file.getPath());
+            }
+            position += read;
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(remaining, Integer.MAX_VALUE);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package service.collection;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Значения хранятся в массиве по индексу id, пока он плотный; id за его пределами — в TreeMap,
+ * поэтому память и обход пропорциональны размеру, а не наибольшему id. Обход идёт по возрастанию id.
+ */
+public class DenseIdMap<V> extends AbstractMap<Integer, V> {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int MAX_SLOTS_PER_VALUE = 8;
+    private static final int SHRINK_FACTOR = 4;
+
+    private Object[] values;
+    private int denseSize;
+    private final TreeMap<Integer, V> sparse;
+
+    public DenseIdMap() {
+        values = new Object[DEFAULT_CAPACITY];
+        sparse = new TreeMap<>();
+    }
+
+    public DenseIdMap(Map<Integer, ? extends V> map) {
+        this();
+        putAll(map);
+    }
+
+    public V get(int id) {
+        if (id < 0) {
+            return null;
+        }
+        if (id < values.length) {
+            return valueAt(id);
+        }
+        return sparse.isEmpty() ? null : sparse.get(id);
+    }
+
+    public boolean containsKey(int id) {
+        return get(id) != null;
+    }
+
+    public V put(int id, V value) {
+        if (id < 0) {
+            throw new IllegalArgumentException("id должен быть неотрицательным: " + id);
+        }
+        if (value == null) {
+            throw new NullPointerException("Значение для id " + id + " не может быть null");
+        }
+        if (id >= values.length) {
+            if (sparse.containsKey(id) || id >= denseLimit()) {
+                return sparse.put(id, value);
+            }
+            grow(id);
+        }
+        V previous = valueAt(id);
+        values[id] = value;
+        if (previous == null) {
+            denseSize++;
+        }
+        return previous;
+    }
+
+    public V remove(int id) {
+        V previous = removeEntry(id);
+        if (previous != null && values.length > DEFAULT_CAPACITY
+                && values.length > SHRINK_FACTOR * denseLimit()) {
+            shrink();
+        }
+        return previous;
+    }
+
+    /**
+     * @return наименьший занятый id, не меньший fromId, или -1, если такого нет
+     */
+    public int nextId(int fromId) {
+        int from = Math.max(fromId, 0);
+        int id = nextDenseId(from);
+        if (id != -1) {
+            return id;
+        }
+        Integer sparseId = sparse.ceilingKey(Math.max(from, values.length));
+        return sparseId == null ? -1 : sparseId;
+    }
+
+    @Override
+    public V get(Object key) {
+        return key instanceof Integer ? get((int) (Integer) key) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public V put(Integer key, V value) {
+        return put((int) key, value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return key instanceof Integer ? remove((int) (Integer) key) : null;
+    }
+
+    @Override
+    public int size() {
+        return denseSize + sparse.size();
+    }
+
+    @Override
+    public void clear() {
+        values = new Object[DEFAULT_CAPACITY];
+        denseSize = 0;
+        sparse.clear();
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new SlotIterator<>() {
+                    @Override
+                    V element(int id, V value) {
+                        return value;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return DenseIdMap.this.size();
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<Integer, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<Integer, V>> iterator() {
+                return new SlotIterator<>() {
+                    @Override
+                    Entry<Integer, V> element(int id, V value) {
+                        return new SlotEntry(id);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return DenseIdMap.this.size();
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int id) {
+        return (V) values[id];
+    }
+
+    private long denseLimit() {
+        return Math.max(DEFAULT_CAPACITY, (long) MAX_SLOTS_PER_VALUE * (size() + 1));
+    }
+
+    private void grow(int id) {
+        long capacity = Math.max(id + 1L, values.length + (values.length >> 1));
+        int newCapacity = (int) Math.min(capacity, denseLimit());
+        values = Arrays.copyOf(values, newCapacity);
+        SortedMap<Integer, V> moved = sparse.headMap(newCapacity);
+        for (Entry<Integer, V> entry : moved.entrySet()) {
+            values[entry.getKey()] = entry.getValue();
+            denseSize++;
+        }
+        moved.clear();
+    }
+
+    private void shrink() {
+        int newCapacity = (int) denseLimit();
+        for (int id = newCapacity; id < values.length; id++) {
+            if (values[id] != null) {
+                sparse.put(id, valueAt(id));
+                denseSize--;
+            }
+        }
+        values = Arrays.copyOf(values, newCapacity);
+    }
+
+    private V removeEntry(int id) {
+        if (id < 0) {
+            return null;
+        }
+        if (id >= values.length) {
+            return sparse.remove(id);
+        }
+        V previous = valueAt(id);
+        if (previous != null) {
+            values[id] = null;
+            denseSize--;
+        }
+        return previous;
+    }
+
+    private int nextDenseId(int fromId) {
+        for (int id = fromId; id < values.length; id++) {
+            if (values[id] != null) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    private abstract class SlotIterator<E> implements Iterator<E> {
+        private final Iterator<Entry<Integer, V>> sparseEntries = sparse.entrySet().iterator();
+        private int nextDense = nextDenseId(0);
+        private int last = -1;
+        private boolean lastSparse;
+
+        abstract E element(int id, V value);
+
+        @Override
+        public boolean hasNext() {
+            return nextDense != -1 || sparseEntries.hasNext();
+        }
+
+        @Override
+        public E next() {
+            if (nextDense != -1) {
+                last = nextDense;
+                lastSparse = false;
+                nextDense = nextDenseId(nextDense + 1);
+                return element(last, valueAt(last));
+            }
+            Entry<Integer, V> entry = sparseEntries.next();
+            last = entry.getKey();
+            lastSparse = true;
+            return element(last, entry.getValue());
+        }
+
+        @Override
+        public void remove() {
+            if (last == -1) {
+                throw new IllegalStateException();
+            }
+            if (lastSparse) {
+                sparseEntries.remove();
+            } else {
+                removeEntry(last);
+            }
+            last = -1;
+        }
+    }
+
+    private class SlotEntry implements Entry<Integer, V> {
+        private final int id;
+
+        private SlotEntry(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public Integer getKey() {
+            return id;
+        }
+
+        @Override
+        public V getValue() {
+            return DenseIdMap.this.get(id);
+        }
+
+        @Override
+        public V setValue(V value) {
+            return put(id, value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) return false;
+            Entry<?, ?> entry = (Entry<?, ?>) o;
+            return getKey().equals(entry.getKey()) && java.util.Objects.equals(getValue(), entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            V value = getValue();
+            return id ^ (value == null ? 0 : value.hashCode());
+        }
+    }
+}
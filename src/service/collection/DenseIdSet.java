@@ -0,0 +1,122 @@
+package service.collection;
+
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Множество неотрицательных id: id держатся битами, пока битов не больше чем по 64 на элемент,
+ * остальные — в TreeSet, как и в {@link DenseIdMap}. Обход идёт по возрастанию id.
+ */
+public class DenseIdSet {
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final int MAX_BITS_PER_VALUE = 64;
+
+    private BitSet dense;
+    private int denseCapacity;
+    private int denseSize;
+    private final TreeSet<Integer> sparse;
+
+    public DenseIdSet() {
+        dense = new BitSet();
+        denseCapacity = DEFAULT_CAPACITY;
+        sparse = new TreeSet<>();
+    }
+
+    public boolean add(int id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("id должен быть неотрицательным: " + id);
+        }
+        if (id >= denseCapacity) {
+            if (sparse.contains(id) || id >= denseLimit()) {
+                return sparse.add(id);
+            }
+            grow(id);
+        }
+        if (dense.get(id)) {
+            return false;
+        }
+        dense.set(id);
+        denseSize++;
+        return true;
+    }
+
+    public boolean remove(int id) {
+        if (id < 0) {
+            return false;
+        }
+        if (id >= denseCapacity) {
+            return sparse.remove(id);
+        }
+        if (!dense.get(id)) {
+            return false;
+        }
+        dense.clear(id);
+        denseSize--;
+        return true;
+    }
+
+    public boolean contains(int id) {
+        if (id < 0) {
+            return false;
+        }
+        return id < denseCapacity ? dense.get(id) : sparse.contains(id);
+    }
+
+    public void removeIf(IntPredicate idFilter) {
+        for (int id = dense.nextSetBit(0); id >= 0; id = dense.nextSetBit(id + 1)) {
+            if (idFilter.test(id)) {
+                dense.clear(id);
+                denseSize--;
+            }
+        }
+        Iterator<Integer> iterator = sparse.iterator();
+        while (iterator.hasNext()) {
+            if (idFilter.test(iterator.next())) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public void forEach(IntConsumer action) {
+        for (int id = dense.nextSetBit(0); id >= 0; id = dense.nextSetBit(id + 1)) {
+            action.accept(id);
+        }
+        for (int id : sparse) {
+            action.accept(id);
+        }
+    }
+
+    public int size() {
+        return denseSize + sparse.size();
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void clear() {
+        dense = new BitSet();
+        denseCapacity = DEFAULT_CAPACITY;
+        denseSize = 0;
+        sparse.clear();
+    }
+
+    private long denseLimit() {
+        return Math.max(DEFAULT_CAPACITY, (long) MAX_BITS_PER_VALUE * (size() + 1));
+    }
+
+    private void grow(int id) {
+        long capacity = Math.max(id + 1L, Math.min(denseLimit(), 2L * denseCapacity));
+        denseCapacity = (int) Math.min(Integer.MAX_VALUE, capacity);
+        SortedSet<Integer> migrated = sparse.headSet(denseCapacity);
+        for (int sparseId : migrated) {
+            dense.set(sparseId);
+            denseSize++;
+        }
+        migrated.clear();
+    }
+}
@@ -1,20 +1,20 @@
 package service.history;
 
 import model.Task;
+import service.collection.DenseIdMap;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 
 public class InMemoryHistoryManager implements HistoryManager {
-    private HashMap<Integer, Node<Task>> idToNode;
+    private DenseIdMap<Node<Task>> idToNode;
     private Node<Task> head;
     private Node<Task> tail;
 
     public InMemoryHistoryManager() {
         head = null;
         tail = null;
-        idToNode = new HashMap<>();
+        idToNode = new DenseIdMap<>();
     }
 
     @Override
@@ -0,0 +1,652 @@
+package service.task;
+
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import model.Task;
+import service.Managers;
+import service.history.HistoryManager;
+import service.task.index.EpicAggregates;
+import service.task.index.SnapshotView;
+import service.task.index.TimeSlot;
+import service.task.index.TimeSlotIndex;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Подзадачи и эпик меняются под блокировкой этого эпика, общая — только у индекса временных интервалов.
+ * Эпики наружу отдаются копиями, снятыми под их блокировкой. Просмотр попадает в историю под той же
+ * блокировкой, под которой задача удаляется, поэтому удалённая задача не вернётся в историю.
+ */
+public class ConcurrentTaskManager implements TaskManager {
+    private final AtomicInteger newTaskId;
+    private final ConcurrentNavigableMap<Integer, Task> idToTask;
+    private final ConcurrentNavigableMap<Integer, Subtask> idToSubtask;
+    private final ConcurrentNavigableMap<Integer, Epic> idToEpic;
+    private final ConcurrentMap<Integer, EpicAggregates> epicIdToAggregates;
+    private final ConcurrentNavigableMap<TimeSlot, Task> prioritizedTasks;
+    private final ConcurrentNavigableMap<TimeSlot, Task> endTimes;
+    private final Map<Status, ConcurrentNavigableMap<Integer, Task>> statusToTasks;
+    private final ConcurrentMap<Integer, IndexEntry> idToIndexEntry;
+    private final TimeSlotIndex timeSlots;
+    private final HistoryManager historyManager;
+    private final SnapshotView<Task> taskView;
+    private final SnapshotView<Subtask> subtaskView;
+    private final SnapshotView<Epic> epicView;
+    private final SnapshotView<Task> prioritizedView;
+
+    public ConcurrentTaskManager() {
+        newTaskId = new AtomicInteger();
+        idToTask = new ConcurrentSkipListMap<>();
+        idToSubtask = new ConcurrentSkipListMap<>();
+        idToEpic = new ConcurrentSkipListMap<>();
+        epicIdToAggregates = new ConcurrentHashMap<>();
+        prioritizedTasks = new ConcurrentSkipListMap<>();
+        endTimes = new ConcurrentSkipListMap<>(TimeSlot.END_TIME_ORDER);
+        statusToTasks = new EnumMap<>(Status.class);
+        for (Status status : Status.values()) {
+            statusToTasks.put(status, new ConcurrentSkipListMap<>());
+        }
+        idToIndexEntry = new ConcurrentHashMap<>();
+        timeSlots = new TimeSlotIndex();
+        historyManager = Managers.getDefaultHistory();
+        taskView = new SnapshotView<>(idToTask::values);
+        subtaskView = new SnapshotView<>(idToSubtask::values);
+        epicView = new SnapshotView<>(() -> detachAll(idToEpic.values()));
+        prioritizedView = new SnapshotView<>(() -> detachAll(prioritizedTasks.values()));
+    }
+
+    @Override
+    public List<Task> getAllTasks() {
+        return taskView.get();
+    }
+
+    @Override
+    public List<Subtask> getAllSubtasks() {
+        return subtaskView.get();
+    }
+
+    @Override
+    public List<Epic> getAllEpics() {
+        return epicView.get();
+    }
+
+    @Override
+    public void removeAllTasks() {
+        for (Integer id : idToTask.keySet()) {
+            removeTask(id);
+        }
+    }
+
+    @Override
+    public void removeAllSubtasks() {
+        for (Map.Entry<Integer, EpicAggregates> entry : epicIdToAggregates.entrySet()) {
+            EpicAggregates aggregates = entry.getValue();
+            synchronized (aggregates) {
+                Epic epic = getLockedEpic(entry.getKey(), aggregates);
+                if (epic == null || epic.getSubtaskIds().isEmpty()) {
+                    continue;
+                }
+                for (Integer subtaskId : epic.getSubtaskIds()) {
+                    Subtask subtask = idToSubtask.get(subtaskId);
+                    if (subtask != null && subtask.getEpicId() == epic.getId()) {
+                        removeSubtaskEntry(subtaskId);
+                        aggregates.remove(subtaskId);
+                    }
+                }
+                epic.removeAllSubtaskIds();
+                refreshEpic(epic, aggregates);
+            }
+        }
+        for (Integer id : idToSubtask.keySet()) {
+            removeSubtask(id);
+        }
+    }
+
+    @Override
+    public void removeAllEpics() {
+        for (Integer id : idToEpic.keySet()) {
+            removeEpic(id);
+        }
+        for (Integer id : idToSubtask.keySet()) {
+            removeSubtask(id);
+        }
+    }
+
+    @Override
+    public Task getTask(int id) {
+        synchronized (timeSlots) {
+            Task task = idToTask.get(id);
+            addToHistory(task);
+            return task;
+        }
+    }
+
+    @Override
+    public Subtask getSubtask(int id) {
+        while (true) {
+            Subtask subtask = idToSubtask.get(id);
+            if (subtask == null) {
+                return null;
+            }
+            EpicAggregates aggregates = epicIdToAggregates.get(subtask.getEpicId());
+            if (aggregates == null) {
+                return subtask;
+            }
+            synchronized (aggregates) {
+                Subtask current = idToSubtask.get(id);
+                if (current == null || current.getEpicId() == subtask.getEpicId()) {
+                    addToHistory(current);
+                    return current;
+                }
+            }
+        }
+    }
+
+    @Override
+    public Epic getEpic(int id) {
+        EpicAggregates aggregates = epicIdToAggregates.get(id);
+        if (aggregates == null) {
+            return null;
+        }
+        synchronized (aggregates) {
+            Epic epic = getLockedEpic(id, aggregates);
+            addToHistory(epic);
+            return epic == null ? null : copyOf(epic);
+        }
+    }
+
+    @Override
+    public int addNewTask(Task task) {
+        int id = generateId();
+        task.setId(id);
+        synchronized (timeSlots) {
+            if (timeSlots.intersectsWith(task)) {
+                return -1;
+            }
+            timeSlots.add(task);
+            idToTask.put(id, task);
+            index(task);
+        }
+        taskView.invalidate();
+        return id;
+    }
+
+    @Override
+    public int addNewEpic(Epic epic) {
+        int id = generateId();
+        epic.setId(id);
+        epicIdToAggregates.put(id, EpicAggregates.forSingleEpic());
+        idToEpic.put(id, epic);
+        index(epic);
+        epicView.invalidate();
+        return id;
+    }
+
+    @Override
+    public int addNewSubtask(Subtask subtask) {
+        int id = generateId();
+        subtask.setId(id);
+        int epicId = subtask.getEpicId();
+        EpicAggregates aggregates = epicIdToAggregates.get(epicId);
+        if (aggregates == null) {
+            return -1;
+        }
+        synchronized (aggregates) {
+            Epic epic = getLockedEpic(epicId, aggregates);
+            if (epic == null || !reserveTimeSlot(subtask)) {
+                return -1;
+            }
+            idToSubtask.put(id, subtask);
+            index(subtask);
+            subtaskView.invalidate();
+            epic.addSubtaskId(id);
+            aggregates.put(subtask);
+            refreshEpic(epic, aggregates);
+        }
+        return id;
+    }
+
+    @Override
+    public boolean updateTask(Task task) {
+        if (task.getId() == null) {
+            return false;
+        }
+        synchronized (timeSlots) {
+            if (!idToTask.containsKey(task.getId()) || timeSlots.intersectsWith(task)) {
+                return false;
+            }
+            timeSlots.add(task);
+            idToTask.put(task.getId(), task);
+            reindex(task);
+        }
+        taskView.invalidate();
+        return true;
+    }
+
+    @Override
+    public boolean updateEpic(Epic epic) {
+        if (epic.getId() == null) {
+            return false;
+        }
+        EpicAggregates aggregates = epicIdToAggregates.get(epic.getId());
+        if (aggregates == null) {
+            return false;
+        }
+        synchronized (aggregates) {
+            if (getLockedEpic(epic.getId(), aggregates) == null) {
+                return false;
+            }
+            idToEpic.replace(epic.getId(), epic);
+            reindex(epic);
+        }
+        epicView.invalidate();
+        return true;
+    }
+
+    @Override
+    public boolean updateSubtask(Subtask subtask) {
+        Integer id = subtask.getId();
+        if (id == null || !idToSubtask.containsKey(id)) {
+            return false;
+        }
+        EpicAggregates aggregates = epicIdToAggregates.get(subtask.getEpicId());
+        if (aggregates == null) {
+            return false;
+        }
+        Integer previousEpicId;
+        synchronized (aggregates) {
+            Epic epic = getLockedEpic(subtask.getEpicId(), aggregates);
+            Subtask previous = idToSubtask.get(id);
+            if (epic == null || previous == null || !reserveTimeSlot(subtask)) {
+                return false;
+            }
+            idToSubtask.put(id, subtask);
+            reindex(subtask);
+            subtaskView.invalidate();
+            aggregates.put(subtask);
+            refreshEpic(epic, aggregates);
+            previousEpicId = previous.getEpicId() != subtask.getEpicId() ? previous.getEpicId() : null;
+        }
+        if (previousEpicId != null) {
+            detachFromEpic(id, previousEpicId);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean removeTask(int id) {
+        synchronized (timeSlots) {
+            if (idToTask.remove(id) == null) {
+                return false;
+            }
+            timeSlots.remove(id);
+            unindex(id);
+            removeFromHistory(id);
+        }
+        taskView.invalidate();
+        return true;
+    }
+
+    @Override
+    public boolean removeEpic(int id) {
+        EpicAggregates aggregates = epicIdToAggregates.get(id);
+        if (aggregates == null) {
+            return false;
+        }
+        synchronized (aggregates) {
+            Epic epic = getLockedEpic(id, aggregates);
+            if (epic == null) {
+                return false;
+            }
+            for (Integer subtaskId : epic.getSubtaskIds()) {
+                if (idToSubtask.remove(subtaskId) != null) {
+                    releaseTimeSlot(subtaskId);
+                    unindex(subtaskId);
+                    removeFromHistory(subtaskId);
+                }
+            }
+            epicIdToAggregates.remove(id, aggregates);
+            idToEpic.remove(id);
+            unindex(id);
+            removeFromHistory(id);
+        }
+        epicView.invalidate();
+        subtaskView.invalidate();
+        return true;
+    }
+
+    @Override
+    public boolean removeSubtask(int id) {
+        Subtask subtask = idToSubtask.get(id);
+        if (subtask == null) {
+            return false;
+        }
+        EpicAggregates aggregates = epicIdToAggregates.get(subtask.getEpicId());
+        if (aggregates == null) {
+            return removeSubtaskEntry(id);
+        }
+        synchronized (aggregates) {
+            if (!removeSubtaskEntry(id)) {
+                return false;
+            }
+            Epic epic = getLockedEpic(subtask.getEpicId(), aggregates);
+            if (epic != null) {
+                epic.removeSubtaskId(id);
+                aggregates.remove(id);
+                refreshEpic(epic, aggregates);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public List<Integer> addAll(Collection<? extends Task> tasks) {
+        List<Integer> ids = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            if (task instanceof Epic) {
+                ids.add(addNewEpic((Epic) task));
+            } else if (task instanceof Subtask) {
+                ids.add(addNewSubtask((Subtask) task));
+            } else {
+                ids.add(addNewTask(task));
+            }
+        }
+        return ids;
+    }
+
+    @Override
+    public List<Boolean> updateAll(Collection<? extends Task> tasks) {
+        List<Boolean> results = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            if (task instanceof Epic) {
+                results.add(updateEpic((Epic) task));
+            } else if (task instanceof Subtask) {
+                results.add(updateSubtask((Subtask) task));
+            } else {
+                results.add(updateTask(task));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public List<Boolean> removeAll(Collection<Integer> ids) {
+        List<Boolean> results = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            if (id == null) {
+                results.add(false);
+            } else if (idToTask.containsKey(id)) {
+                results.add(removeTask(id));
+            } else if (idToSubtask.containsKey(id)) {
+                results.add(removeSubtask(id));
+            } else {
+                results.add(removeEpic(id));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        List<Task> history;
+        synchronized (historyManager) {
+            history = historyManager.getHistory();
+        }
+        return detachAll(history);
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasks() {
+        return prioritizedView.get();
+    }
+
+    @Override
+    public List<Task> getTasksPage(int afterId, int limit) {
+        return getPage(idToTask.tailMap(afterId, false), limit);
+    }
+
+    @Override
+    public List<Subtask> getSubtasksPage(int afterId, int limit) {
+        return getPage(idToSubtask.tailMap(afterId, false), limit);
+    }
+
+    @Override
+    public List<Epic> getEpicsPage(int afterId, int limit) {
+        return getPage(idToEpic.tailMap(afterId, false), limit);
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasksPage(PrioritizedCursor after, int limit) {
+        if (after == null) {
+            return getPage(prioritizedTasks, limit);
+        }
+        TimeSlot bound = new TimeSlot(after.getId(), after.getStartTime(), null);
+        return getPage(prioritizedTasks.tailMap(bound, false), limit);
+    }
+
+    @Override
+    public List<Task> getTasksByStatus(Status status) {
+        return detachAll(statusToTasks.get(status).values());
+    }
+
+    @Override
+    public List<Task> getTasksStartingBetween(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            return new ArrayList<>();
+        }
+        TimeSlot lowerBound = new TimeSlot(Integer.MIN_VALUE, from, null);
+        TimeSlot upperBound = new TimeSlot(Integer.MIN_VALUE, to, null);
+        return detachAll(prioritizedTasks.subMap(lowerBound, true, upperBound, false).values());
+    }
+
+    @Override
+    public List<Task> getTasksEndingBefore(LocalDateTime deadline) {
+        TimeSlot bound = new TimeSlot(Integer.MIN_VALUE, null, deadline);
+        return detachAll(endTimes.headMap(bound, false).values());
+    }
+
+    @Override
+    public ArrayList<Subtask> getEpicSubtasks(int epicId) {
+        ArrayList<Subtask> subtasksOfEpic = new ArrayList<>();
+        EpicAggregates aggregates = epicIdToAggregates.get(epicId);
+        if (aggregates == null) {
+            return subtasksOfEpic;
+        }
+        List<Integer> subtaskIds;
+        synchronized (aggregates) {
+            Epic epic = getLockedEpic(epicId, aggregates);
+            if (epic == null) {
+                return subtasksOfEpic;
+            }
+            subtaskIds = new ArrayList<>(epic.getSubtaskIds());
+        }
+        for (Integer subtaskId : subtaskIds) {
+            Subtask subtask = idToSubtask.get(subtaskId);
+            if (subtask != null) {
+                subtasksOfEpic.add(subtask);
+            }
+        }
+        return subtasksOfEpic;
+    }
+
+    @Override
+    public void load() {
+
+    }
+
+    private <K, T extends Task> List<T> getPage(Map<K, T> tail, int limit) {
+        List<T> page = new ArrayList<>();
+        for (T task : tail.values()) {
+            if (page.size() >= limit) {
+                break;
+            }
+            page.add(detach(task));
+        }
+        return page;
+    }
+
+    private <T extends Task> List<T> detachAll(Collection<T> tasks) {
+        List<T> detached = new ArrayList<>(tasks.size());
+        for (T task : tasks) {
+            detached.add(detach(task));
+        }
+        return detached;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Task> T detach(T task) {
+        if (!(task instanceof Epic)) {
+            return task;
+        }
+        Epic epic = (Epic) task;
+        EpicAggregates aggregates = epicIdToAggregates.get(epic.getId());
+        if (aggregates == null) {
+            return (T) copyOf(epic);
+        }
+        synchronized (aggregates) {
+            return (T) copyOf(epic);
+        }
+    }
+
+    private static Epic copyOf(Epic epic) {
+        Epic copy = new Epic(epic.getId(), epic.getName(), epic.getDescription(), epic.getStartTime(),
+                epic.getDuration(), epic.getEndTime(), epic.getStatus());
+        for (Integer subtaskId : epic.getSubtaskIds()) {
+            copy.addSubtaskId(subtaskId);
+        }
+        return copy;
+    }
+
+    private int generateId() {
+        return newTaskId.incrementAndGet();
+    }
+
+    private Epic getLockedEpic(int epicId, EpicAggregates aggregates) {
+        if (epicIdToAggregates.get(epicId) != aggregates) {
+            return null;
+        }
+        return idToEpic.get(epicId);
+    }
+
+    private void refreshEpic(Epic epic, EpicAggregates aggregates) {
+        aggregates.applyTo(epic);
+        reindex(epic);
+        epicView.invalidate();
+    }
+
+    private void detachFromEpic(int subtaskId, int epicId) {
+        EpicAggregates aggregates = epicIdToAggregates.get(epicId);
+        if (aggregates == null) {
+            return;
+        }
+        synchronized (aggregates) {
+            Epic epic = getLockedEpic(epicId, aggregates);
+            if (epic != null) {
+                aggregates.remove(subtaskId);
+                refreshEpic(epic, aggregates);
+            }
+        }
+    }
+
+    private boolean removeSubtaskEntry(int id) {
+        if (idToSubtask.remove(id) == null) {
+            return false;
+        }
+        subtaskView.invalidate();
+        releaseTimeSlot(id);
+        unindex(id);
+        removeFromHistory(id);
+        return true;
+    }
+
+    private boolean reserveTimeSlot(Task task) {
+        synchronized (timeSlots) {
+            if (timeSlots.intersectsWith(task)) {
+                return false;
+            }
+            timeSlots.add(task);
+            return true;
+        }
+    }
+
+    private void releaseTimeSlot(int id) {
+        synchronized (timeSlots) {
+            timeSlots.remove(id);
+        }
+    }
+
+    private void index(Task task) {
+        idToIndexEntry.compute(task.getId(), (id, previous) -> replaceIndexEntry(previous, task));
+    }
+
+    private void reindex(Task task) {
+        idToIndexEntry.computeIfPresent(task.getId(), (id, previous) -> replaceIndexEntry(previous, task));
+    }
+
+    private void unindex(int id) {
+        idToIndexEntry.computeIfPresent(id, (key, previous) -> {
+            removeIndexEntry(previous);
+            return null;
+        });
+    }
+
+    private IndexEntry replaceIndexEntry(IndexEntry previous, Task task) {
+        if (previous != null) {
+            removeIndexEntry(previous);
+        }
+        IndexEntry entry = new IndexEntry(TimeSlot.of(task), task.getStatus());
+        prioritizedTasks.put(entry.slot, task);
+        if (entry.slot.getEndTime() != null) {
+            endTimes.put(entry.slot, task);
+        }
+        if (entry.status != null) {
+            statusToTasks.get(entry.status).put(entry.slot.getId(), task);
+        }
+        prioritizedView.invalidate();
+        return entry;
+    }
+
+    private void removeIndexEntry(IndexEntry entry) {
+        prioritizedTasks.remove(entry.slot);
+        endTimes.remove(entry.slot);
+        if (entry.status != null) {
+            statusToTasks.get(entry.status).remove(entry.slot.getId());
+        }
+        prioritizedView.invalidate();
+    }
+
+    private void addToHistory(Task task) {
+        if (task != null) {
+            synchronized (historyManager) {
+                historyManager.add(task);
+            }
+        }
+    }
+
+    private void removeFromHistory(int id) {
+        synchronized (historyManager) {
+            historyManager.remove(id);
+        }
+    }
+
+    private static class IndexEntry {
+        private final TimeSlot slot;
+        private final Status status;
+
+        private IndexEntry(TimeSlot slot, Status status) {
+            this.slot = slot;
+            this.status = status;
+        }
+    }
+}
@@ -5,41 +5,118 @@ import model.Status;
 import model.Subtask;
 import model.Task;
 import service.Managers;
+import service.collection.DenseIdMap;
 import service.history.HistoryManager;
 import service.task.exceptions.ManagerSaveException;
-
-import java.io.BufferedWriter;
+import service.task.storage.AtomicFiles;
+import service.task.storage.BinarySnapshot;
+import service.task.storage.CompactionPolicy;
+import service.task.storage.FsyncPolicy;
+import service.task.storage.Snapshot;
+import service.task.storage.WriteAheadLog;
+
+import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 public class FileBackedTasksManager extends InMemoryTaskManager {
+    private static final String PUT_RECORD = "PUT";
+    private static final String DELETE_RECORD = "DEL";
+    private static final String CLEAR_RECORD = "CLEAR";
+    private static final String VIEW_RECORD = "VIEW";
+    private static final String SET_RECORD = "SET";
+    private static final long MIN_HISTORY_LOG_BYTES = 64 * 1024;
+    private static final int PARALLEL_CHUNK_SIZE = 4 * 1024 * 1024;
 
     private File fileForSaving;
+    private WriteAheadLog log;
+    private WriteAheadLog historyLog;
+    private long compactedHistoryLogSize;
+    private CompactionPolicy compactionPolicy;
+    private FsyncPolicy fsyncPolicy;
+    private boolean asyncWrites;
+    private ExecutorService compactor;
+    private Future<?> compaction;
 
     public FileBackedTasksManager(File fileForSaving) {
+        this(fileForSaving, false);
+    }
+
+    /**
+     * @param withLog если true, изменения дописываются в журнал {@link #logFileFor(File)} поверх снимка
+     */
+    public FileBackedTasksManager(File fileForSaving, boolean withLog) {
+        this(fileForSaving, withLog ? CompactionPolicy.DEFAULT : null);
+    }
+
+    public FileBackedTasksManager(File fileForSaving, CompactionPolicy compactionPolicy) {
+        this(fileForSaving, compactionPolicy, FsyncPolicy.never(), false);
+    }
+
+    /**
+     * @param compactionPolicy пороги компактизации журнала или null, если журнал не ведётся
+     * @param asyncWrites      если true, операции не ждут диска; дождаться записи можно через
+     *                         {@link #awaitDurability()}
+     */
+    public FileBackedTasksManager(File fileForSaving, CompactionPolicy compactionPolicy, FsyncPolicy fsyncPolicy,
+                                  boolean asyncWrites) {
         super();
         this.fileForSaving = fileForSaving;
-        save();
+        this.compactionPolicy = compactionPolicy;
+        this.fsyncPolicy = fsyncPolicy;
+        this.asyncWrites = asyncWrites;
+        writeSnapshot();
+        historyLog = new WriteAheadLog(historyFileFor(fileForSaving), true, 0, fsyncPolicy, asyncWrites);
+        File logFile = logFileFor(fileForSaving);
+        segmentFileFor(fileForSaving).delete();
+        if (compactionPolicy != null) {
+            log = new WriteAheadLog(logFile, true, 0, fsyncPolicy, asyncWrites);
+        } else {
+            logFile.delete();
+        }
     }
 
     public FileBackedTasksManager() {
         super();
     }
 
-    public FileBackedTasksManager(HistoryManager historyManager, HashMap<Integer, Task> idToTask, HashMap<Integer,
-            Epic> idToEpic, HashMap<Integer, Subtask> idToSubtask, Set<Task> prioritizedTasks, File fileForSaving) {
+    public FileBackedTasksManager(HistoryManager historyManager, DenseIdMap<Task> idToTask, DenseIdMap<Epic> idToEpic,
+                                  DenseIdMap<Subtask> idToSubtask, File fileForSaving) {
+        this(historyManager, idToTask, idToEpic, idToSubtask, fileForSaving, null, null, null,
+                FsyncPolicy.never(), false);
+    }
+
+    private FileBackedTasksManager(HistoryManager historyManager, DenseIdMap<Task> idToTask,
+                                   DenseIdMap<Epic> idToEpic, DenseIdMap<Subtask> idToSubtask, File fileForSaving,
+                                   WriteAheadLog log, WriteAheadLog historyLog, CompactionPolicy compactionPolicy,
+                                   FsyncPolicy fsyncPolicy, boolean asyncWrites) {
         super();
         this.historyManager = historyManager;
         this.idToTask = idToTask;
         this.idToSubtask = idToSubtask;
         this.idToEpic = idToEpic;
-        this.prioritizedTasks = prioritizedTasks;
         this.fileForSaving = fileForSaving;
+        this.log = log;
+        this.historyLog = historyLog;
+        this.compactionPolicy = compactionPolicy;
+        this.fsyncPolicy = fsyncPolicy;
+        this.asyncWrites = asyncWrites;
+        rebuildIndexes();
     }
 
     @Override
@@ -105,24 +182,45 @@ public class FileBackedTasksManager extends InMemoryTaskManager {
         return isRemoved;
     }
 
+    @Override
+    public List<Integer> addAll(Collection<? extends Task> tasks) {
+        List<Integer> ids = super.addAll(tasks);
+        save();
+        return ids;
+    }
+
+    @Override
+    public List<Boolean> updateAll(Collection<? extends Task> tasks) {
+        List<Boolean> results = super.updateAll(tasks);
+        save();
+        return results;
+    }
+
+    @Override
+    public List<Boolean> removeAll(Collection<Integer> ids) {
+        List<Boolean> results = super.removeAll(ids);
+        save();
+        return results;
+    }
+
     @Override
     public Subtask getSubtask(int id) {
         Subtask subtask = super.getSubtask(id);
-        save();
+        saveHistory();
         return subtask;
     }
 
     @Override
     public Task getTask(int id) {
         Task task = super.getTask(id);
-        save();
+        saveHistory();
         return task;
     }
 
     @Override
     public Epic getEpic(int id) {
         Epic epic = super.getEpic(id);
-        save();
+        saveHistory();
         return epic;
     }
 
@@ -144,77 +242,503 @@ public class FileBackedTasksManager extends InMemoryTaskManager {
         save();
     }
 
-    public static FileBackedTasksManager loadFromFile(File file) {
-        String content;
-        HashMap<Integer, Task> idToTask = new HashMap<>();
-        HashMap<Integer, Epic> idToEpic = new HashMap<>();
-        HashMap<Integer, Subtask> idToSubtask = new HashMap<>();
-        Set<Task> prioritizedTasks = new TreeSet<>();
+    public void close() {
+        try {
+            awaitCompaction();
+        } finally {
+            if (compactor != null) {
+                compactor.shutdown();
+            }
+            if (log != null) {
+                log.close();
+            }
+            if (historyLog != null) {
+                historyLog.close();
+            }
+        }
+    }
 
+    public void awaitDurability() {
+        if (log != null) {
+            log.awaitDurability();
+        }
+        if (historyLog != null) {
+            historyLog.awaitDurability();
+        }
+    }
+
+    public void awaitCompaction() {
+        if (compaction == null) {
+            return;
+        }
         try {
-            content = Files.readString(Path.of(file.getPath()));
-        } catch (IOException e) {
-            throw new ManagerSaveException(String.format("Ошибка при чтении из файла: %s" +
-                    ", произошло исключение: %s", file.getPath(), e));
+            compaction.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ManagerSaveException(String.format("Ожидание компактизации журнала файла %s прервано",
+                    fileForSaving.getPath()));
+        } catch (ExecutionException e) {
+            throw new ManagerSaveException(String.format("Ошибка при компактизации журнала файла %s" +
+                    ", произошло исключение: %s", fileForSaving.getPath(), e.getCause()));
         }
+    }
 
-        validateContentsOfFile(file, content);
+    public static File logFileFor(File file) {
+        return new File(file.getPath() + ".log");
+    }
 
-        String[] lines = content.split("\n");
-        int indexOfEmptyLine = findIndexOfEmptyLine(lines);
+    /**
+     * Журнал, перенесённый на время компактизации; если он остался после сбоя, он применяется перед основным.
+     */
+    public static File segmentFileFor(File file) {
+        return new File(file.getPath() + ".log.1");
+    }
 
-        for (int i = 1; i < indexOfEmptyLine; i++) {
-            Task task = fromString(lines[i]);
-            if (task instanceof Epic) {
-                idToEpic.put(task.getId(), (Epic) task);
-            } else if (task instanceof Subtask) {
-                Subtask subtask = (Subtask) task;
-                idToSubtask.put(task.getId(), subtask);
-                addSubtaskIdToEpic(subtask, idToEpic.get(subtask.getEpicId()));
-            } else if (task != null) {
-                idToTask.put(task.getId(), task);
+    /**
+     * Журнал истории просмотров применяется последним, после снимка и журнала задач.
+     */
+    public static File historyFileFor(File file) {
+        return new File(file.getPath() + ".history");
+    }
+
+    @Override
+    protected void onTaskSaved(Task task) {
+        if (log != null) {
+            log.append(PUT_RECORD + "," + toString(task));
+        }
+    }
+
+    @Override
+    protected void onTaskRemoved(int id) {
+        if (log != null) {
+            log.append(DELETE_RECORD + "," + id);
+            historyLog.append(DELETE_RECORD + "," + id);
+        }
+    }
+
+    @Override
+    protected void onAllRemoved(TaskType type) {
+        if (log != null) {
+            log.append(CLEAR_RECORD + "," + type);
+            historyLog.append(SET_RECORD + "," + historyToString(getHistoryIds()));
+        }
+    }
+
+    @Override
+    protected void onTaskViewed(Task task) {
+        if (historyLog != null) {
+            historyLog.append(VIEW_RECORD + "," + task.getId());
+        }
+    }
+
+    /**
+     * Файл с расширением {@value BinarySnapshot#FILE_EXTENSION} сохраняется в двоичном формате, остальные — в CSV.
+     */
+    public void exportTo(File file) {
+        writeSnapshotTo(file, idToTask.values(), idToEpic.values(), idToSubtask.values(), getHistoryIds(), false);
+    }
+
+    public static FileBackedTasksManager loadFromFile(File file) {
+        return loadFromFile(file, CompactionPolicy.DEFAULT);
+    }
+
+    public static FileBackedTasksManager loadFromFile(File file, CompactionPolicy compactionPolicy) {
+        return loadFromFile(file, compactionPolicy, FsyncPolicy.never(), false);
+    }
+
+    /**
+     * @param compactionPolicy пороги компактизации найденного журнала или null для {@link CompactionPolicy#DEFAULT}
+     */
+    public static FileBackedTasksManager loadFromFile(File file, CompactionPolicy compactionPolicy,
+                                                      FsyncPolicy fsyncPolicy, boolean asyncWrites) {
+        Snapshot snapshot = BinarySnapshot.isBinary(file) ? BinarySnapshot.read(file) : readCsvSnapshot(file);
+        return restore(file, snapshot, compactionPolicy, fsyncPolicy, asyncWrites);
+    }
+
+    /**
+     * Результат, включая сообщения об ошибках формата, совпадает с {@link #loadFromFile(File)}.
+     */
+    public static FileBackedTasksManager loadFromFileInParallel(File file, ForkJoinPool pool) {
+        return loadFromFileInParallel(file, pool, PARALLEL_CHUNK_SIZE);
+    }
+
+    public static FileBackedTasksManager loadFromFileInParallel(File file, ForkJoinPool pool,
+                                                                CompactionPolicy compactionPolicy) {
+        return loadFromFileInParallel(file, pool, compactionPolicy, FsyncPolicy.never(), false);
+    }
+
+    public static FileBackedTasksManager loadFromFileInParallel(File file, ForkJoinPool pool,
+                                                                CompactionPolicy compactionPolicy,
+                                                                FsyncPolicy fsyncPolicy, boolean asyncWrites) {
+        return loadFromFileInParallel(file, pool, PARALLEL_CHUNK_SIZE, compactionPolicy, fsyncPolicy, asyncWrites);
+    }
+
+    static FileBackedTasksManager loadFromFileInParallel(File file, ForkJoinPool pool, int chunkSize) {
+        return loadFromFileInParallel(file, pool, chunkSize, CompactionPolicy.DEFAULT, FsyncPolicy.never(), false);
+    }
+
+    static FileBackedTasksManager loadFromFileInParallel(File file, ForkJoinPool pool, int chunkSize,
+                                                         CompactionPolicy compactionPolicy, FsyncPolicy fsyncPolicy,
+                                                         boolean asyncWrites) {
+        Snapshot snapshot = BinarySnapshot.isBinary(file) ? BinarySnapshot.read(file)
+                : readCsvSnapshotInParallel(file, pool, chunkSize);
+        return restore(file, snapshot, compactionPolicy, fsyncPolicy, asyncWrites);
+    }
+
+    private static FileBackedTasksManager restore(File file, Snapshot snapshot, CompactionPolicy compactionPolicy,
+                                                  FsyncPolicy fsyncPolicy, boolean asyncWrites) {
+        if (compactionPolicy == null) {
+            compactionPolicy = CompactionPolicy.DEFAULT;
+        }
+        DenseIdMap<Task> idToTask = snapshot.getIdToTask();
+        DenseIdMap<Epic> idToEpic = snapshot.getIdToEpic();
+        DenseIdMap<Subtask> idToSubtask = snapshot.getIdToSubtask();
+        Set<Integer> historyIds = new LinkedHashSet<>(snapshot.getHistoryIds());
+
+        File logFile = logFileFor(file);
+        File segmentFile = segmentFileFor(file);
+        WriteAheadLog log = null;
+        if (logFile.exists() || segmentFile.exists()) {
+            for (File replayedFile : List.of(segmentFile, logFile)) {
+                int recordCount = WriteAheadLog.recover(replayedFile, (record, index) ->
+                        replayRecord(record, index, replayedFile, idToTask, idToEpic, idToSubtask, historyIds));
+                if (replayedFile == logFile) {
+                    log = new WriteAheadLog(logFile, false, recordCount, fsyncPolicy, asyncWrites);
+                }
             }
         }
-        List<Integer> historyIds = historyFromString(lines[indexOfEmptyLine + 1]);
+        File historyFile = historyFileFor(file);
+        int historyRecordCount = WriteAheadLog.recover(historyFile, (record, index) ->
+                replayHistoryRecord(record, index, historyFile, historyIds));
+        WriteAheadLog historyLog = new WriteAheadLog(historyFile, false, historyRecordCount, fsyncPolicy,
+                asyncWrites);
+
         HistoryManager historyManager = Managers.getDefaultHistory();
-        HashMap<Integer, Task> idToTaskForHistory = new HashMap<>();
+        DenseIdMap<Task> idToTaskForHistory = new DenseIdMap<>();
 
         idToTaskForHistory.putAll(idToTask);
         idToTaskForHistory.putAll(idToEpic);
         idToTaskForHistory.putAll(idToSubtask);
 
-        prioritizedTasks.addAll(idToTaskForHistory.values());
-
         for (Integer id : historyIds) {
             Task task = idToTaskForHistory.get(id);
             if (task != null) {
                 historyManager.add(task);
             }
         }
-        return new FileBackedTasksManager(historyManager, idToTask, idToEpic, idToSubtask, prioritizedTasks, file);
+        FileBackedTasksManager manager = new FileBackedTasksManager(historyManager, idToTask, idToEpic,
+                idToSubtask, file, log, historyLog, log == null ? null : compactionPolicy, fsyncPolicy, asyncWrites);
+        if (log != null && (segmentFile.exists() || compactionPolicy.isExceededBy(log))) {
+            manager.compact();
+        }
+        return manager;
+    }
+
+    private static Snapshot readCsvSnapshot(File file) {
+        Snapshot snapshot = new Snapshot();
+        CsvSection section = new CsvSection(true);
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(file.getPath()), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                section.accept(line, file, snapshot::add);
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException(String.format("Ошибка при чтении из файла: %s" +
+                    ", произошло исключение: %s", file.getPath(), e));
+        }
+        return section.finish(file, snapshot);
+    }
+
+    /**
+     * Части собираются по порядку, поэтому подзадачи привязываются к эпикам, встретившимся в файле раньше них.
+     */
+    private static Snapshot readCsvSnapshotInParallel(File file, ForkJoinPool pool, int chunkSize) {
+        List<ForkJoinTask<CsvSection>> parts = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = 0;
+            while (start < size) {
+                long end = findLineEnd(channel, Math.min(size, start + chunkSize), size);
+                long partStart = start;
+                boolean isFirst = start == 0;
+                parts.add(pool.submit(() -> parseCsvPart(channel, partStart, end, isFirst, file)));
+                start = end;
+            }
+            Snapshot snapshot = new Snapshot();
+            CsvSection merged = new CsvSection(true);
+            for (ForkJoinTask<CsvSection> part : parts) {
+                merged.merge(part.join(), snapshot);
+            }
+            return merged.finish(file, snapshot);
+        } catch (IOException e) {
+            throw new ManagerSaveException(String.format("Ошибка при чтении из файла: %s" +
+                    ", произошло исключение: %s", file.getPath(), e));
+        }
+    }
+
+    private static long findLineEnd(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
     }
 
-    private static void validateContentsOfFile(File file, String content) {
-        String[] lines = content.split("\n");
-        int minLines = 3;
-        if (lines.length < minLines) {
-            throw new ManagerSaveException(String.format("Неверный формат файла: %s. Количество строк в файле" +
-                    " должно быть не менее %d", file.getPath(), minLines));
+    private static CsvSection parseCsvPart(FileChannel channel, long start, long end, boolean isFirst, File file) {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        String text;
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) == -1) {
+                    break;
+                }
+            }
+            buffer.flip();
+            text = StandardCharsets.UTF_8.newDecoder().decode(buffer).toString();
+        } catch (IOException e) {
+            throw new ManagerSaveException(String.format("Ошибка при чтении из файла: %s" +
+                    ", произошло исключение: %s", file.getPath(), e));
+        }
+        CsvSection section = new CsvSection(isFirst);
+        List<Task> tasks = new ArrayList<>();
+        int lineStart = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r') {
+                section.accept(text.substring(lineStart, i), file, tasks::add);
+                if (c == '\r' && i + 1 < length && text.charAt(i + 1) == '\n') {
+                    i++;
+                }
+                lineStart = i + 1;
+            }
         }
+        if (lineStart < length) {
+            section.accept(text.substring(lineStart), file, tasks::add);
+        }
+        section.tasks = tasks;
+        return section;
+    }
 
-        int indexOfEmptyLine = findIndexOfEmptyLine(lines);
-        if (indexOfEmptyLine == -1) {
-            throw new ManagerSaveException(String.format("Неверный формат файла: %s. В файле отсутствует " +
-                    "пустая строка, разделяющая задачи и историю просмотров.", file.getPath()));
+    private static void replayRecord(String record, int recordIndex, File logFile, DenseIdMap<Task> idToTask,
+                                     DenseIdMap<Epic> idToEpic, DenseIdMap<Subtask> idToSubtask,
+                                     Set<Integer> historyIds) {
+        int separator = record.indexOf(',');
+        String kind = separator == -1 ? record : record.substring(0, separator);
+        String value = record.substring(separator + 1);
+        switch (kind) {
+            case PUT_RECORD:
+                validateTaskLine(value, recordIndex, logFile);
+                replayPut(fromString(value), idToTask, idToEpic, idToSubtask);
+                break;
+            case DELETE_RECORD:
+                int id = Integer.parseInt(value);
+                historyIds.remove(id);
+                idToTask.remove(id);
+                idToEpic.remove(id);
+                Subtask subtask = idToSubtask.remove(id);
+                if (subtask != null) {
+                    removeSubtaskIdFromEpic(subtask, idToEpic.get(subtask.getEpicId()));
+                }
+                break;
+            case CLEAR_RECORD:
+                switch (TaskType.valueOf(value)) {
+                    case TASK:
+                        historyIds.removeAll(idToTask.keySet());
+                        idToTask.clear();
+                        break;
+                    case SUBTASK:
+                        historyIds.removeAll(idToSubtask.keySet());
+                        idToSubtask.clear();
+                        for (Epic epic : idToEpic.values()) {
+                            epic.removeAllSubtaskIds();
+                        }
+                        break;
+                    case EPIC:
+                        historyIds.removeAll(idToSubtask.keySet());
+                        historyIds.removeAll(idToEpic.keySet());
+                        idToSubtask.clear();
+                        idToEpic.clear();
+                }
+                break;
+            case VIEW_RECORD:
+                int viewedId = Integer.parseInt(value);
+                historyIds.remove(viewedId);
+                historyIds.add(viewedId);
+                break;
+            default:
+                throw new ManagerSaveException(String.format("Неверный формат журнала: %s. " +
+                        "Неизвестная запись в строке: %d", logFile.getPath(), (recordIndex + 1)));
         }
+    }
 
-        for (int i = 1; i < indexOfEmptyLine; i++) {
-            validateTaskLine(lines[i], i, file);
+    private static void replayHistoryRecord(String record, int recordIndex, File historyFile,
+                                            Set<Integer> historyIds) {
+        int separator = record.indexOf(',');
+        String kind = separator == -1 ? record : record.substring(0, separator);
+        String value = record.substring(separator + 1);
+        switch (kind) {
+            case VIEW_RECORD:
+                int viewedId = Integer.parseInt(value);
+                historyIds.remove(viewedId);
+                historyIds.add(viewedId);
+                break;
+            case DELETE_RECORD:
+                historyIds.remove(Integer.parseInt(value));
+                break;
+            case SET_RECORD:
+                historyIds.clear();
+                historyIds.addAll(historyFromString(value));
+                break;
+            default:
+                throw new ManagerSaveException(String.format("Неверный формат журнала: %s. " +
+                        "Неизвестная запись в строке: %d", historyFile.getPath(), (recordIndex + 1)));
         }
+    }
 
-        if (lines.length < indexOfEmptyLine + 2) {
-            throw new ManagerSaveException(String.format("Неверный формат файла: %s. " +
-                    "Отсутствует строка с информацией об истории просмотров задач", file.getPath()));
+    private static void replayPut(Task task, DenseIdMap<Task> idToTask, DenseIdMap<Epic> idToEpic,
+                                  DenseIdMap<Subtask> idToSubtask) {
+        if (task instanceof Epic) {
+            Epic epic = (Epic) task;
+            Epic previous = idToEpic.put(epic.getId(), epic);
+            if (previous != null) {
+                for (Integer subtaskId : previous.getSubtaskIds()) {
+                    epic.addSubtaskId(subtaskId);
+                }
+            }
+        } else if (task instanceof Subtask) {
+            Subtask subtask = (Subtask) task;
+            Subtask previous = idToSubtask.put(subtask.getId(), subtask);
+            if (previous == null || previous.getEpicId() != subtask.getEpicId()) {
+                if (previous != null) {
+                    removeSubtaskIdFromEpic(previous, idToEpic.get(previous.getEpicId()));
+                }
+                addSubtaskIdToEpic(subtask, idToEpic.get(subtask.getEpicId()));
+            }
+        } else {
+            idToTask.put(task.getId(), task);
+        }
+    }
+
+    /**
+     * Ошибки выбрасываются в {@link #finish} в том же порядке, что и при проверке файла целиком:
+     * сначала количество строк, затем пустая строка, затем строки задач.
+     */
+    private static final class CsvSection {
+        private final boolean startsWithHeader;
+        private int lineCount;
+        private int indexOfEmptyLine = -1;
+        private int indexOfLastNonEmptyLine = -1;
+        private String firstLine;
+        private String historyLine;
+        private int indexOfInvalidLine = -1;
+        private String invalidLine;
+        private RuntimeException parsingError;
+        private List<Task> tasks;
+
+        CsvSection(boolean startsWithHeader) {
+            this.startsWithHeader = startsWithHeader;
+        }
+
+        void accept(String line, File file, Consumer<Task> sink) {
+            int i = lineCount++;
+            if (i == 0) {
+                firstLine = line;
+            }
+            if (!line.isEmpty()) {
+                indexOfLastNonEmptyLine = i;
+            }
+            if (indexOfEmptyLine != -1) {
+                if (i == indexOfEmptyLine + 1) {
+                    historyLine = line;
+                }
+                return;
+            }
+            if (line.isEmpty()) {
+                indexOfEmptyLine = i;
+                return;
+            }
+            if ((i == 0 && startsWithHeader) || indexOfInvalidLine != -1) {
+                return;
+            }
+            try {
+                validateTaskLine(line, i, file);
+            } catch (RuntimeException e) {
+                indexOfInvalidLine = i;
+                invalidLine = line;
+                return;
+            }
+            if (parsingError == null) {
+                try {
+                    Task task = fromString(line);
+                    if (task != null) {
+                        sink.accept(task);
+                    }
+                } catch (RuntimeException e) {
+                    parsingError = e;
+                }
+            }
+        }
+
+        void merge(CsvSection part, Snapshot snapshot) {
+            int offset = lineCount;
+            lineCount += part.lineCount;
+            if (part.indexOfLastNonEmptyLine != -1) {
+                indexOfLastNonEmptyLine = offset + part.indexOfLastNonEmptyLine;
+            }
+            if (indexOfEmptyLine != -1) {
+                if (historyLine == null && offset == indexOfEmptyLine + 1) {
+                    historyLine = part.firstLine;
+                }
+                return;
+            }
+            if (indexOfInvalidLine == -1 && part.indexOfInvalidLine != -1) {
+                indexOfInvalidLine = offset + part.indexOfInvalidLine;
+                invalidLine = part.invalidLine;
+            }
+            if (indexOfInvalidLine == -1 && parsingError == null) {
+                parsingError = part.parsingError;
+            }
+            if (indexOfInvalidLine == -1 && parsingError == null) {
+                for (Task task : part.tasks) {
+                    snapshot.add(task);
+                }
+            }
+            if (part.indexOfEmptyLine != -1) {
+                indexOfEmptyLine = offset + part.indexOfEmptyLine;
+                historyLine = part.historyLine;
+            }
+        }
+
+        Snapshot finish(File file, Snapshot snapshot) {
+            int minLines = 3;
+            if (indexOfLastNonEmptyLine + 1 < minLines) {
+                throw new ManagerSaveException(String.format("Неверный формат файла: %s. Количество строк в файле" +
+                        " должно быть не менее %d", file.getPath(), minLines));
+            }
+            if (indexOfEmptyLine == -1 || indexOfEmptyLine > indexOfLastNonEmptyLine) {
+                throw new ManagerSaveException(String.format("Неверный формат файла: %s. В файле отсутствует " +
+                        "пустая строка, разделяющая задачи и историю просмотров.", file.getPath()));
+            }
+            if (indexOfInvalidLine != -1) {
+                validateTaskLine(invalidLine, indexOfInvalidLine, file);
+            }
+            if (historyLine == null) {
+                throw new ManagerSaveException(String.format("Неверный формат файла: %s. " +
+                        "Отсутствует строка с информацией об истории просмотров задач", file.getPath()));
+            }
+            if (parsingError != null) {
+                throw parsingError;
+            }
+            snapshot.getHistoryIds().addAll(historyFromString(historyLine));
+            return snapshot;
         }
     }
 
@@ -237,20 +761,116 @@ public class FileBackedTasksManager extends InMemoryTaskManager {
     }
 
     protected void save() {
+        if (log == null) {
+            writeSnapshot();
+            if (historyLog != null) {
+                historyLog.flush();
+                if (historyLog.getSize() > 0) {
+                    historyLog.rewrite(List.of());
+                }
+            }
+            return;
+        }
+        historyLog.flush();
+        log.flush();
+        if (compactionPolicy.isExceededBy(log) && (compaction == null || compaction.isDone())) {
+            startCompaction();
+        }
+    }
+
+    /**
+     * Журнал истории сворачивается в одну запись, когда вырастает вдвое с прошлого раза.
+     */
+    protected void saveHistory() {
+        if (historyLog == null) {
+            save();
+            return;
+        }
+        historyLog.flush();
+        if (historyLog.getSize() > Math.max(MIN_HISTORY_LOG_BYTES, 2 * compactedHistoryLogSize)) {
+            historyLog.rewrite(List.of(SET_RECORD + "," + historyToString(getHistoryIds())));
+            compactedHistoryLogSize = historyLog.getSize();
+        }
+    }
+
+    /**
+     * Эпики могут попасть в фоновый снимок в более позднем состоянии, но каждое такое изменение есть
+     * и в новом журнале, поэтому восстановление всё равно придёт к последнему состоянию.
+     */
+    private void startCompaction() {
+        List<Task> tasks = new ArrayList<>(idToTask.values());
+        List<Epic> epics = new ArrayList<>(idToEpic.values());
+        List<Subtask> subtasks = new ArrayList<>(idToSubtask.values());
+        List<Integer> historyIds = getHistoryIds();
+        File segmentFile = segmentFileFor(fileForSaving);
+        boolean sync = isSyncWrites();
+        log.rotateTo(segmentFile);
+        if (compactor == null) {
+            compactor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "compaction-" + fileForSaving.getName());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        compaction = compactor.submit(() -> {
+            writeSnapshotTo(fileForSaving, tasks, epics, subtasks, historyIds, sync);
+            segmentFile.delete();
+        });
+    }
+
+    private void compact() {
+        writeSnapshot();
+        log.close();
+        log = new WriteAheadLog(logFileFor(fileForSaving), true, 0, fsyncPolicy, asyncWrites);
+        segmentFileFor(fileForSaving).delete();
+    }
+
+    private void writeSnapshot() {
+        writeSnapshotTo(fileForSaving, idToTask.values(), idToEpic.values(), idToSubtask.values(), getHistoryIds(),
+                isSyncWrites());
+    }
+
+    private boolean isSyncWrites() {
+        return fsyncPolicy != null && !fsyncPolicy.isNever();
+    }
+
+    /**
+     * Снимок пишется во временный файл и переименовывается в file, поэтому сбой во время записи
+     * оставляет прежний снимок целым.
+     */
+    private static void writeSnapshotTo(File file, Collection<? extends Task> tasks, Collection<Epic> epics,
+                                        Collection<Subtask> subtasks, List<Integer> historyIds, boolean sync) {
+        if (BinarySnapshot.isBinary(file)) {
+            BinarySnapshot.write(file, tasks, epics, subtasks, historyIds, sync);
+        } else {
+            AtomicFiles.write(file, snapshotToString(tasks, epics, subtasks, historyIds), sync);
+        }
+    }
+
+    private List<Integer> getHistoryIds() {
+        List<Integer> historyIds = new ArrayList<>();
+        for (Task task : historyManager.getHistory()) {
+            historyIds.add(task.getId());
+        }
+        return historyIds;
+    }
+
+    private static String snapshotToString(Collection<? extends Task> tasks, Collection<Epic> epics,
+                                           Collection<Subtask> subtasks, List<Integer> historyIds) {
         StringBuilder sb = new StringBuilder();
         boolean isEmpty = true;
         sb.append("id,type,name,status,description,startTime,duration,endTime,epic\n");
-        for (Task task : idToTask.values()) {
+        for (Task task : tasks) {
             sb.append(toString(task)).append(",\n");
             isEmpty = false;
         }
 
-        for (Epic epic : idToEpic.values()) {
+        for (Epic epic : epics) {
             sb.append(toString(epic)).append(",\n");
             isEmpty = false;
         }
 
-        for (Subtask subtask : idToSubtask.values()) {
+        for (Subtask subtask : subtasks) {
             sb.append(toString(subtask)).append(",\n");
             isEmpty = false;
         }
@@ -260,18 +880,11 @@ public class FileBackedTasksManager extends InMemoryTaskManager {
         }
 
         sb.append("\n");
-        sb.append(historyToString(historyManager));
-
-        try (FileWriter fileWriter = new FileWriter(fileForSaving);
-             BufferedWriter bufferedWriter = new BufferedWriter(fileWriter)) {
-            bufferedWriter.write(sb.toString());
-        } catch (IOException e) {
-            throw new ManagerSaveException(String.format("Ошибка при попытке записи в файл: %s" +
-                    ", произошло исключение: %s", fileForSaving.getPath(), e));
-        }
+        sb.append(historyToString(historyIds));
+        return sb.toString();
     }
 
-    private String toString(Task task) {
+    private static String toString(Task task) {
         if (task instanceof Subtask) {
             Subtask subtask = (Subtask) task;
             return subtask.getId() + "," + TaskType.SUBTASK + "," + subtask.getName() +
@@ -320,27 +933,23 @@ public class FileBackedTasksManager extends InMemoryTaskManager {
         }
     }
 
-    private static void removeLastComma(StringBuilder sb) {
-        if (sb.indexOf(",") != -1) {
-            sb.delete(sb.lastIndexOf(","), sb.lastIndexOf(",") + 1);
+    private static void removeSubtaskIdFromEpic(Subtask subtask, Epic epic) {
+        if (epic != null) {
+            epic.removeSubtaskId(subtask.getId());
         }
     }
 
-    private static int findIndexOfEmptyLine(String[] lines) {
-        for (int i = 0; i < lines.length; i++) {
-            if (lines[i].isEmpty()) {
-                return i;
-            }
+    private static void removeLastComma(StringBuilder sb) {
+        if (sb.indexOf(",") != -1) {
+            sb.delete(sb.lastIndexOf(","), sb.lastIndexOf(",") + 1);
         }
-        return -1;
     }
 
 
-    private static String historyToString(HistoryManager manager) {
-        List<Task> history = manager.getHistory();
+    private static String historyToString(List<Integer> historyIds) {
         StringBuilder sb = new StringBuilder();
-        for (Task task : history) {
-            sb.append(task.getId());
+        for (Integer id : historyIds) {
+            sb.append(id);
             sb.append(",");
         }
         removeLastComma(sb);
@@ -1,31 +1,72 @@
 package service.task;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
 import com.google.gson.reflect.TypeToken;
 import http_client.KVTaskClient;
 import model.Epic;
 import model.Subtask;
 import model.Task;
 import service.Managers;
+import service.collection.DenseIdMap;
 
 import java.lang.reflect.Type;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.stream.Collectors;
 
+/**
+ * Задачи одного типа с id из [n * SHARD_SIZE, (n + 1) * SHARD_SIZE) лежат по ключу "{тип}-{n}", список непустых
+ * частей — по ключу "shards". Части и список отправляются одним атомарным /mput, поэтому не расходятся.
+ * Опустевшая часть записывается как "[]", чтобы на сервере не оставалось удалённых задач.
+ * Набор частей заранее неизвестен, поэтому {@link #load()} делает два /mget: за списком и за самими частями.
+ */
 public class HttpTaskManager extends FileBackedTasksManager {
+    static final int SHARD_SIZE = 256;
+    private static final String TASKS_KEY = "tasks";
+    private static final String EPICS_KEY = "epics";
+    private static final String SUBTASKS_KEY = "subtasks";
+    private static final String SHARDS_KEY = "shards";
+    private static final String HISTORY_KEY = "history";
+
     private KVTaskClient client;
     private URI KVServerURI;
     private Type taskType;
     private Type epicType;
     private Type subtaskType;
     private Type idType;
+    private Type shardsType;
     private Gson gson;
+    private final Shards tasks = new Shards(TASKS_KEY);
+    private final Shards epics = new Shards(EPICS_KEY);
+    private final Shards subtasks = new Shards(SUBTASKS_KEY);
+    private boolean isHistoryChanged;
+    private boolean isShardListChanged;
+    private final Queue<UnsavedChanges> failedSaves = new ConcurrentLinkedQueue<>();
+    private final boolean asyncSaves;
+    private CompletableFuture<Void> lastSave = CompletableFuture.completedFuture(null);
 
     public HttpTaskManager(URI url) {
+        this(url, false);
+    }
+
+    /**
+     * @param asyncSaves если true, операции не ждут ответа сервера; дождаться его можно через
+     *                   {@link #awaitDurability()}
+     */
+    public HttpTaskManager(URI url, boolean asyncSaves) {
+        this.asyncSaves = asyncSaves;
         client = new KVTaskClient(url);
         gson = Managers.getGson();
         KVServerURI = url;
@@ -37,59 +78,173 @@ public class HttpTaskManager extends FileBackedTasksManager {
         }.getType();
         idType = new TypeToken<List<Integer>>() {
         }.getType();
+        shardsType = new TypeToken<Map<String, TreeSet<Integer>>>() {
+        }.getType();
     }
 
     @Override
     protected void save() {
-        List<Task> tasks = new ArrayList<>(idToTask.values());
-        List<Epic> epics = new ArrayList<>(idToEpic.values());
-        List<Subtask> subtasks = new ArrayList<>(idToSubtask.values());
-        List<Integer> historyIds = getHistoryIds();
-        String tasksAsJson = gson.toJson(tasks, taskType);
-        String epicsAsJson = gson.toJson(epics, epicType);
-        String subtasksAsJson = gson.toJson(subtasks, subtaskType);
-        String historyAsJson = gson.toJson(historyIds, idType);
-        client.put("tasks", tasksAsJson);
-        client.put("epics", epicsAsJson);
-        client.put("subtasks", subtasksAsJson);
-        client.put("history", historyAsJson);
+        restoreFailedSaves();
+        UnsavedChanges changes = new UnsavedChanges();
+        Map<String, String> values = new LinkedHashMap<>();
+        isShardListChanged |= tasks.flush(idToTask, values, changes.taskShardIds);
+        isShardListChanged |= epics.flush(idToEpic, values, changes.epicShardIds);
+        isShardListChanged |= subtasks.flush(idToSubtask, values, changes.subtaskShardIds);
+        if (isShardListChanged) {
+            Map<String, Set<Integer>> shardIds = new HashMap<>();
+            shardIds.put(TASKS_KEY, tasks.shardIds);
+            shardIds.put(EPICS_KEY, epics.shardIds);
+            shardIds.put(SUBTASKS_KEY, subtasks.shardIds);
+            values.put(SHARDS_KEY, gson.toJson(shardIds));
+            changes.isShardListChanged = true;
+            isShardListChanged = false;
+        }
+        if (isHistoryChanged) {
+            values.put(HISTORY_KEY, gson.toJson(getHistoryIds(), idType));
+            changes.isHistoryChanged = true;
+            isHistoryChanged = false;
+        }
+        if (values.isEmpty()) {
+            return;
+        }
+        CompletableFuture<Void> saved = client.putAllLatest(values).thenAccept(isSaved -> {
+            if (!isSaved) {
+                failedSaves.add(changes);
+            }
+        });
+        if (asyncSaves) {
+            lastSave = saved;
+        } else {
+            saved.join();
+        }
+    }
+
+    /**
+     * То, что сервер не принял, отправляется ещё раз.
+     */
+    @Override
+    public void awaitDurability() {
+        lastSave.join();
+        if (!failedSaves.isEmpty()) {
+            save();
+            lastSave.join();
+        }
+    }
+
+    /**
+     * Сохранения завершаются в потоках HttpClient, поэтому не принятые сервером изменения возвращаются
+     * в списки изменившегося только здесь, в потоке менеджера.
+     */
+    private void restoreFailedSaves() {
+        UnsavedChanges changes;
+        while ((changes = failedSaves.poll()) != null) {
+            tasks.changedShardIds.addAll(changes.taskShardIds);
+            epics.changedShardIds.addAll(changes.epicShardIds);
+            subtasks.changedShardIds.addAll(changes.subtaskShardIds);
+            isShardListChanged |= changes.isShardListChanged;
+            isHistoryChanged |= changes.isHistoryChanged;
+        }
+    }
+
+    @Override
+    public void close() {
+        awaitDurability();
+        super.close();
+    }
+
+    @Override
+    protected void onTaskSaved(Task task) {
+        super.onTaskSaved(task);
+        shardsOf(task).markChanged(task.getId());
+    }
+
+    @Override
+    protected void onTaskRemoved(int id) {
+        super.onTaskRemoved(id);
+        tasks.markRemoved(id);
+        epics.markRemoved(id);
+        subtasks.markRemoved(id);
+        isHistoryChanged = true;
+    }
+
+    @Override
+    protected void onAllRemoved(TaskType type) {
+        super.onAllRemoved(type);
+        switch (type) {
+            case TASK:
+                tasks.markAllRemoved();
+                break;
+            case SUBTASK:
+                subtasks.markAllRemoved();
+                break;
+            case EPIC:
+                epics.markAllRemoved();
+                subtasks.markAllRemoved();
+                break;
+        }
+        isHistoryChanged = true;
+    }
+
+    @Override
+    protected void onTaskViewed(Task task) {
+        super.onTaskViewed(task);
+        isHistoryChanged = true;
     }
 
     @Override
     public void load() {
-        String tasksAsJson = client.load("tasks");
-        String epicsAsJson = client.load("epics");
-        String subtasksAsJson = client.load("subtasks");
-        String historyIdsAsJson = client.load("history");
-        List<Task> tasks = gson.fromJson(tasksAsJson, taskType);
-        if (tasks == null) {
-            tasks = new ArrayList<>();
-        }
-        List<Epic> epics = gson.fromJson(epicsAsJson, epicType);
-        if (epics == null) {
-            epics = new ArrayList<>();
-        }
-        List<Subtask> subtasks = gson.fromJson(subtasksAsJson, subtaskType);
-        if (subtasks == null) {
-            subtasks = new ArrayList<>();
-        }
-        List<Integer> historyIds = gson.fromJson(historyIdsAsJson, idType);
+        awaitDurability();
+        Map<String, String> values = client.loadAll(List.of(SHARDS_KEY, HISTORY_KEY));
+        Map<String, TreeSet<Integer>> shardIds = gson.fromJson(values.get(SHARDS_KEY), shardsType);
+        if (shardIds == null) {
+            loadWithoutShards();
+        } else {
+            List<String> keys = new ArrayList<>();
+            tasks.addKeys(shardIds.get(TASKS_KEY), keys);
+            epics.addKeys(shardIds.get(EPICS_KEY), keys);
+            subtasks.addKeys(shardIds.get(SUBTASKS_KEY), keys);
+            Map<String, String> shards = keys.isEmpty() ? Map.of() : client.loadAll(keys);
+            idToTask = tasks.load(shardIds.get(TASKS_KEY), shards, Task.class);
+            idToEpic = epics.load(shardIds.get(EPICS_KEY), shards, Epic.class);
+            idToSubtask = subtasks.load(shardIds.get(SUBTASKS_KEY), shards, Subtask.class);
+        }
+        List<Integer> historyIds = gson.fromJson(values.get(HISTORY_KEY), idType);
         if (historyIds == null) {
             historyIds = new ArrayList<>();
         }
 
-        prioritizedTasks.addAll(tasks);
-        prioritizedTasks.addAll(subtasks);
-        prioritizedTasks.addAll(epics);
-
-        idToTask = tasks.stream().collect(Collectors.toMap(Task::getId, task -> task));
-        idToEpic = epics.stream().collect(Collectors.toMap(Epic::getId, epic -> epic));
-        idToSubtask = subtasks.stream().collect(Collectors.toMap(Subtask::getId, subtask -> subtask));
-        Map<Integer, Task> idToAllTasks = new HashMap<>();
+        Map<Integer, Task> idToAllTasks = new DenseIdMap<>();
         idToAllTasks.putAll(idToTask);
         idToAllTasks.putAll(idToEpic);
         idToAllTasks.putAll(idToSubtask);
         fillHistoryWithTasks(historyIds, idToAllTasks);
+        rebuildIndexes();
+        isHistoryChanged = false;
+        isShardListChanged = false;
+        failedSaves.clear();
+    }
+
+    /**
+     * Прежние версии хранили задачи целиком по ключам "tasks", "epics" и "subtasks".
+     */
+    private void loadWithoutShards() {
+        Map<String, String> values = client.loadAll(List.of(TASKS_KEY, EPICS_KEY, SUBTASKS_KEY));
+        List<Task> tasks = gson.fromJson(values.get(TASKS_KEY), taskType);
+        List<Epic> epics = gson.fromJson(values.get(EPICS_KEY), epicType);
+        List<Subtask> subtasks = gson.fromJson(values.get(SUBTASKS_KEY), subtaskType);
+        idToTask = this.tasks.loadAll(tasks);
+        idToEpic = this.epics.loadAll(epics);
+        idToSubtask = this.subtasks.loadAll(subtasks);
+    }
+
+    private Shards shardsOf(Task task) {
+        if (task instanceof Epic) {
+            return epics;
+        }
+        if (task instanceof Subtask) {
+            return subtasks;
+        }
+        return tasks;
     }
 
     private void fillHistoryWithTasks(List<Integer> historyIds, Map<Integer, Task> idToAllTasks) {
@@ -103,4 +258,126 @@ public class HttpTaskManager extends FileBackedTasksManager {
         List<Integer> historyIds = getHistory().stream().map(Task::getId).collect(Collectors.toList());
         return historyIds;
     }
+
+    private final class Shards {
+        private final String key;
+        private final Set<Integer> shardIds = new TreeSet<>();
+        private final Set<Integer> changedShardIds = new TreeSet<>();
+        private final DenseIdMap<String> idToJson = new DenseIdMap<>();
+
+        Shards(String key) {
+            this.key = key;
+        }
+
+        void markChanged(int id) {
+            idToJson.remove(id);
+            changedShardIds.add(id / SHARD_SIZE);
+        }
+
+        void markRemoved(int id) {
+            if (idToJson.remove(id) != null) {
+                changedShardIds.add(id / SHARD_SIZE);
+            }
+        }
+
+        void markAllRemoved() {
+            idToJson.clear();
+            changedShardIds.addAll(shardIds);
+        }
+
+        /**
+         * @return true, если изменился список непустых частей
+         */
+        boolean flush(DenseIdMap<? extends Task> idToTask, Map<String, String> values,
+                      Set<Integer> flushedShardIds) {
+            boolean isShardListChanged = false;
+            for (Integer shardId : changedShardIds) {
+                StringBuilder sb = new StringBuilder("[");
+                int end = (shardId + 1) * SHARD_SIZE;
+                for (int id = shardId * SHARD_SIZE; id < end; id++) {
+                    Task task = idToTask.get(id);
+                    if (task == null) {
+                        continue;
+                    }
+                    String json = idToJson.get(id);
+                    if (json == null) {
+                        json = gson.toJson(task);
+                        idToJson.put(id, json);
+                    }
+                    if (sb.length() > 1) {
+                        sb.append(',');
+                    }
+                    sb.append(json);
+                }
+                values.put(key + "-" + shardId, sb.append(']').toString());
+                if (sb.length() > 2) {
+                    isShardListChanged |= shardIds.add(shardId);
+                } else {
+                    isShardListChanged |= shardIds.remove(shardId);
+                }
+            }
+            flushedShardIds.addAll(changedShardIds);
+            changedShardIds.clear();
+            return isShardListChanged;
+        }
+
+        void addKeys(Set<Integer> loadedShardIds, List<String> keys) {
+            if (loadedShardIds != null) {
+                for (Integer shardId : loadedShardIds) {
+                    keys.add(key + "-" + shardId);
+                }
+            }
+        }
+
+        <T extends Task> DenseIdMap<T> load(Set<Integer> loadedShardIds, Map<String, String> shards,
+                                            Class<T> taskClass) {
+            reset();
+            DenseIdMap<T> idToTask = new DenseIdMap<>();
+            if (loadedShardIds == null) {
+                return idToTask;
+            }
+            for (Integer shardId : loadedShardIds) {
+                String shard = shards.get(key + "-" + shardId);
+                if (shard == null || shard.isEmpty()) {
+                    changedShardIds.add(shardId);
+                    continue;
+                }
+                shardIds.add(shardId);
+                JsonArray elements = JsonParser.parseString(shard).getAsJsonArray();
+                for (JsonElement element : elements) {
+                    T task = gson.fromJson(element, taskClass);
+                    idToTask.put(task.getId(), task);
+                    idToJson.put(task.getId(), element.toString());
+                }
+            }
+            return idToTask;
+        }
+
+        <T extends Task> DenseIdMap<T> loadAll(List<T> tasks) {
+            reset();
+            DenseIdMap<T> idToTask = new DenseIdMap<>();
+            if (tasks == null) {
+                return idToTask;
+            }
+            for (T task : tasks) {
+                idToTask.put(task.getId(), task);
+                changedShardIds.add(task.getId() / SHARD_SIZE);
+            }
+            return idToTask;
+        }
+
+        private void reset() {
+            shardIds.clear();
+            changedShardIds.clear();
+            idToJson.clear();
+        }
+    }
+
+    private static final class UnsavedChanges {
+        private final Set<Integer> taskShardIds = new TreeSet<>();
+        private final Set<Integer> epicShardIds = new TreeSet<>();
+        private final Set<Integer> subtaskShardIds = new TreeSet<>();
+        private boolean isShardListChanged;
+        private boolean isHistoryChanged;
+    }
 }
@@ -5,41 +5,64 @@ import model.Status;
 import model.Subtask;
 import model.Task;
 import service.Managers;
+import service.collection.DenseIdMap;
 import service.history.HistoryManager;
-
+import service.task.index.EndTimeIndex;
+import service.task.index.EpicAggregates;
+import service.task.index.PrioritizedTaskIndex;
+import service.task.index.SnapshotView;
+import service.task.index.StatusIndex;
+import service.task.index.TimeSlot;
+import service.task.index.TimeSlotIndex;
+
+import java.time.LocalDateTime;
 import java.util.*;
 
 public class InMemoryTaskManager implements TaskManager {
     private int newTaskId;
-    protected Map<Integer, Task> idToTask;
-    protected Map<Integer, Subtask> idToSubtask;
-    protected Map<Integer, Epic> idToEpic;
+    protected DenseIdMap<Task> idToTask;
+    protected DenseIdMap<Subtask> idToSubtask;
+    protected DenseIdMap<Epic> idToEpic;
     protected HistoryManager historyManager;
 
-    protected Set<Task> prioritizedTasks;
+    protected PrioritizedTaskIndex prioritizedTasks;
+    protected StatusIndex statusIndex;
+    protected EndTimeIndex endTimes;
+    protected TimeSlotIndex timeSlots;
+    protected EpicAggregates epicAggregates;
+    private final SnapshotView<Task> taskView;
+    private final SnapshotView<Subtask> subtaskView;
+    private final SnapshotView<Epic> epicView;
 
     public InMemoryTaskManager() {
         newTaskId = 0;
-        idToTask = new HashMap<>();
-        idToSubtask = new HashMap<>();
-        idToEpic = new HashMap<>();
-        prioritizedTasks = new TreeSet<>();
+        idToTask = new DenseIdMap<>();
+        idToSubtask = new DenseIdMap<>();
+        idToEpic = new DenseIdMap<>();
+        prioritizedTasks = new PrioritizedTaskIndex();
+        statusIndex = new StatusIndex(this::findTask);
+        endTimes = new EndTimeIndex();
+        timeSlots = new TimeSlotIndex();
+        epicAggregates = new EpicAggregates();
+        taskView = new SnapshotView<>(() -> idToTask.values());
+        subtaskView = new SnapshotView<>(() -> idToSubtask.values());
+        epicView = new SnapshotView<>(() -> idToEpic.values());
         historyManager = Managers.getDefaultHistory();
     }
 
     @Override
-    public ArrayList<Task> getAllTasks() {
-        return new ArrayList<>(idToTask.values());
+    public List<Task> getAllTasks() {
+        return taskView.get();
     }
 
     @Override
-    public ArrayList<Subtask> getAllSubtasks() {
-        return new ArrayList<>(idToSubtask.values());
+    public List<Subtask> getAllSubtasks() {
+        return subtaskView.get();
     }
 
     @Override
-    public ArrayList<Epic> getAllEpics() {
-        return new ArrayList<>(idToEpic.values());
+    public List<Epic> getAllEpics() {
+        return epicView.get();
     }
 
     @Override
@@ -47,25 +70,31 @@ public class InMemoryTaskManager implements TaskManager {
         for (Task task : idToTask.values()) {
             historyManager.remove(task.getId());
         }
-        prioritizedTasks.removeAll(idToTask.values());
+        unindexAll(idToTask);
         idToTask.clear();
+        taskView.invalidate();
+        onAllRemoved(TaskType.TASK);
     }
 
     @Override
     public void removeAllSubtasks() {
+        Map<Integer, Epic> epicsToRefresh = new HashMap<>();
         for (Subtask subtask : idToSubtask.values()) {
             historyManager.remove(subtask.getId());
-            int epicId = subtask.getEpicId();
-            Epic epic = idToEpic.get(epicId);
+            Epic epic = idToEpic.get(subtask.getEpicId());
             if (epic != null) {
-                epic.removeAllSubtaskIds();
-                updateEpicStatus(epicId);
-                updateEpicTime(epicId);
-                updateTaskInPrioritizedSet(epic);
+                epicsToRefresh.put(epic.getId(), epic);
             }
         }
-        prioritizedTasks.removeAll(idToSubtask.values());
+        unindexAll(idToSubtask);
+        epicAggregates.clear();
         idToSubtask.clear();
+        subtaskView.invalidate();
+        for (Epic epic : epicsToRefresh.values()) {
+            epic.removeAllSubtaskIds();
+        }
+        onAllRemoved(TaskType.SUBTASK);
+        refreshEpics(epicsToRefresh);
     }
 
     @Override
@@ -76,176 +105,152 @@ public class InMemoryTaskManager implements TaskManager {
         for (Epic epic : idToEpic.values()) {
             historyManager.remove(epic.getId());
         }
-
-        prioritizedTasks.removeAll(idToSubtask.values());
-        prioritizedTasks.removeAll(idToEpic.values());
+        unindexAll(idToSubtask);
+        unindexAll(idToEpic);
+        epicAggregates.clear();
 
         idToEpic.clear();
         idToSubtask.clear();
+        epicView.invalidate();
+        subtaskView.invalidate();
+        onAllRemoved(TaskType.EPIC);
     }
 
     @Override
     public Task getTask(int id) {
         Task task = idToTask.get(id);
-        historyManager.add(task);
+        if (task != null) {
+            historyManager.add(task);
+            onTaskViewed(task);
+        }
         return task;
     }
 
     @Override
     public Subtask getSubtask(int id) {
         Subtask subtask = idToSubtask.get(id);
-        historyManager.add(subtask);
+        if (subtask != null) {
+            historyManager.add(subtask);
+            onTaskViewed(subtask);
+        }
         return subtask;
     }
 
     @Override
     public Epic getEpic(int id) {
         Epic epic = idToEpic.get(id);
-        historyManager.add(epic);
+        if (epic != null) {
+            historyManager.add(epic);
+            onTaskViewed(epic);
+        }
         return epic;
     }
 
     @Override
     public int addNewTask(Task task) {
-        int id = generateId();
-        task.setId(id);
-        if (isIntersectsInTime(task)) {
-            return -1;
-        }
-        ;
-        prioritizedTasks.add(task);
-        idToTask.put(task.getId(), task);
-        return id;
+        return addTaskEntry(task);
     }
 
     @Override
     public int addNewEpic(Epic epic) {
-        int id = generateId();
-        epic.setId(id);
-        prioritizedTasks.add(epic);
-        idToEpic.put(epic.getId(), epic);
-        return id;
+        return addEpicEntry(epic);
     }
 
     @Override
     public int addNewSubtask(Subtask subtask) {
-        int id = generateId();
-        subtask.setId(id);
-        if (isIntersectsInTime(subtask)) {
-            return -1;
-        }
-        ;
-        idToSubtask.put(subtask.getId(), subtask);
-        Epic epic = idToEpic.get(subtask.getEpicId());
-        if (epic != null) {
-            epic.addSubtaskId(id);
-            updateEpicTime(subtask.getEpicId());
-            updateEpicStatus(subtask.getEpicId());
-        } else {
-            idToSubtask.remove(subtask.getId());
-            return -1;
-        }
-        prioritizedTasks.add(subtask);
+        Map<Integer, Epic> epicsToRefresh = new HashMap<>();
+        int id = addSubtaskEntry(subtask, epicsToRefresh);
+        refreshEpics(epicsToRefresh);
         return id;
     }
 
     @Override
     public boolean updateTask(Task task) {
-        if (idToTask.containsKey(task.getId())) {
-            if (isIntersectsInTime(task)) {
-                return false;
-            }
-            idToTask.replace(task.getId(), task);
-            updateTaskInPrioritizedSet(task);
-        } else {
-            return false;
-        }
-        return true;
+        return updateTaskEntry(task);
     }
 
     @Override
     public boolean updateEpic(Epic epic) {
-        if (idToEpic.containsKey(epic.getId())) {
-            idToEpic.replace(epic.getId(), epic);
-            updateTaskInPrioritizedSet(epic);
-            return true;
-        } else {
-            return false;
-        }
+        return updateEpicEntry(epic);
     }
 
     @Override
     public boolean updateSubtask(Subtask subtask) {
-        if (idToSubtask.containsKey(subtask.getId())) {
-            if (isIntersectsInTime(subtask)) {
-                return false;
-            }
-            Epic epic = idToEpic.get(subtask.getEpicId());
-            if (epic == null) {
-                return false;
-            }
-            idToSubtask.replace(subtask.getId(), subtask);
-            updateTaskInPrioritizedSet(subtask);
-            updateEpicStatus(subtask.getEpicId());
-            updateEpicTime(subtask.getEpicId());
-            updateTaskInPrioritizedSet(epic);
-        } else {
-            return false;
-        }
-        return true;
+        Map<Integer, Epic> epicsToRefresh = new HashMap<>();
+        boolean isUpdated = updateSubtaskEntry(subtask, epicsToRefresh);
+        refreshEpics(epicsToRefresh);
+        return isUpdated;
     }
 
     @Override
     public boolean removeTask(int id) {
-        if (idToTask.containsKey(id)) {
-            Task task = idToTask.get(id);
-            historyManager.remove(id);
-            idToTask.remove(id);
-            prioritizedTasks.remove(task);
-            return true;
-        }
-        return false;
+        return removeTaskEntry(id);
     }
 
     @Override
     public boolean removeEpic(int id) {
-        Epic epic = idToEpic.get(id);
+        return removeEpicEntry(id);
+    }
 
-        if (epic != null) {
-            List<Integer> epicSubtasksIds = idToEpic.get(id).getSubtaskIds();
-            for (Integer subtaskId : epicSubtasksIds) {
-                Subtask subtask = idToSubtask.get(subtaskId);
-                prioritizedTasks.remove(subtask);
-                historyManager.remove(subtaskId);
-                idToSubtask.remove(subtaskId);
+    @Override
+    public boolean removeSubtask(int id) {
+        Map<Integer, Epic> epicsToRefresh = new HashMap<>();
+        boolean isRemoved = removeSubtaskEntry(id, epicsToRefresh);
+        refreshEpics(epicsToRefresh);
+        return isRemoved;
+    }
+
+    @Override
+    public List<Integer> addAll(Collection<? extends Task> tasks) {
+        List<Integer> ids = new ArrayList<>(tasks.size());
+        Map<Integer, Epic> epicsToRefresh = new HashMap<>();
+        for (Task task : tasks) {
+            if (task instanceof Epic) {
+                ids.add(addEpicEntry((Epic) task));
+            } else if (task instanceof Subtask) {
+                ids.add(addSubtaskEntry((Subtask) task, epicsToRefresh));
+            } else {
+                ids.add(addTaskEntry(task));
             }
-            prioritizedTasks.remove(epic);
-            historyManager.remove(id);
-            idToEpic.remove(id);
-            return true;
         }
-        return false;
+        refreshEpics(epicsToRefresh);
+        return ids;
     }
 
     @Override
-    public boolean removeSubtask(int id) {
-        Subtask subtask = idToSubtask.get(id);
+    public List<Boolean> updateAll(Collection<? extends Task> tasks) {
+        List<Boolean> results = new ArrayList<>(tasks.size());
+        Map<Integer, Epic> epicsToRefresh = new HashMap<>();
+        for (Task task : tasks) {
+            if (task instanceof Epic) {
+                results.add(updateEpicEntry((Epic) task));
+            } else if (task instanceof Subtask) {
+                results.add(updateSubtaskEntry((Subtask) task, epicsToRefresh));
+            } else {
+                results.add(updateTaskEntry(task));
+            }
+        }
+        refreshEpics(epicsToRefresh);
+        return results;
+    }
 
-        if (subtask != null) {
-            int epicId = subtask.getEpicId();
-            prioritizedTasks.remove(subtask);
-            historyManager.remove(id);
-            idToSubtask.remove(id);
-            Epic epic = idToEpic.get(epicId);
-            if (epic != null) {
-                epic.removeSubtaskId(id);
-                updateEpicStatus(epicId);
-                updateEpicTime(epicId);
-                updateTaskInPrioritizedSet(epic);
+    @Override
+    public List<Boolean> removeAll(Collection<Integer> ids) {
+        List<Boolean> results = new ArrayList<>(ids.size());
+        Map<Integer, Epic> epicsToRefresh = new HashMap<>();
+        for (Integer id : ids) {
+            if (id == null) {
+                results.add(false);
+            } else if (idToTask.containsKey(id)) {
+                results.add(removeTaskEntry(id));
+            } else if (idToSubtask.containsKey(id)) {
+                results.add(removeSubtaskEntry(id, epicsToRefresh));
+            } else {
+                results.add(removeEpicEntry(id));
             }
-            return true;
         }
-        return false;
+        refreshEpics(epicsToRefresh);
+        return results;
     }
 
     @Override
@@ -255,7 +260,43 @@ public class InMemoryTaskManager implements TaskManager {
 
     @Override
     public List<Task> getPrioritizedTasks() {
-        return new ArrayList<>(prioritizedTasks);
+        return prioritizedTasks.getTasks();
+    }
+
+    @Override
+    public List<Task> getTasksPage(int afterId, int limit) {
+        return getPage(idToTask, afterId, limit);
+    }
+
+    @Override
+    public List<Subtask> getSubtasksPage(int afterId, int limit) {
+        return getPage(idToSubtask, afterId, limit);
+    }
+
+    @Override
+    public List<Epic> getEpicsPage(int afterId, int limit) {
+        return getPage(idToEpic, afterId, limit);
+    }
+
+    @Override
+    public List<Task> getPrioritizedTasksPage(PrioritizedCursor after, int limit) {
+        return prioritizedTasks.getPage(after == null ? null : new TimeSlot(after.getId(), after.getStartTime(), null),
+                limit);
+    }
+
+    @Override
+    public List<Task> getTasksByStatus(Status status) {
+        return statusIndex.getTasks(status);
+    }
+
+    @Override
+    public List<Task> getTasksStartingBetween(LocalDateTime from, LocalDateTime to) {
+        return prioritizedTasks.getTasksStartingBetween(from, to);
+    }
+
+    @Override
+    public List<Task> getTasksEndingBefore(LocalDateTime deadline) {
+        return endTimes.getTasksEndingBefore(deadline);
     }
 
     @Override
@@ -277,86 +318,273 @@ public class InMemoryTaskManager implements TaskManager {
 
     }
 
+    protected void rebuildIndexes() {
+        taskView.invalidate();
+        subtaskView.invalidate();
+        epicView.invalidate();
+        prioritizedTasks.clear();
+        statusIndex.clear();
+        endTimes.clear();
+        timeSlots.clear();
+        epicAggregates.clear();
+        for (Task task : idToTask.values()) {
+            indexTask(task);
+            newTaskId = Math.max(newTaskId, task.getId());
+        }
+        for (Epic epic : idToEpic.values()) {
+            indexTask(epic);
+            newTaskId = Math.max(newTaskId, epic.getId());
+        }
+        for (Subtask subtask : idToSubtask.values()) {
+            indexTask(subtask);
+            newTaskId = Math.max(newTaskId, subtask.getId());
+            if (idToEpic.containsKey(subtask.getEpicId())) {
+                epicAggregates.put(subtask);
+            }
+        }
+    }
+
+    /**
+     * Наследники переопределяют эти методы, чтобы сохранять только изменения.
+     */
+    protected void onTaskSaved(Task task) {
+
+    }
+
+    protected void onTaskRemoved(int id) {
+
+    }
+
+    protected void onAllRemoved(TaskType type) {
+
+    }
+
+    protected void onTaskViewed(Task task) {
+
+    }
+
+    private static <T extends Task> List<T> getPage(DenseIdMap<T> idToTask, int afterId, int limit) {
+        List<T> page = new ArrayList<>(Math.max(0, Math.min(limit, idToTask.size())));
+        if (afterId == Integer.MAX_VALUE) {
+            return page;
+        }
+        int id = idToTask.nextId(afterId + 1);
+        while (id != -1 && page.size() < limit) {
+            page.add(idToTask.get(id));
+            id = id == Integer.MAX_VALUE ? -1 : idToTask.nextId(id + 1);
+        }
+        return page;
+    }
+
     private int generateId() {
         return ++newTaskId;
     }
 
-    private void updateEpicStatus(int epicId) {
-        Epic epic = idToEpic.get(epicId);
-        boolean isNew = true;
-        boolean isDone = true;
+    private int addTaskEntry(Task task) {
+        int id = generateId();
+        task.setId(id);
+        if (isIntersectsInTime(task)) {
+            return -1;
+        }
+        indexTask(task);
+        idToTask.put(task.getId(), task);
+        taskView.invalidate();
+        onTaskSaved(task);
+        return id;
+    }
 
-        if (epic != null) {
-            ArrayList<Subtask> subtasksOfEpic = getEpicSubtasks(epicId);
+    private int addEpicEntry(Epic epic) {
+        int id = generateId();
+        epic.setId(id);
+        indexTask(epic);
+        idToEpic.put(epic.getId(), epic);
+        epicView.invalidate();
+        onTaskSaved(epic);
+        return id;
+    }
 
-            if (subtasksOfEpic.isEmpty()) {
-                epic.setStatus(Status.NEW);
-                updateEpic(epic);
-                return;
-            }
-            for (Subtask subtask : subtasksOfEpic) {
-                if (subtask.getStatus() != Status.NEW) {
-                    isNew = false;
-                }
-                if (subtask.getStatus() != Status.DONE) {
-                    isDone = false;
-                }
-            }
-            if (isNew) {
-                epic.setStatus(Status.NEW);
-                updateEpic(epic);
-                return;
-            }
-            if (isDone) {
-                epic.setStatus(Status.DONE);
-                updateEpic(epic);
-                return;
-            }
-            epic.setStatus(Status.IN_PROGRESS);
-            updateEpic(epic);
+    private int addSubtaskEntry(Subtask subtask, Map<Integer, Epic> epicsToRefresh) {
+        int id = generateId();
+        subtask.setId(id);
+        Epic epic = idToEpic.get(subtask.getEpicId());
+        if (epic == null || isIntersectsInTime(subtask)) {
+            return -1;
         }
+        idToSubtask.put(subtask.getId(), subtask);
+        epic.addSubtaskId(id);
+        epicAggregates.put(subtask);
+        epicsToRefresh.put(epic.getId(), epic);
+        indexTask(subtask);
+        subtaskView.invalidate();
+        onTaskSaved(subtask);
+        return id;
     }
 
-    private void updateEpicTime(int epicId) {
-        Epic epic = idToEpic.get(epicId);
+    private boolean updateTaskEntry(Task task) {
+        if (!idToTask.containsKey(task.getId()) || isIntersectsInTime(task)) {
+            return false;
+        }
+        idToTask.replace(task.getId(), task);
+        reindexTask(task);
+        taskView.invalidate();
+        onTaskSaved(task);
+        return true;
+    }
 
+    private boolean updateEpicEntry(Epic epic) {
+        if (!idToEpic.containsKey(epic.getId())) {
+            return false;
+        }
+        idToEpic.replace(epic.getId(), epic);
+        reindexTask(epic);
+        epicView.invalidate();
+        onTaskSaved(epic);
+        return true;
+    }
+
+    private boolean updateSubtaskEntry(Subtask subtask, Map<Integer, Epic> epicsToRefresh) {
+        if (!idToSubtask.containsKey(subtask.getId()) || isIntersectsInTime(subtask)) {
+            return false;
+        }
+        Epic epic = idToEpic.get(subtask.getEpicId());
+        if (epic == null) {
+            return false;
+        }
+        idToSubtask.replace(subtask.getId(), subtask);
+        reindexTask(subtask);
+        subtaskView.invalidate();
+        onTaskSaved(subtask);
+        Integer previousEpicId = epicAggregates.put(subtask);
+        if (previousEpicId != null && idToEpic.containsKey(previousEpicId)) {
+            epicsToRefresh.put(previousEpicId, idToEpic.get(previousEpicId));
+        }
+        epicsToRefresh.put(epic.getId(), epic);
+        return true;
+    }
+
+    private boolean removeTaskEntry(int id) {
+        if (!idToTask.containsKey(id)) {
+            return false;
+        }
+        historyManager.remove(id);
+        idToTask.remove(id);
+        unindexTask(id);
+        taskView.invalidate();
+        onTaskRemoved(id);
+        return true;
+    }
+
+    private boolean removeEpicEntry(int id) {
+        Epic epic = idToEpic.get(id);
+        if (epic == null) {
+            return false;
+        }
+        for (Integer subtaskId : epic.getSubtaskIds()) {
+            unindexTask(subtaskId);
+            epicAggregates.remove(subtaskId);
+            historyManager.remove(subtaskId);
+            idToSubtask.remove(subtaskId);
+            onTaskRemoved(subtaskId);
+        }
+        unindexTask(id);
+        epicAggregates.removeEpic(id);
+        historyManager.remove(id);
+        idToEpic.remove(id);
+        epicView.invalidate();
+        subtaskView.invalidate();
+        onTaskRemoved(id);
+        return true;
+    }
+
+    private boolean removeSubtaskEntry(int id, Map<Integer, Epic> epicsToRefresh) {
+        Subtask subtask = idToSubtask.get(id);
+        if (subtask == null) {
+            return false;
+        }
+        unindexTask(id);
+        epicAggregates.remove(id);
+        historyManager.remove(id);
+        idToSubtask.remove(id);
+        subtaskView.invalidate();
+        onTaskRemoved(id);
+        Epic epic = idToEpic.get(subtask.getEpicId());
         if (epic != null) {
-            ArrayList<Subtask> subtasksOfEpic = getEpicSubtasks(epicId);
-            if (subtasksOfEpic.isEmpty()) {
-                epic.setStartTime(null);
-                epic.setDuration(0);
-                epic.setEndTime(null);
-                return;
+            epic.removeSubtaskId(id);
+            epicsToRefresh.put(epic.getId(), epic);
+        }
+        return true;
+    }
+
+    private void refreshEpics(Map<Integer, Epic> epicsToRefresh) {
+        for (Epic epic : epicsToRefresh.values()) {
+            if (idToEpic.get(epic.getId()) == epic) {
+                refreshEpic(epic);
             }
+        }
+    }
 
-            Optional<Subtask> startTime = subtasksOfEpic.stream().
-                    filter(subtask -> subtask.getStartTime() != null).min(Comparator.comparing(Subtask::getStartTime));
-            startTime.ifPresent(subtask -> epic.setStartTime(subtask.getStartTime()));
+    private void refreshEpic(Epic epic) {
+        epicAggregates.applyTo(epic);
+        reindexTask(epic);
+        onTaskSaved(epic);
+    }
 
-            Optional<Subtask> endTime = subtasksOfEpic.stream().
-                    filter(subtask -> subtask.getEndTime() != null).max(Comparator.comparing(Subtask::getEndTime));
-            endTime.ifPresent(subtask -> epic.setEndTime(subtask.getEndTime()));
+    /**
+     * Один и тот же интервал задачи хранится во всех индексах по времени.
+     */
+    private void indexTask(Task task) {
+        TimeSlot previous = prioritizedTasks.slotOf(task.getId());
+        if (previous != null) {
+            endTimes.remove(previous);
+        }
+        TimeSlot slot = prioritizedTasks.add(task);
+        endTimes.add(slot, task);
+        statusIndex.add(task);
+        if (!(task instanceof Epic)) {
+            timeSlots.add(slot);
+        }
+    }
 
-            int sumOfDuration = subtasksOfEpic.stream().mapToInt(Subtask::getDuration).sum();
-            epic.setDuration(sumOfDuration);
+    private void reindexTask(Task taskToUpdate) {
+        if (prioritizedTasks.contains(taskToUpdate.getId())) {
+            indexTask(taskToUpdate);
         }
     }
 
-    private void updateTaskInPrioritizedSet(Task taskToUpdate) {
-        boolean isRemoved = prioritizedTasks.removeIf(task -> task.getId().equals(taskToUpdate.getId()));
-        if (isRemoved) {
-            prioritizedTasks.add(taskToUpdate);
+    private void unindexTask(int id) {
+        TimeSlot slot = prioritizedTasks.slotOf(id);
+        if (slot == null) {
+            return;
         }
+        prioritizedTasks.remove(id);
+        endTimes.remove(slot);
+        statusIndex.remove(id);
+        timeSlots.remove(id);
     }
 
+    private Task findTask(int id) {
+        Task task = idToTask.get(id);
+        if (task == null) {
+            task = idToSubtask.get(id);
+        }
+        return task == null ? idToEpic.get(id) : task;
+    }
 
-    private boolean isIntersectsInTime(Task task) {
-        for (Task prioritizedTask : prioritizedTasks) {
-            if (!(prioritizedTask instanceof Epic) && !(prioritizedTask.getId().equals(task.getId())) &&
-                    prioritizedTask.intersectsWith(task)) {
-                return true;
+    private void unindexAll(DenseIdMap<? extends Task> removed) {
+        if (removed.size() < prioritizedTasks.size() / 16) {
+            for (Task task : removed.values()) {
+                unindexTask(task.getId());
             }
+            return;
         }
-        return false;
+        prioritizedTasks.removeIf(removed::containsKey);
+        statusIndex.removeIf(removed::containsKey);
+        endTimes.removeIf(removed::containsKey);
+        timeSlots.removeIf(removed::containsKey);
+    }
+
+
+    private boolean isIntersectsInTime(Task task) {
+        return timeSlots.intersectsWith(task);
     }
 }
\ No newline at end of file
@@ -0,0 +1,31 @@
+package service.task;
+
+import model.Task;
+
+import java.time.LocalDateTime;
+
+/**
+ * Позиция в списке по приоритету: следующая страница начинается после задачи с этими временем начала и id.
+ * Время начала может быть null — такие задачи идут в конце списка.
+ */
+public final class PrioritizedCursor {
+    private final LocalDateTime startTime;
+    private final int id;
+
+    public PrioritizedCursor(LocalDateTime startTime, int id) {
+        this.startTime = startTime;
+        this.id = id;
+    }
+
+    public static PrioritizedCursor after(Task task) {
+        return new PrioritizedCursor(task.getStartTime(), task.getId());
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public int getId() {
+        return id;
+    }
+}
@@ -1,18 +1,21 @@
 package service.task;
 
 import model.Epic;
+import model.Status;
 import model.Subtask;
 import model.Task;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 public interface TaskManager {
-    ArrayList<Task> getAllTasks();
+    List<Task> getAllTasks();
 
-    ArrayList<Subtask> getAllSubtasks();
+    List<Subtask> getAllSubtasks();
 
-    ArrayList<Epic> getAllEpics();
+    List<Epic> getAllEpics();
 
     void removeAllTasks();
 
@@ -44,10 +47,30 @@ public interface TaskManager {
 
     boolean removeSubtask(int id);
 
+    List<Integer> addAll(Collection<? extends Task> tasks);
+
+    List<Boolean> updateAll(Collection<? extends Task> tasks);
+
+    List<Boolean> removeAll(Collection<Integer> ids);
+
     List<Task> getHistory();
 
     List<Task> getPrioritizedTasks();
 
+    List<Task> getTasksPage(int afterId, int limit);
+
+    List<Subtask> getSubtasksPage(int afterId, int limit);
+
+    List<Epic> getEpicsPage(int afterId, int limit);
+
+    List<Task> getPrioritizedTasksPage(PrioritizedCursor after, int limit);
+
+    List<Task> getTasksByStatus(Status status);
+
+    List<Task> getTasksStartingBetween(LocalDateTime from, LocalDateTime to);
+
+    List<Task> getTasksEndingBefore(LocalDateTime deadline);
+
     ArrayList<Subtask> getEpicSubtasks(int epicId);
 
     void load();
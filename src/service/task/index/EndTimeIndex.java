@@ -0,0 +1,49 @@
+package service.task.index;
+
+import model.Task;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.IntPredicate;
+
+/**
+ * Задачи с известным временем окончания, упорядоченные по нему. Задача удаляется по тому же
+ * интервалу, с которым была вставлена: его хранит {@link PrioritizedTaskIndex}.
+ */
+public class EndTimeIndex {
+    private final NavigableMap<TimeSlot, Task> slotToTask;
+
+    public EndTimeIndex() {
+        slotToTask = new TreeMap<>(TimeSlot.END_TIME_ORDER);
+    }
+
+    public void add(TimeSlot slot, Task task) {
+        if (slot.getEndTime() != null) {
+            slotToTask.put(slot, task);
+        }
+    }
+
+    public boolean remove(TimeSlot slot) {
+        return slotToTask.remove(slot) != null;
+    }
+
+    public void removeIf(IntPredicate idFilter) {
+        slotToTask.keySet().removeIf(slot -> idFilter.test(slot.getId()));
+    }
+
+    public void clear() {
+        slotToTask.clear();
+    }
+
+    public int size() {
+        return slotToTask.size();
+    }
+
+    public List<Task> getTasksEndingBefore(LocalDateTime deadline) {
+        TimeSlot bound = new TimeSlot(Integer.MIN_VALUE, null, deadline);
+        return new ArrayList<>(slotToTask.headMap(bound, false).values());
+    }
+}
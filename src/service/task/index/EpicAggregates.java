@@ -0,0 +1,152 @@
+package service.task.index;
+
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import service.collection.DenseIdMap;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Изменение одной подзадачи обновляет показатели её эпика за O(log k) без обхода остальных подзадач.
+ */
+public class EpicAggregates {
+    private final Map<Integer, Aggregate> epicIdToAggregate;
+    private final Map<Integer, Contribution> subtaskIdToContribution;
+
+    public EpicAggregates() {
+        this(new DenseIdMap<>(), new DenseIdMap<>());
+    }
+
+    private EpicAggregates(Map<Integer, Aggregate> epicIdToAggregate,
+                           Map<Integer, Contribution> subtaskIdToContribution) {
+        this.epicIdToAggregate = epicIdToAggregate;
+        this.subtaskIdToContribution = subtaskIdToContribution;
+    }
+
+    /**
+     * Память пропорциональна числу подзадач эпика, а не наибольшему id на доске.
+     */
+    public static EpicAggregates forSingleEpic() {
+        return new EpicAggregates(new HashMap<>(2), new HashMap<>());
+    }
+
+    /**
+     * @return id эпика, в котором подзадача была учтена раньше, если он отличается от текущего, иначе null
+     */
+    public Integer put(Subtask subtask) {
+        Contribution previous = subtaskIdToContribution.remove(subtask.getId());
+        if (previous != null) {
+            aggregateOf(previous.epicId).remove(previous);
+        }
+        Contribution contribution = new Contribution(subtask);
+        subtaskIdToContribution.put(subtask.getId(), contribution);
+        aggregateOf(contribution.epicId).add(contribution);
+
+        if (previous != null && previous.epicId != contribution.epicId) {
+            return previous.epicId;
+        }
+        return null;
+    }
+
+    public void remove(int subtaskId) {
+        Contribution previous = subtaskIdToContribution.remove(subtaskId);
+        if (previous != null) {
+            aggregateOf(previous.epicId).remove(previous);
+        }
+    }
+
+    public void removeEpic(int epicId) {
+        epicIdToAggregate.remove(epicId);
+    }
+
+    public void clear() {
+        epicIdToAggregate.clear();
+        subtaskIdToContribution.clear();
+    }
+
+    public void applyTo(Epic epic) {
+        Aggregate aggregate = epicIdToAggregate.get(epic.getId());
+        if (aggregate == null || aggregate.size == 0) {
+            epic.setStatus(Status.NEW);
+            epic.setStartTime(null);
+            epic.setDuration(0);
+            epic.setEndTime(null);
+            return;
+        }
+        epic.setStatus(aggregate.getStatus());
+        epic.setStartTime(aggregate.startTimes.isEmpty() ? null : aggregate.startTimes.firstKey());
+        epic.setEndTime(aggregate.endTimes.isEmpty() ? null : aggregate.endTimes.lastKey());
+        epic.setDuration((int) aggregate.totalDuration);
+    }
+
+    private Aggregate aggregateOf(int epicId) {
+        return epicIdToAggregate.computeIfAbsent(epicId, id -> new Aggregate());
+    }
+
+    private static final class Contribution {
+        private final int epicId;
+        private final Status status;
+        private final int duration;
+        private final LocalDateTime startTime;
+        private final LocalDateTime endTime;
+
+        private Contribution(Subtask subtask) {
+            epicId = subtask.getEpicId();
+            status = subtask.getStatus();
+            duration = subtask.getDuration();
+            startTime = subtask.getStartTime();
+            endTime = subtask.getEndTime();
+        }
+    }
+
+    private static final class Aggregate {
+        private final int[] statusCounts = new int[Status.values().length];
+        private final NavigableMap<LocalDateTime, Integer> startTimes = new TreeMap<>();
+        private final NavigableMap<LocalDateTime, Integer> endTimes = new TreeMap<>();
+        private int size;
+        private long totalDuration;
+
+        private void add(Contribution contribution) {
+            size++;
+            statusCounts[contribution.status.ordinal()]++;
+            totalDuration += contribution.duration;
+            if (contribution.startTime != null) {
+                startTimes.merge(contribution.startTime, 1, Integer::sum);
+            }
+            if (contribution.endTime != null) {
+                endTimes.merge(contribution.endTime, 1, Integer::sum);
+            }
+        }
+
+        private void remove(Contribution contribution) {
+            size--;
+            statusCounts[contribution.status.ordinal()]--;
+            totalDuration -= contribution.duration;
+            if (contribution.startTime != null) {
+                decrement(startTimes, contribution.startTime);
+            }
+            if (contribution.endTime != null) {
+                decrement(endTimes, contribution.endTime);
+            }
+        }
+
+        private Status getStatus() {
+            if (statusCounts[Status.NEW.ordinal()] == size) {
+                return Status.NEW;
+            }
+            if (statusCounts[Status.DONE.ordinal()] == size) {
+                return Status.DONE;
+            }
+            return Status.IN_PROGRESS;
+        }
+
+        private static void decrement(NavigableMap<LocalDateTime, Integer> times, LocalDateTime time) {
+            times.computeIfPresent(time, (key, count) -> count == 1 ? null : count - 1);
+        }
+    }
+}
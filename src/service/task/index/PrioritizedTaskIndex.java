@@ -0,0 +1,113 @@
+package service.task.index;
+
+import model.Task;
+import service.collection.DenseIdMap;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.IntPredicate;
+
+/**
+ * Ключ вставки запоминается, поэтому задачу можно переставить, даже если её время начала уже изменено.
+ */
+public class PrioritizedTaskIndex {
+    private final NavigableMap<TimeSlot, Task> slotToTask;
+    private final Map<Integer, TimeSlot> idToSlot;
+    private final SnapshotView<Task> view;
+
+    public PrioritizedTaskIndex() {
+        slotToTask = new TreeMap<>();
+        idToSlot = new DenseIdMap<>();
+        view = new SnapshotView<>(slotToTask::values);
+    }
+
+    /**
+     * @return интервал, с которым задача вставлена; его можно передать другим индексам
+     */
+    public TimeSlot add(Task task) {
+        remove(task.getId());
+        TimeSlot slot = TimeSlot.of(task);
+        slotToTask.put(slot, task);
+        idToSlot.put(slot.getId(), slot);
+        view.invalidate();
+        return slot;
+    }
+
+    public boolean reindex(Task task) {
+        if (!contains(task.getId())) {
+            return false;
+        }
+        add(task);
+        return true;
+    }
+
+    public boolean remove(int id) {
+        TimeSlot slot = idToSlot.remove(id);
+        if (slot == null) {
+            return false;
+        }
+        slotToTask.remove(slot);
+        view.invalidate();
+        return true;
+    }
+
+    public void removeIf(IntPredicate idFilter) {
+        Iterator<TimeSlot> iterator = slotToTask.keySet().iterator();
+        while (iterator.hasNext()) {
+            TimeSlot slot = iterator.next();
+            if (idFilter.test(slot.getId())) {
+                iterator.remove();
+                idToSlot.remove(slot.getId());
+            }
+        }
+        view.invalidate();
+    }
+
+    public boolean contains(int id) {
+        return idToSlot.containsKey(id);
+    }
+
+    public TimeSlot slotOf(int id) {
+        return idToSlot.get(id);
+    }
+
+    public void clear() {
+        slotToTask.clear();
+        idToSlot.clear();
+        view.invalidate();
+    }
+
+    public int size() {
+        return slotToTask.size();
+    }
+
+    public List<Task> getTasks() {
+        return view.get();
+    }
+
+    public List<Task> getPage(TimeSlot after, int limit) {
+        NavigableMap<TimeSlot, Task> tail = after == null ? slotToTask : slotToTask.tailMap(after, false);
+        List<Task> page = new ArrayList<>(Math.max(0, Math.min(limit, slotToTask.size())));
+        for (Task task : tail.values()) {
+            if (page.size() >= limit) {
+                break;
+            }
+            page.add(task);
+        }
+        return page;
+    }
+
+    public List<Task> getTasksStartingBetween(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            return new ArrayList<>();
+        }
+        TimeSlot lowerBound = new TimeSlot(Integer.MIN_VALUE, from, null);
+        TimeSlot upperBound = new TimeSlot(Integer.MIN_VALUE, to, null);
+        return new ArrayList<>(slotToTask.subMap(lowerBound, true, upperBound, false).values());
+    }
+}
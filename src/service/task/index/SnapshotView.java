@@ -0,0 +1,49 @@
+package service.task.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Неизменяемый снимок коллекции, который пересобирается при первом чтении после {@link #invalidate()}.
+ * Копия делается лениво, а не при каждом изменении: серия записей без чтений между ними ничего не копирует,
+ * но если чтения и записи чередуются, каждое чтение после записи по-прежнему копирует коллекцию за O(n).
+ */
+public class SnapshotView<T> {
+    private final Supplier<? extends Collection<? extends T>> source;
+    private final AtomicLong version;
+    private volatile Snapshot<T> snapshot;
+
+    public SnapshotView(Supplier<? extends Collection<? extends T>> source) {
+        this.source = source;
+        this.version = new AtomicLong();
+    }
+
+    public void invalidate() {
+        version.incrementAndGet();
+    }
+
+    public List<T> get() {
+        long currentVersion = version.get();
+        Snapshot<T> current = snapshot;
+        if (current != null && current.version == currentVersion) {
+            return current.items;
+        }
+        List<T> items = Collections.unmodifiableList(new ArrayList<>(source.get()));
+        snapshot = new Snapshot<>(currentVersion, items);
+        return items;
+    }
+
+    private static final class Snapshot<T> {
+        private final long version;
+        private final List<T> items;
+
+        private Snapshot(long version, List<T> items) {
+            this.version = version;
+            this.items = items;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package service.task.index;
+
+import model.Status;
+import model.Task;
+import service.collection.DenseIdSet;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * По статусу хранятся только id, а сами задачи берутся из хранилища менеджера при чтении.
+ */
+public class StatusIndex {
+    private final Map<Status, DenseIdSet> statusToIds;
+    private final IntFunction<? extends Task> idToTask;
+
+    public StatusIndex(IntFunction<? extends Task> idToTask) {
+        statusToIds = new EnumMap<>(Status.class);
+        for (Status status : Status.values()) {
+            statusToIds.put(status, new DenseIdSet());
+        }
+        this.idToTask = idToTask;
+    }
+
+    public void add(Task task) {
+        remove(task.getId());
+        if (task.getStatus() != null) {
+            statusToIds.get(task.getStatus()).add(task.getId());
+        }
+    }
+
+    public boolean remove(int id) {
+        for (DenseIdSet ids : statusToIds.values()) {
+            if (ids.remove(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void removeIf(IntPredicate idFilter) {
+        for (DenseIdSet ids : statusToIds.values()) {
+            ids.removeIf(idFilter);
+        }
+    }
+
+    public void clear() {
+        for (DenseIdSet ids : statusToIds.values()) {
+            ids.clear();
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (DenseIdSet ids : statusToIds.values()) {
+            size += ids.size();
+        }
+        return size;
+    }
+
+    public List<Task> getTasks(Status status) {
+        DenseIdSet ids = statusToIds.get(status);
+        List<Task> tasks = new ArrayList<>(ids.size());
+        ids.forEach(id -> tasks.add(idToTask.apply(id)));
+        return tasks;
+    }
+}
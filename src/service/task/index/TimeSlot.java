@@ -0,0 +1,99 @@
+package service.task.index;
+
+import model.Task;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.Objects;
+
+public final class TimeSlot implements Comparable<TimeSlot> {
+    public static final Comparator<TimeSlot> END_TIME_ORDER = Comparator
+            .comparing(TimeSlot::getEndTime, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparingInt(TimeSlot::getId);
+
+    private final int id;
+    private final LocalDateTime startTime;
+    private final LocalDateTime endTime;
+
+    public TimeSlot(int id, LocalDateTime startTime, LocalDateTime endTime) {
+        this.id = id;
+        this.startTime = startTime;
+        this.endTime = endTime;
+    }
+
+    public static TimeSlot of(Task task) {
+        return new TimeSlot(task.getId(), task.getStartTime(), task.getEndTime());
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public LocalDateTime getEndTime() {
+        return endTime;
+    }
+
+    public boolean intersectsWith(LocalDateTime otherStart, LocalDateTime otherEnd) {
+        if (startTime == null || endTime == null || otherStart == null || otherEnd == null) {
+            return false;
+        }
+
+        if (startTime.isBefore(otherStart) && endTime.isAfter(otherStart)) {
+            return true;
+        }
+
+        if (startTime.isBefore(otherEnd) && endTime.isAfter(otherEnd)) {
+            return true;
+        }
+
+        return startTime.isAfter(otherStart) && endTime.isBefore(otherEnd);
+    }
+
+    @Override
+    public int compareTo(TimeSlot o) {
+        if (this.startTime == null && o.startTime == null) {
+            return Integer.compare(this.id, o.id);
+        }
+
+        if (this.startTime == null) {
+            return 1;
+        }
+
+        if (o.startTime == null) {
+            return -1;
+        }
+
+        if (this.startTime.isEqual(o.startTime)) {
+            return Integer.compare(this.id, o.id);
+        }
+
+        return this.startTime.compareTo(o.startTime);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TimeSlot timeSlot = (TimeSlot) o;
+        return id == timeSlot.id && Objects.equals(startTime, timeSlot.startTime)
+                && Objects.equals(endTime, timeSlot.endTime);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, startTime, endTime);
+    }
+
+    @Override
+    public String toString() {
+        return "TimeSlot{" +
+                "id=" + id +
+                ", startTime=" + startTime +
+                ", endTime=" + endTime +
+                '}';
+    }
+}
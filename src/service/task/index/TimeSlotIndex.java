@@ -0,0 +1,97 @@
+package service.task.index;
+
+import model.Task;
+import service.collection.DenseIdMap;
+
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.function.IntPredicate;
+
+/**
+ * Принятые интервалы не пересекаются, поэтому новый достаточно сравнить с интервалами, начавшимися
+ * последними перед ним, и следующими, пока они начинаются раньше его окончания.
+ */
+public class TimeSlotIndex {
+    private final NavigableSet<TimeSlot> slots;
+    private final Map<Integer, TimeSlot> idToSlot;
+
+    public TimeSlotIndex() {
+        slots = new TreeSet<>();
+        idToSlot = new DenseIdMap<>();
+    }
+
+    public void add(Task task) {
+        add(TimeSlot.of(task));
+    }
+
+    public void add(TimeSlot slot) {
+        remove(slot.getId());
+        if (slot.getStartTime() == null) {
+            return;
+        }
+        slots.add(slot);
+        idToSlot.put(slot.getId(), slot);
+    }
+
+    public boolean remove(int id) {
+        TimeSlot slot = idToSlot.remove(id);
+        if (slot == null) {
+            return false;
+        }
+        slots.remove(slot);
+        return true;
+    }
+
+    public void removeIf(IntPredicate idFilter) {
+        Iterator<TimeSlot> iterator = slots.iterator();
+        while (iterator.hasNext()) {
+            TimeSlot slot = iterator.next();
+            if (idFilter.test(slot.getId())) {
+                iterator.remove();
+                idToSlot.remove(slot.getId());
+            }
+        }
+    }
+
+    public void clear() {
+        slots.clear();
+        idToSlot.clear();
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+    public boolean intersectsWith(Task task) {
+        LocalDateTime startTime = task.getStartTime();
+        if (startTime == null) {
+            return false;
+        }
+        LocalDateTime endTime = task.getEndTime();
+        Integer id = task.getId();
+
+        TimeSlot first = slots.lower(new TimeSlot(Integer.MIN_VALUE, startTime, null));
+        while (first != null && id != null && first.getId() == id) {
+            first = slots.lower(first);
+        }
+        if (first != null) {
+            first = slots.ceiling(new TimeSlot(Integer.MIN_VALUE, first.getStartTime(), null));
+        }
+        // Task.intersectsWith несимметричен, поэтому пересечение проверяется в обе стороны
+        TimeSlot added = new TimeSlot(Integer.MIN_VALUE, startTime, endTime);
+        NavigableSet<TimeSlot> candidates = first == null ? slots : slots.tailSet(first, true);
+        for (TimeSlot slot : candidates) {
+            if (slot.getStartTime() == null || !slot.getStartTime().isBefore(endTime)) {
+                break;
+            }
+            if ((id == null || slot.getId() != id) && (slot.intersectsWith(startTime, endTime)
+                    || added.intersectsWith(slot.getStartTime(), slot.getEndTime()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
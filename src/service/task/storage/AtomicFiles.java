@@ -0,0 +1,62 @@
+package service.task.storage;
+
+import service.task.exceptions.ManagerSaveException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Запись файла целиком через временный файл и переименование: читатель видит либо старое,
+ * либо новое содержимое, но не наполовину записанное.
+ */
+public final class AtomicFiles {
+
+    private AtomicFiles() {
+    }
+
+    public static void write(File file, String content) {
+        write(file, content, false);
+    }
+
+    /**
+     * @param sync если true, временный файл сбрасывается на диск до переименования
+     */
+    public static void write(File file, String content, boolean sync) {
+        Path temp = new File(file.getPath() + ".tmp").toPath();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (sync) {
+                channel.force(true);
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException(String.format("Ошибка при попытке записи в файл: %s" +
+                    ", произошло исключение: %s", file.getPath(), e));
+        }
+        replace(temp, file);
+    }
+
+    public static void replace(Path temp, File file) {
+        try {
+            try {
+                Files.move(temp, file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException(String.format("Ошибка при попытке записи в файл: %s" +
+                    ", произошло исключение: %s", file.getPath(), e));
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package service.task.storage;
+
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import model.Task;
+import service.task.exceptions.ManagerSaveException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Задачи идут в порядке "задачи, эпики, подзадачи", чтобы подзадачи находили уже прочитанные эпики.
+ * Файл заканчивается CRC32C всех предыдущих байтов, поэтому обрезанный или повреждённый снимок не читается.
+ */
+public final class BinarySnapshot {
+    public static final String FILE_EXTENSION = ".bin";
+
+    private static final int MAGIC = 0x4B424E53;
+    private static final byte VERSION = 1;
+    private static final byte TASK = 0;
+    private static final byte EPIC = 1;
+    private static final byte SUBTASK = 2;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_RECORD_HEADER = 64;
+    private static final Status[] STATUSES = Status.values();
+
+    private BinarySnapshot() {
+    }
+
+    public static boolean isBinary(File file) {
+        return file.getName().endsWith(FILE_EXTENSION);
+    }
+
+    public static void write(File file, Collection<? extends Task> tasks, Collection<Epic> epics,
+                             Collection<Subtask> subtasks, List<Integer> historyIds) {
+        write(file, tasks, epics, subtasks, historyIds, false);
+    }
+
+    /**
+     * @param sync если true, временный файл сбрасывается на диск до переименования
+     */
+    public static void write(File file, Collection<? extends Task> tasks, Collection<Epic> epics,
+                             Collection<Subtask> subtasks, List<Integer> historyIds, boolean sync) {
+        Path temp = new File(file.getPath() + ".tmp").toPath();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Writer writer = new Writer(channel);
+            writer.buffer.putInt(MAGIC);
+            writer.buffer.put(VERSION);
+            writer.putVarLong(tasks.size() + epics.size() + subtasks.size());
+            for (Task task : tasks) {
+                writer.putTask(task, TASK);
+            }
+            for (Epic epic : epics) {
+                writer.putTask(epic, EPIC);
+            }
+            for (Subtask subtask : subtasks) {
+                writer.putTask(subtask, SUBTASK);
+            }
+            writer.putVarLong(historyIds.size());
+            for (Integer id : historyIds) {
+                writer.ensure(MAX_RECORD_HEADER);
+                writer.putVarLong(id);
+            }
+            writer.finish();
+            if (sync) {
+                channel.force(true);
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException(String.format("Ошибка при попытке записи в файл: %s" +
+                    ", произошло исключение: %s", file.getPath(), e));
+        }
+        AtomicFiles.replace(temp, file);
+    }
+
+    public static Snapshot read(File file) {
+        Snapshot snapshot = new Snapshot();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            Reader reader = new Reader(channel, file);
+            reader.ensure(5);
+            if (reader.buffer.getInt() != MAGIC) {
+                throw reader.invalid("неизвестный формат");
+            }
+            byte version = reader.buffer.get();
+            if (version != VERSION) {
+                throw reader.invalid("неподдерживаемая версия " + version);
+            }
+            long count = reader.getVarLong();
+            for (long i = 0; i < count; i++) {
+                snapshot.add(reader.getTask());
+            }
+            long historySize = reader.getVarLong();
+            for (long i = 0; i < historySize; i++) {
+                snapshot.getHistoryIds().add((int) reader.getVarLong());
+            }
+            reader.verifyChecksum();
+        } catch (IOException e) {
+            throw new ManagerSaveException(String.format("Ошибка при чтении из файла: %s" +
+                    ", произошло исключение: %s", file.getPath(), e));
+        }
+        return snapshot;
+    }
+
+    private static final class Writer {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final CRC32C crc = new CRC32C();
+
+        Writer(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putTask(Task task, byte type) throws IOException {
+            ensure(MAX_RECORD_HEADER);
+            buffer.put(type);
+            putVarLong(task.getId());
+            buffer.put(task.getStatus() == null ? 0 : (byte) (task.getStatus().ordinal() + 1));
+            putVarLong(task.getDuration() & 0xFFFFFFFFL);
+            putTime(task.getStartTime());
+            if (type == EPIC) {
+                putTime(task.getEndTime());
+            } else if (type == SUBTASK) {
+                putVarLong(((Subtask) task).getEpicId());
+            }
+            putString(task.getName());
+            putString(task.getDescription());
+        }
+
+        void putTime(LocalDateTime time) {
+            if (time == null) {
+                putVarLong(0);
+                return;
+            }
+            long seconds = time.toEpochSecond(ZoneOffset.UTC);
+            long minutes = Math.floorDiv(seconds, 60);
+            long nanosOfMinute = Math.floorMod(seconds, 60) * 1_000_000_000L + time.getNano();
+            long zigZag = (minutes << 1) ^ (minutes >> 63);
+            putVarLong(((zigZag << 1) | (nanosOfMinute != 0 ? 1 : 0)) + 1);
+            if (nanosOfMinute != 0) {
+                putVarLong(nanosOfMinute);
+            }
+        }
+
+        void putString(String value) throws IOException {
+            if (value == null) {
+                ensure(1);
+                putVarLong(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ensure(10);
+            putVarLong(bytes.length + 1L);
+            if (bytes.length > buffer.remaining()) {
+                drain();
+                if (bytes.length > buffer.capacity()) {
+                    crc.update(bytes);
+                    ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+                    while (wrapped.hasRemaining()) {
+                        channel.write(wrapped);
+                    }
+                    return;
+                }
+            }
+            buffer.put(bytes);
+        }
+
+        void putVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                drain();
+            }
+        }
+
+        void drain() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            write();
+        }
+
+        void finish() throws IOException {
+            drain();
+            buffer.putInt((int) crc.getValue());
+            buffer.flip();
+            write();
+        }
+
+        private void write() throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    private static final class Reader {
+        private final FileChannel channel;
+        private final File file;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final CRC32C crc = new CRC32C();
+        private int checksummed;
+
+        Reader(FileChannel channel, File file) {
+            this.channel = channel;
+            this.file = file;
+            buffer.flip();
+        }
+
+        Task getTask() throws IOException {
+            ensure(1);
+            byte type = buffer.get();
+            long id = getVarLong();
+            if (id > Integer.MAX_VALUE) {
+                throw invalid("неверный id " + id);
+            }
+            ensure(1);
+            int statusCode = buffer.get();
+            if (statusCode < 0 || statusCode > STATUSES.length) {
+                throw invalid("неизвестный статус " + statusCode);
+            }
+            Status status = statusCode == 0 ? null : STATUSES[statusCode - 1];
+            int duration = (int) getVarLong();
+            LocalDateTime startTime = getTime();
+            switch (type) {
+                case TASK:
+                    return new Task((int) id, getString(), getString(), startTime, duration, status);
+                case EPIC:
+                    LocalDateTime endTime = getTime();
+                    return new Epic((int) id, getString(), getString(), startTime, duration, endTime, status);
+                case SUBTASK:
+                    int epicId = (int) getVarLong();
+                    return new Subtask((int) id, getString(), getString(), startTime, duration, status, epicId);
+                default:
+                    throw invalid("неизвестный тип задачи " + type);
+            }
+        }
+
+        LocalDateTime getTime() throws IOException {
+            long encoded = getVarLong();
+            if (encoded == 0) {
+                return null;
+            }
+            encoded--;
+            long zigZag = encoded >>> 1;
+            long minutes = (zigZag >>> 1) ^ -(zigZag & 1);
+            LocalDateTime time = LocalDateTime.ofEpochSecond(minutes * 60, 0, ZoneOffset.UTC);
+            if ((encoded & 1) != 0) {
+                long nanosOfMinute = getVarLong();
+                time = time.plusNanos(nanosOfMinute);
+            }
+            return time;
+        }
+
+        String getString() throws IOException {
+            long length = getVarLong();
+            if (length == 0) {
+                return null;
+            }
+            if (length - 1 > channel.size()) {
+                throw invalid("слишком длинная строка");
+            }
+            byte[] bytes = new byte[(int) (length - 1)];
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int chunk = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.get(bytes, offset, chunk);
+                offset += chunk;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        long getVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                ensure(1);
+                byte b = buffer.get();
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw invalid("слишком длинное число");
+        }
+
+        void verifyChecksum() throws IOException {
+            updateChecksum();
+            int expected = (int) crc.getValue();
+            ensure(4);
+            if (buffer.getInt() != expected) {
+                throw invalid("контрольная сумма не совпадает");
+            }
+            if (buffer.hasRemaining() || channel.position() != channel.size()) {
+                throw invalid("лишние данные в конце файла");
+            }
+        }
+
+        void ensure(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            updateChecksum();
+            checksummed = 0;
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) == -1) {
+                    buffer.flip();
+                    throw invalid("неожиданный конец файла");
+                }
+            }
+            buffer.flip();
+        }
+
+        private void updateChecksum() {
+            ByteBuffer consumed = buffer.duplicate();
+            consumed.position(checksummed).limit(buffer.position());
+            crc.update(consumed);
+            checksummed = buffer.position();
+        }
+
+        ManagerSaveException invalid(String reason) {
+            return new ManagerSaveException(String.format("Неверный формат файла: %s. %s", file.getPath(),
+                    reason.substring(0, 1).toUpperCase() + reason.substring(1)));
+        }
+    }
+}
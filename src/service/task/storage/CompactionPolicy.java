@@ -0,0 +1,33 @@
+package service.task.storage;
+
+/**
+ * Пороги, после которых журнал изменений сворачивается в новый снимок.
+ * Компактизация запускается, как только журнал достигает любого из порогов.
+ */
+public class CompactionPolicy {
+    public static final CompactionPolicy DEFAULT = new CompactionPolicy(16 * 1024 * 1024, 100_000);
+
+    private final long maxLogBytes;
+    private final long maxLogRecords;
+
+    public CompactionPolicy(long maxLogBytes, long maxLogRecords) {
+        if (maxLogBytes <= 0 || maxLogRecords <= 0) {
+            throw new IllegalArgumentException("Пороги компактизации должны быть положительными: " +
+                    maxLogBytes + ", " + maxLogRecords);
+        }
+        this.maxLogBytes = maxLogBytes;
+        this.maxLogRecords = maxLogRecords;
+    }
+
+    public long getMaxLogBytes() {
+        return maxLogBytes;
+    }
+
+    public long getMaxLogRecords() {
+        return maxLogRecords;
+    }
+
+    public boolean isExceededBy(WriteAheadLog log) {
+        return log.getSize() >= maxLogBytes || log.getRecordCount() >= maxLogRecords;
+    }
+}
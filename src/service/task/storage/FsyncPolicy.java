@@ -0,0 +1,46 @@
+package service.task.storage;
+
+/**
+ * Как часто журнал принудительно сбрасывается на диск (fsync). Без fsync записи переживают падение
+ * процесса, но не отключение питания.
+ */
+public class FsyncPolicy {
+    private static final FsyncPolicy ALWAYS = new FsyncPolicy(0);
+    private static final FsyncPolicy NEVER = new FsyncPolicy(-1);
+
+    private final long intervalMillis;
+
+    private FsyncPolicy(long intervalMillis) {
+        this.intervalMillis = intervalMillis;
+    }
+
+    public static FsyncPolicy always() {
+        return ALWAYS;
+    }
+
+    public static FsyncPolicy never() {
+        return NEVER;
+    }
+
+    public static FsyncPolicy every(long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Интервал fsync должен быть положительным: " + intervalMillis);
+        }
+        return new FsyncPolicy(intervalMillis);
+    }
+
+    public boolean isNever() {
+        return intervalMillis < 0;
+    }
+
+    /**
+     * @return интервал в миллисекундах; 0 означает fsync после каждой записи
+     */
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    boolean isDue(long lastFsyncMillis, long nowMillis) {
+        return intervalMillis == 0 || (intervalMillis > 0 && nowMillis - lastFsyncMillis >= intervalMillis);
+    }
+}
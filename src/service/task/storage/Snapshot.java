@@ -0,0 +1,50 @@
+package service.task.storage;
+
+import model.Epic;
+import model.Subtask;
+import model.Task;
+import service.collection.DenseIdMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Прочитанное из файла состояние менеджера: задачи, эпики со списками подзадач и id истории просмотров.
+ */
+public class Snapshot {
+    private final DenseIdMap<Task> idToTask = new DenseIdMap<>();
+    private final DenseIdMap<Epic> idToEpic = new DenseIdMap<>();
+    private final DenseIdMap<Subtask> idToSubtask = new DenseIdMap<>();
+    private final List<Integer> historyIds = new ArrayList<>();
+
+    public void add(Task task) {
+        if (task instanceof Epic) {
+            idToEpic.put(task.getId(), (Epic) task);
+        } else if (task instanceof Subtask) {
+            Subtask subtask = (Subtask) task;
+            idToSubtask.put(subtask.getId(), subtask);
+            Epic epic = idToEpic.get(subtask.getEpicId());
+            if (epic != null) {
+                epic.addSubtaskId(subtask.getId());
+            }
+        } else {
+            idToTask.put(task.getId(), task);
+        }
+    }
+
+    public DenseIdMap<Task> getIdToTask() {
+        return idToTask;
+    }
+
+    public DenseIdMap<Epic> getIdToEpic() {
+        return idToEpic;
+    }
+
+    public DenseIdMap<Subtask> getIdToSubtask() {
+        return idToSubtask;
+    }
+
+    public List<Integer> getHistoryIds() {
+        return historyIds;
+    }
+}
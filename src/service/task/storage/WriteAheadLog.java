@@ -0,0 +1,442 @@
+package service.task.storage;
+
+import service.task.exceptions.ManagerSaveException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Запись хранится строкой {@code <запись>\t<CRC32C в hex>}, поэтому недописанный после сбоя хвост
+ * отличим от целых записей и отрезается в {@link #recover}. Первая же строка без верной суммы
+ * считается началом такого хвоста.
+ */
+public class WriteAheadLog {
+    private static final char CHECKSUM_SEPARATOR = '\t';
+    private static final int CHECKSUM_LENGTH = 8;
+
+    private final File file;
+    private final FsyncPolicy fsyncPolicy;
+    private final Object lock = new Object();
+    private final StringBuilder pending = new StringBuilder();
+    private final CRC32C crc = new CRC32C();
+    private final ByteArrayOutputStream committed = new ByteArrayOutputStream();
+    private final Thread writer;
+    private FileChannel channel;
+    private long recordCount;
+    private long size;
+    private long committedSequence;
+    private long writtenSequence;
+    private long durableSequence;
+    private long lastFsyncMillis;
+    private boolean forceRequested;
+    private boolean closed;
+    private IOException failure;
+
+    public WriteAheadLog(File file, boolean truncate) {
+        this(file, truncate, 0);
+    }
+
+    public WriteAheadLog(File file, boolean truncate, long recordCount) {
+        this(file, truncate, recordCount, FsyncPolicy.never(), false);
+    }
+
+    public WriteAheadLog(File file, boolean truncate, long recordCount, FsyncPolicy fsyncPolicy, boolean async) {
+        this.file = file;
+        this.fsyncPolicy = fsyncPolicy;
+        open(truncate);
+        this.recordCount = truncate ? 0 : recordCount;
+        this.lastFsyncMillis = System.currentTimeMillis();
+        if (async) {
+            writer = new Thread(this::runWriter, "log-writer-" + file.getName());
+            writer.setDaemon(true);
+            writer.start();
+        } else {
+            writer = null;
+        }
+    }
+
+    public void append(String record) {
+        pending.append(record).append(CHECKSUM_SEPARATOR).append(checksum(crc, record)).append('\n');
+        recordCount++;
+    }
+
+    public void flush() {
+        checkFailure();
+        if (pending.length() == 0) {
+            return;
+        }
+        byte[] bytes = pending.toString().getBytes(StandardCharsets.UTF_8);
+        pending.setLength(0);
+        size += bytes.length;
+        synchronized (lock) {
+            committedSequence++;
+            if (writer != null) {
+                committed.write(bytes, 0, bytes.length);
+                lock.notifyAll();
+                return;
+            }
+            try {
+                write(bytes);
+                writtenSequence = committedSequence;
+                long now = System.currentTimeMillis();
+                if (fsyncPolicy.isDue(lastFsyncMillis, now)) {
+                    channel.force(false);
+                    durableSequence = writtenSequence;
+                    lastFsyncMillis = now;
+                }
+            } catch (IOException e) {
+                throw new ManagerSaveException(String.format("Ошибка при попытке записи в журнал: %s" +
+                        ", произошло исключение: %s", file.getPath(), e));
+            }
+        }
+    }
+
+    /**
+     * Сбрасывает записи на диск независимо от {@link FsyncPolicy}.
+     */
+    public void awaitDurability() {
+        flush();
+        synchronized (lock) {
+            long target = committedSequence;
+            if (durableSequence >= target) {
+                return;
+            }
+            if (writer == null) {
+                try {
+                    channel.force(false);
+                } catch (IOException e) {
+                    throw new ManagerSaveException(String.format("Ошибка при сбросе журнала на диск: %s" +
+                            ", произошло исключение: %s", file.getPath(), e));
+                }
+                durableSequence = target;
+                lastFsyncMillis = System.currentTimeMillis();
+                return;
+            }
+            forceRequested = true;
+            lock.notifyAll();
+            while (durableSequence < target && failure == null) {
+                waitOnLock();
+            }
+        }
+        checkFailure();
+    }
+
+    public void close() {
+        flush();
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        if (writer != null) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ManagerSaveException(String.format("Ожидание записи журнала %s прервано",
+                        file.getPath()));
+            }
+        }
+        try {
+            if (failure == null && !fsyncPolicy.isNever() && durableSequence < writtenSequence) {
+                channel.force(false);
+            }
+            channel.close();
+        } catch (IOException e) {
+            throw new ManagerSaveException(String.format("Ошибка при закрытии журнала: %s" +
+                    ", произошло исключение: %s", file.getPath(), e));
+        }
+        checkFailure();
+    }
+
+    /**
+     * Если сегмент остался от незавершённой компактизации, записи дописываются в его конец.
+     */
+    public void rotateTo(File segment) {
+        flush();
+        synchronized (lock) {
+            while (writtenSequence < committedSequence && failure == null) {
+                waitOnLock();
+            }
+            checkFailure();
+            try {
+                if (!fsyncPolicy.isNever()) {
+                    channel.force(false);
+                    durableSequence = writtenSequence;
+                }
+                channel.close();
+                if (segment.exists()) {
+                    Files.write(segment.toPath(), Files.readAllBytes(file.toPath()), StandardOpenOption.APPEND);
+                    Files.delete(file.toPath());
+                } else {
+                    Files.move(file.toPath(), segment.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                }
+            } catch (IOException e) {
+                throw new ManagerSaveException(String.format("Ошибка при переносе журнала %s в %s" +
+                        ", произошло исключение: %s", file.getPath(), segment.getPath(), e));
+            }
+            open(true);
+        }
+        recordCount = 0;
+    }
+
+    /**
+     * Атомарно заменяет всё содержимое журнала записями records и продолжает дописывать после них.
+     */
+    public void rewrite(List<String> records) {
+        flush();
+        StringBuilder sb = new StringBuilder();
+        for (String record : records) {
+            sb.append(record).append(CHECKSUM_SEPARATOR).append(checksum(crc, record)).append('\n');
+        }
+        synchronized (lock) {
+            while (writtenSequence < committedSequence && failure == null) {
+                waitOnLock();
+            }
+            checkFailure();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new ManagerSaveException(String.format("Ошибка при закрытии журнала: %s" +
+                        ", произошло исключение: %s", file.getPath(), e));
+            }
+            AtomicFiles.write(file, sb.toString(), !fsyncPolicy.isNever());
+            open(false);
+            durableSequence = writtenSequence;
+        }
+        recordCount = records.size();
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    private void runWriter() {
+        while (true) {
+            byte[] batch;
+            long batchSequence;
+            boolean force;
+            synchronized (lock) {
+                while (!closed && committed.size() == 0 && !isForceDue()) {
+                    waitForWork();
+                }
+                if (committed.size() == 0 && !isForceDue()) {
+                    return;
+                }
+                batch = committed.toByteArray();
+                committed.reset();
+                batchSequence = committedSequence;
+                force = isForceDue() || (batch.length > 0
+                        && fsyncPolicy.isDue(lastFsyncMillis, System.currentTimeMillis()));
+                forceRequested = false;
+            }
+            try {
+                write(batch);
+                if (force) {
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                synchronized (lock) {
+                    failure = e;
+                    lock.notifyAll();
+                }
+                return;
+            }
+            synchronized (lock) {
+                writtenSequence = batchSequence;
+                if (force) {
+                    durableSequence = batchSequence;
+                    lastFsyncMillis = System.currentTimeMillis();
+                }
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private boolean isForceDue() {
+        if (forceRequested) {
+            return true;
+        }
+        return fsyncPolicy.getIntervalMillis() > 0 && durableSequence < writtenSequence
+                && fsyncPolicy.isDue(lastFsyncMillis, System.currentTimeMillis());
+    }
+
+    private void waitForWork() {
+        long timeout = 0;
+        if (fsyncPolicy.getIntervalMillis() > 0 && durableSequence < writtenSequence) {
+            timeout = Math.max(1, lastFsyncMillis + fsyncPolicy.getIntervalMillis() - System.currentTimeMillis());
+        }
+        try {
+            lock.wait(timeout);
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    private void waitOnLock() {
+        try {
+            lock.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ManagerSaveException(String.format("Ожидание записи журнала %s прервано", file.getPath()));
+        }
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void checkFailure() {
+        synchronized (lock) {
+            if (failure != null) {
+                throw new ManagerSaveException(String.format("Ошибка при попытке записи в журнал: %s" +
+                        ", произошло исключение: %s", file.getPath(), failure));
+            }
+        }
+    }
+
+    private void open(boolean truncate) {
+        try {
+            if (truncate) {
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+            } else {
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND);
+            }
+            size = channel.size();
+        } catch (IOException e) {
+            throw new ManagerSaveException(String.format("Ошибка при открытии журнала: %s" +
+                    ", произошло исключение: %s", file.getPath(), e));
+        }
+    }
+
+    /**
+     * Чтение останавливается на первой повреждённой записи, сам файл не меняется.
+     */
+    public static int forEachRecord(File file, ObjIntConsumer<String> handler) {
+        return scan(file, handler).recordCount;
+    }
+
+    /**
+     * То же, что {@link #forEachRecord}, но повреждённый хвост отрезается.
+     */
+    public static int recover(File file, ObjIntConsumer<String> handler) {
+        ScanResult result = scan(file, handler);
+        if (result.validLength < result.fileLength) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(result.validLength);
+                channel.force(false);
+            } catch (IOException e) {
+                throw new ManagerSaveException(String.format("Ошибка при восстановлении журнала: %s" +
+                        ", произошло исключение: %s", file.getPath(), e));
+            }
+        }
+        return result.recordCount;
+    }
+
+    public static List<String> readRecords(File file) {
+        List<String> records = new ArrayList<>();
+        forEachRecord(file, (record, index) -> records.add(record));
+        return records;
+    }
+
+    private static ScanResult scan(File file, ObjIntConsumer<String> handler) {
+        ScanResult result = new ScanResult();
+        if (!file.exists()) {
+            return result;
+        }
+        CRC32C crc = new CRC32C();
+        byte[] buffer = new byte[64 * 1024];
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        long offset = 0;
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                int start = 0;
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] != '\n') {
+                        continue;
+                    }
+                    line.write(buffer, start, i - start);
+                    start = i + 1;
+                    byte[] bytes = line.toByteArray();
+                    line.reset();
+                    int length = recordLength(bytes, crc);
+                    if (length == -1) {
+                        result.fileLength = file.length();
+                        return result;
+                    }
+                    String record = new String(bytes, 0, length, StandardCharsets.UTF_8);
+                    result.validLength = offset + i + 1;
+                    if (!record.isEmpty()) {
+                        handler.accept(record, result.recordCount++);
+                    }
+                }
+                line.write(buffer, start, read - start);
+                offset += read;
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException(String.format("Ошибка при чтении журнала: %s" +
+                    ", произошло исключение: %s", file.getPath(), e));
+        }
+        result.fileLength = offset;
+        return result;
+    }
+
+    private static int recordLength(byte[] line, CRC32C crc) {
+        int separator = line.length - CHECKSUM_LENGTH - 1;
+        if (separator < 0 || line[separator] != CHECKSUM_SEPARATOR) {
+            return -1;
+        }
+        long expected = 0;
+        for (int i = separator + 1; i < line.length; i++) {
+            int digit = Character.digit(line[i], 16);
+            if (digit == -1) {
+                return -1;
+            }
+            expected = (expected << 4) | digit;
+        }
+        crc.reset();
+        crc.update(line, 0, separator);
+        return crc.getValue() == expected ? separator : -1;
+    }
+
+    private static String checksum(CRC32C crc, String record) {
+        crc.reset();
+        byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+        crc.update(bytes, 0, bytes.length);
+        String hex = Long.toHexString(crc.getValue());
+        return "00000000".substring(hex.length()) + hex;
+    }
+
+    private static final class ScanResult {
+        private int recordCount;
+        private long validLength;
+        private long fileLength;
+    }
+}
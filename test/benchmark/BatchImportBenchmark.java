@@ -0,0 +1,53 @@
+package benchmark;
+
+import model.Status;
+import model.Task;
+import service.task.FileBackedTasksManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchImportBenchmark {
+    private static final LocalDateTime BASE = LocalDateTime.of(2023, 7, 1, 0, 0);
+
+    public static void main(String[] args) throws IOException {
+        int taskCount = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+
+        for (int run = 0; run < 3; run++) {
+            System.out.printf("Прогон %d, задач: %d%n", run + 1, taskCount);
+            System.out.printf("  addNewTask по одной: %d мс%n", measureOneByOne(createTasks(taskCount)));
+            System.out.printf("  addAll:              %d мс%n", measureBatch(createTasks(taskCount)));
+        }
+    }
+
+    private static List<Task> createTasks(int taskCount) {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < taskCount; i++) {
+            tasks.add(new Task("Task" + i, "Description", BASE.plusMinutes(i * 60L), 30, Status.NEW));
+        }
+        return tasks;
+    }
+
+    private static long measureOneByOne(List<Task> tasks) throws IOException {
+        File file = File.createTempFile("tasks", ".csv");
+        file.deleteOnExit();
+        FileBackedTasksManager taskManager = new FileBackedTasksManager(file);
+        long start = System.nanoTime();
+        for (Task task : tasks) {
+            taskManager.addNewTask(task);
+        }
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private static long measureBatch(List<Task> tasks) throws IOException {
+        File file = File.createTempFile("tasks", ".csv");
+        file.deleteOnExit();
+        FileBackedTasksManager taskManager = new FileBackedTasksManager(file);
+        long start = System.nanoTime();
+        taskManager.addAll(tasks);
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
@@ -0,0 +1,47 @@
+package benchmark;
+
+import model.Status;
+import model.Task;
+import service.collection.DenseIdMap;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+public class DenseIdMapFootprintBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int taskCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        for (int run = 0; run < 3; run++) {
+            System.out.printf("Прогон %d, задач: %d%n", run + 1, taskCount);
+            System.out.printf("  HashMap<Integer, Task>: %.1f байт на задачу%n",
+                    measureBytesPerTask(taskCount, HashMap::new));
+            System.out.printf("  DenseIdMap<Task>:       %.1f байт на задачу%n",
+                    measureBytesPerTask(taskCount, DenseIdMap::new));
+        }
+    }
+
+    private static double measureBytesPerTask(int taskCount, Supplier<Map<Integer, Task>> mapFactory)
+            throws InterruptedException {
+        long before = usedMemory();
+        Map<Integer, Task> idToTask = mapFactory.get();
+        for (int id = 1; id <= taskCount; id++) {
+            idToTask.put(id, new Task(id, "Task", "Description", Status.NEW));
+        }
+        long after = usedMemory();
+        if (idToTask.size() != taskCount) {
+            throw new IllegalStateException("Неверное количество задач: " + idToTask.size());
+        }
+        return (double) (after - before) / taskCount;
+    }
+
+    private static long usedMemory() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
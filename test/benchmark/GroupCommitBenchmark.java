@@ -0,0 +1,54 @@
+package benchmark;
+
+import model.Status;
+import model.Task;
+import service.task.FileBackedTasksManager;
+import service.task.storage.CompactionPolicy;
+import service.task.storage.FsyncPolicy;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class GroupCommitBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int operationCount = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+
+        for (int run = 0; run < 3; run++) {
+            System.out.printf("Прогон %d, операций: %d%n", run + 1, operationCount);
+            measure("снимок на каждую операцию", operationCount, null, FsyncPolicy.never(), false);
+            measure("журнал, fsync всегда", operationCount, CompactionPolicy.DEFAULT, FsyncPolicy.always(), false);
+            measure("журнал асинхронно, fsync всегда", operationCount, CompactionPolicy.DEFAULT,
+                    FsyncPolicy.always(), true);
+            measure("журнал асинхронно, fsync раз в 10 мс", operationCount, CompactionPolicy.DEFAULT,
+                    FsyncPolicy.every(10), true);
+        }
+    }
+
+    private static void measure(String name, int operationCount, CompactionPolicy compactionPolicy,
+                                FsyncPolicy fsyncPolicy, boolean asyncWrites) throws IOException {
+        File file = File.createTempFile("tasks", ".csv");
+        file.deleteOnExit();
+        FileBackedTasksManager.logFileFor(file).deleteOnExit();
+        FileBackedTasksManager taskManager = new FileBackedTasksManager(file, compactionPolicy, fsyncPolicy,
+                asyncWrites);
+        long[] latencies = new long[operationCount];
+        long start = System.nanoTime();
+        for (int i = 0; i < operationCount; i++) {
+            long operationStart = System.nanoTime();
+            int id = taskManager.addNewTask(new Task("Task" + i, "Description", Status.NEW));
+            taskManager.getTask(id);
+            latencies[i] = System.nanoTime() - operationStart;
+        }
+        long beforeDurability = System.nanoTime();
+        taskManager.awaitDurability();
+        long end = System.nanoTime();
+        taskManager.close();
+
+        Arrays.sort(latencies);
+        System.out.printf("  %-38s p50: %6d мкс, p99: %6d мкс, всего: %5d мс, ожидание диска: %3d мс%n", name,
+                latencies[operationCount / 2] / 1_000, latencies[operationCount * 99 / 100] / 1_000,
+                (end - start) / 1_000_000, (end - beforeDurability) / 1_000_000);
+    }
+}
@@ -0,0 +1,49 @@
+package benchmark;
+
+import com.sun.management.ThreadMXBean;
+import http_client.KVTaskClient;
+import server.KVServer;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Измеряет, сколько байт выделяет поток сервера на сохранение и загрузку одного большого значения.
+ */
+public class KVServerLargeValueBenchmark {
+    private static final URI SERVER_URI = URI.create("http://localhost:" + KVServer.PORT);
+
+    public static void main(String[] args) throws Exception {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        long[] serverThreadId = new long[1];
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "kv-server");
+            serverThreadId[0] = thread.getId();
+            return thread;
+        });
+        KVServer kvServer = new KVServer(executor);
+        kvServer.start();
+        KVTaskClient client = new KVTaskClient(SERVER_URI);
+        String value = "x".repeat(megabytes * 1024 * 1024);
+
+        for (int run = 0; run < 3; run++) {
+            long before = threads.getThreadAllocatedBytes(serverThreadId[0]);
+            client.put("key", value);
+            long afterPut = threads.getThreadAllocatedBytes(serverThreadId[0]);
+            client.load("key");
+            long afterLoad = threads.getThreadAllocatedBytes(serverThreadId[0]);
+            out.printf("Значение %d МБ: сохранение выделило %d КБ, загрузка — %d КБ%n", megabytes,
+                    (afterPut - before) / 1024, (afterLoad - afterPut) / 1024);
+        }
+        kvServer.stop();
+        executor.shutdown();
+    }
+}
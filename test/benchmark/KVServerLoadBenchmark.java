@@ -0,0 +1,65 @@
+package benchmark;
+
+import http_client.KVTaskClient;
+import server.KVServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class KVServerLoadBenchmark {
+    private static final URI SERVER_URI = URI.create("http://localhost:" + KVServer.PORT);
+
+    public static void main(String[] args) throws IOException {
+        int clientCount = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int operationCount = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        int cores = Runtime.getRuntime().availableProcessors();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        for (int run = 0; run < 3; run++) {
+            out.printf("Прогон %d, клиентов: %d, операций на клиента: %d, ядер: %d%n", run + 1, clientCount,
+                    operationCount, cores);
+            measure(out, "один поток-диспетчер", null, clientCount, operationCount);
+            ExecutorService pool = KVServer.boundedPool(cores * 2, 1024);
+            measure(out, "пул из " + cores * 2 + " потоков", pool, clientCount, operationCount);
+            pool.shutdown();
+            ExecutorService virtual = KVServer.virtualThreadPerRequest();
+            measure(out, "поток на запрос", virtual, clientCount, operationCount);
+            virtual.shutdown();
+        }
+    }
+
+    private static void measure(PrintStream out, String name, ExecutorService executor, int clientCount,
+                                int operationCount) throws IOException {
+        KVServer kvServer = new KVServer(executor);
+        kvServer.start();
+        String value = "x".repeat(1024);
+        ExecutorService clients = Executors.newFixedThreadPool(clientCount);
+        List<CompletableFuture<Void>> runs = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int c = 0; c < clientCount; c++) {
+            int clientId = c;
+            runs.add(CompletableFuture.runAsync(() -> {
+                KVTaskClient client = new KVTaskClient(SERVER_URI);
+                for (int i = 0; i < operationCount; i++) {
+                    String key = "client" + clientId + "-" + (i % 16);
+                    client.put(key, value);
+                    client.load(key);
+                }
+            }, clients));
+        }
+        CompletableFuture.allOf(runs.toArray(new CompletableFuture<?>[0])).join();
+        long elapsed = System.nanoTime() - start;
+        clients.shutdown();
+        kvServer.stop();
+        long requests = 2L * clientCount * operationCount;
+        out.printf("  %-24s %8d запросов/с%n", name, requests * 1_000_000_000L / elapsed);
+    }
+}
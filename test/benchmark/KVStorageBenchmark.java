@@ -0,0 +1,50 @@
+package benchmark;
+
+import server.storage.InMemoryKVStorage;
+import server.storage.KVStorage;
+import server.storage.LogStructuredKVStorage;
+
+import java.io.File;
+
+public class KVStorageBenchmark {
+    private static final File DIRECTORY = new File("resources/kv-storage-benchmark");
+
+    public static void main(String[] args) {
+        int writeCount = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int keyCount = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        String value = "x".repeat(1024);
+
+        for (int run = 0; run < 3; run++) {
+            System.out.printf("Прогон %d, записей: %d, ключей: %d%n", run + 1, writeCount, keyCount);
+            measure("в памяти", new InMemoryKVStorage(), writeCount, keyCount, value);
+            deleteDirectory();
+            try (LogStructuredKVStorage storage = new LogStructuredKVStorage(DIRECTORY)) {
+                measure("журнал", storage, writeCount, keyCount, value);
+            }
+            deleteDirectory();
+            try (LogStructuredKVStorage storage = new LogStructuredKVStorage(DIRECTORY, true)) {
+                measure("журнал с fsync", storage, writeCount / 100, keyCount, value);
+            }
+            deleteDirectory();
+        }
+    }
+
+    private static void measure(String name, KVStorage storage, int writeCount, int keyCount, String value) {
+        long start = System.nanoTime();
+        for (int i = 0; i < writeCount; i++) {
+            storage.put("key" + i % keyCount, value);
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("  %-16s %10d записей/с%n", name, writeCount * 1_000_000_000L / elapsed);
+    }
+
+    private static void deleteDirectory() {
+        File[] files = DIRECTORY.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        DIRECTORY.delete();
+    }
+}
@@ -0,0 +1,43 @@
+package benchmark;
+
+import model.Status;
+import model.Task;
+import service.task.FileBackedTasksManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+public class ParallelLoadBenchmark {
+    private static final LocalDateTime BASE = LocalDateTime.of(2023, 7, 1, 0, 0);
+
+    public static void main(String[] args) throws IOException {
+        int taskCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        File file = File.createTempFile("tasks", ".csv");
+        file.deleteOnExit();
+
+        FileBackedTasksManager taskManager = new FileBackedTasksManager(File.createTempFile("tasks", ".bin"));
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < taskCount; i++) {
+            tasks.add(new Task("Task" + i, "Description", BASE.plusMinutes(i * 60L), 30, Status.NEW));
+        }
+        taskManager.addAll(tasks);
+        taskManager.exportTo(file);
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        for (int run = 0; run < 3; run++) {
+            System.out.printf("Прогон %d, задач: %d, потоков: %d%n", run + 1, taskCount, pool.getParallelism());
+            long start = System.nanoTime();
+            FileBackedTasksManager.loadFromFile(file);
+            long sequential = System.nanoTime() - start;
+            start = System.nanoTime();
+            FileBackedTasksManager.loadFromFileInParallel(file, pool);
+            long parallel = System.nanoTime() - start;
+            System.out.printf("  последовательно: %5d мс, параллельно: %5d мс%n", sequential / 1_000_000,
+                    parallel / 1_000_000);
+        }
+    }
+}
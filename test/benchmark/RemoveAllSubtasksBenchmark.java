@@ -0,0 +1,56 @@
+package benchmark;
+
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import service.task.InMemoryTaskManager;
+import service.task.TaskManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public class RemoveAllSubtasksBenchmark {
+    private static final LocalDateTime BASE = LocalDateTime.of(2023, 7, 1, 0, 0);
+    private static final int EPIC_COUNT = 100;
+
+    public static void main(String[] args) {
+        int subtaskCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+
+        for (int run = 0; run < 3; run++) {
+            System.out.printf("Прогон %d, подзадач: %d, эпиков: %d%n", run + 1, subtaskCount, EPIC_COUNT);
+            System.out.printf("  removeSubtask по одной: %d мс%n", measureOneByOne(createManager(subtaskCount)));
+            System.out.printf("  removeAllSubtasks:      %d мс%n", measureRemoveAll(createManager(subtaskCount)));
+        }
+    }
+
+    private static TaskManager createManager(int subtaskCount) {
+        TaskManager taskManager = new InMemoryTaskManager();
+        List<Integer> epicIds = new ArrayList<>();
+        for (int i = 0; i < EPIC_COUNT; i++) {
+            epicIds.add(taskManager.addNewEpic(new Epic("Epic" + i, "Description")));
+        }
+        List<Subtask> subtasks = new ArrayList<>();
+        for (int i = 0; i < subtaskCount; i++) {
+            subtasks.add(new Subtask("Subtask" + i, "Description", BASE.plusMinutes(i * 60L), 30,
+                    Status.values()[i % 3], epicIds.get(i % EPIC_COUNT)));
+        }
+        taskManager.addAll(subtasks);
+        return taskManager;
+    }
+
+    private static long measureOneByOne(TaskManager taskManager) {
+        List<Subtask> subtasks = taskManager.getAllSubtasks();
+        long start = System.nanoTime();
+        for (Subtask subtask : subtasks) {
+            taskManager.removeSubtask(subtask.getId());
+        }
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private static long measureRemoveAll(TaskManager taskManager) {
+        long start = System.nanoTime();
+        taskManager.removeAllSubtasks();
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
@@ -0,0 +1,62 @@
+package benchmark;
+
+import model.Status;
+import model.Task;
+import service.task.FileBackedTasksManager;
+import service.task.storage.BinarySnapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SnapshotFormatBenchmark {
+    private static final LocalDateTime BASE = LocalDateTime.of(2023, 7, 1, 0, 0);
+
+    public static void main(String[] args) throws IOException {
+        int taskCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        File csvFile = File.createTempFile("tasks", ".csv");
+        File binaryFile = File.createTempFile("tasks", ".bin");
+        csvFile.deleteOnExit();
+        binaryFile.deleteOnExit();
+
+        FileBackedTasksManager taskManager = new FileBackedTasksManager(File.createTempFile("tasks", ".bin"));
+        taskManager.addAll(createTasks(taskCount));
+
+        for (int run = 0; run < 3; run++) {
+            System.out.printf("Прогон %d, задач: %d%n", run + 1, taskCount);
+            long start = System.nanoTime();
+            taskManager.exportTo(csvFile);
+            long csvSave = System.nanoTime() - start;
+            start = System.nanoTime();
+            taskManager.exportTo(binaryFile);
+            long binarySave = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            FileBackedTasksManager.loadFromFile(csvFile);
+            long csvLoad = System.nanoTime() - start;
+            start = System.nanoTime();
+            FileBackedTasksManager.loadFromFile(binaryFile);
+            long binaryLoad = System.nanoTime() - start;
+            start = System.nanoTime();
+            BinarySnapshot.read(binaryFile);
+            long binaryRead = System.nanoTime() - start;
+
+            System.out.printf("  CSV:      запись %5d мс, загрузка %5d мс, размер %6d КБ%n", csvSave / 1_000_000,
+                    csvLoad / 1_000_000, csvFile.length() / 1024);
+            System.out.printf("  двоичный: запись %5d мс, загрузка %5d мс, размер %6d КБ%n", binarySave / 1_000_000,
+                    binaryLoad / 1_000_000, binaryFile.length() / 1024);
+            System.out.printf("  двоичный: только чтение снимка без построения индексов %5d мс%n",
+                    binaryRead / 1_000_000);
+        }
+    }
+
+    private static List<Task> createTasks(int taskCount) {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < taskCount; i++) {
+            tasks.add(new Task("Task" + i, "Description", BASE.plusMinutes(i * 60L), 30, Status.NEW));
+        }
+        return tasks;
+    }
+}
@@ -0,0 +1,57 @@
+package benchmark;
+
+import model.Status;
+import model.Task;
+import service.task.index.TimeSlotIndex;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TimeSlotIndexBenchmark {
+    private static final LocalDateTime BASE = LocalDateTime.of(2023, 7, 1, 0, 0);
+
+    public static void main(String[] args) {
+        int taskCount = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 1; i <= taskCount; i++) {
+            tasks.add(new Task(i, "Task" + i, "Description", BASE.plusMinutes(i * 60L), 30, Status.NEW));
+        }
+
+        for (int run = 0; run < 3; run++) {
+            System.out.printf("Прогон %d, задач: %d%n", run + 1, taskCount);
+            System.out.printf("  полный перебор: %d мс%n", measureLinearScan(tasks));
+            System.out.printf("  TimeSlotIndex:  %d мс%n", measureIndex(tasks));
+        }
+    }
+
+    private static long measureLinearScan(List<Task> tasks) {
+        List<Task> admitted = new ArrayList<>();
+        long start = System.nanoTime();
+        for (Task task : tasks) {
+            boolean intersects = false;
+            for (Task existing : admitted) {
+                if (existing.intersectsWith(task) || task.intersectsWith(existing)) {
+                    intersects = true;
+                    break;
+                }
+            }
+            if (!intersects) {
+                admitted.add(task);
+            }
+        }
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private static long measureIndex(List<Task> tasks) {
+        TimeSlotIndex index = new TimeSlotIndex();
+        long start = System.nanoTime();
+        for (Task task : tasks) {
+            if (!index.intersectsWith(task)) {
+                index.add(task);
+            }
+        }
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
@@ -0,0 +1,159 @@
+package http_client;
+
+import com.sun.net.httpserver.HttpExchange;
+import kv.VersionedValue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import server.KVServer;
+import service.task.exceptions.ManagerSaveException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KVTaskClientTest {
+    private final AtomicInteger saveCount = new AtomicInteger();
+    private KVServer kvServer;
+    private KVTaskClient client;
+
+    @BeforeEach
+    void beforeEach() throws IOException {
+        kvServer = new KVServer() {
+            @Override
+            protected InputStream requestBody(HttpExchange h) throws IOException {
+                saveCount.incrementAndGet();
+                return super.requestBody(h);
+            }
+        };
+        kvServer.start();
+        client = new KVTaskClient(URI.create("http://localhost:" + KVServer.PORT));
+    }
+
+    @AfterEach
+    void afterEach() {
+        kvServer.stop();
+    }
+
+    @Test
+    void asyncPutsAndLoadsAreSentConcurrently() {
+        List<CompletableFuture<Void>> puts = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            puts.add(client.putAsync("key" + i, "value" + i));
+        }
+        CompletableFuture.allOf(puts.toArray(new CompletableFuture<?>[0])).join();
+
+        List<CompletableFuture<String>> loads = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            loads.add(client.loadAsync("key" + i));
+        }
+        for (int i = 0; i < 10; i++) {
+            assertEquals("value" + i, loads.get(i).join(), "Неверное значение по ключу key" + i);
+        }
+    }
+
+    @Test
+    void rapidPutsOfOneKeyAreCoalesced() {
+        List<CompletableFuture<Void>> puts = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            puts.add(client.putLatest("key", "value" + i));
+        }
+        CompletableFuture.allOf(puts.toArray(new CompletableFuture<?>[0])).join();
+
+        assertEquals("value99", client.load("key"), "На сервере не последнее значение");
+        assertTrue(saveCount.get() < 100, "Значения не были объединены: отправлено " + saveCount.get());
+    }
+
+    @Test
+    void compareAndSetRejectsStaleVersion() {
+        assertNull(client.loadVersioned("key"), "Найдено значение, которое не сохраняли");
+        assertEquals(1, client.compareAndSet("key", "first", 0), "Новый ключ не записан");
+        assertEquals(-1, client.compareAndSet("key", "second", 0), "Запись по устаревшей версии принята");
+
+        VersionedValue loaded = client.loadVersioned("key");
+        assertEquals("first", loaded.getValue(), "Значение перезаписано при конфликте");
+        assertEquals(1, loaded.getVersion(), "Неверная версия ключа");
+
+        assertEquals(2, client.compareAndSet("key", "second", loaded.getVersion()), "Значение не записано");
+        client.put("key", "third");
+        assertEquals(3, client.loadVersioned("key").getVersion(), "Обычная запись не увеличила версию");
+    }
+
+    @Test
+    void compareAndSetFailsOnServerError() throws IOException {
+        kvServer.stop();
+        kvServer = new KVServer();
+        kvServer.start();
+
+        assertThrows(ManagerSaveException.class, () -> client.compareAndSet("key", "value", 0),
+                "Отказ сервера принят за конфликт версий");
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> client.compareAndSetAsync("key", "value", 0).join());
+        assertInstanceOf(ManagerSaveException.class, exception.getCause(), "Неверная причина ошибки");
+    }
+
+    @Test
+    void onlyOneOfConcurrentCompareAndSetsWins() {
+        client.put("key", "initial");
+        long version = client.loadVersioned("key").getVersion();
+
+        List<CompletableFuture<Long>> writes = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            writes.add(client.compareAndSetAsync("key", "value" + i, version));
+        }
+        long succeeded = writes.stream().map(CompletableFuture::join).filter(v -> v != -1).count();
+
+        assertEquals(1, succeeded, "Одну версию перезаписали несколько раз");
+        assertEquals(version + 1, client.loadVersioned("key").getVersion(), "Неверная версия ключа");
+    }
+
+    @Test
+    void batchPutAndLoadTakeOneRequestEach() {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (int i = 0; i < 10; i++) {
+            values.put("key" + i, "value" + i);
+        }
+        client.putAll(values);
+        assertEquals(1, saveCount.get(), "Значения отправлены не одним запросом");
+
+        List<String> keys = new ArrayList<>(values.keySet());
+        keys.add("missing");
+        assertEquals(values, client.loadAll(keys), "Загружены не те значения");
+        assertEquals(2, saveCount.get(), "Значения загружены не одним запросом");
+        assertEquals("value3", client.load("key3"), "Значение из пакета не найдено по ключу");
+    }
+
+    @Test
+    void rejectedBatchIsReported() {
+        assertFalse(client.putAll(Map.of("", "value")), "Отклонённый сервером пакет считается сохранённым");
+        assertTrue(client.putAll(Map.of("key", "value")), "Принятый сервером пакет считается несохранённым");
+    }
+
+    @Test
+    void rapidBatchPutsAreMerged() {
+        List<CompletableFuture<Boolean>> puts = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            puts.add(client.putAllLatest(Map.of("key" + i % 3, "value" + i, "last", "value" + i)));
+        }
+        CompletableFuture.allOf(puts.toArray(new CompletableFuture<?>[0])).join();
+        assertTrue(puts.stream().allMatch(CompletableFuture::join), "Сервер не принял пакет");
+
+        assertEquals(Map.of("key0", "value99", "key1", "value97", "key2", "value98", "last", "value99"),
+                client.loadAll(List.of("key0", "key1", "key2", "last")), "На сервере не последние значения");
+        assertTrue(saveCount.get() < 100, "Пакеты не были объединены: отправлено " + saveCount.get());
+    }
+}
@@ -528,6 +528,142 @@ class HttpTaskServerTest {
         }
     }
 
+    @Test
+    void getTasksFilteredByStatusAndTime() {
+        Type taskListType = new TypeToken<List<Task>>() {
+        }.getType();
+        RuntimeTypeAdapterFactory<Task> factory = RuntimeTypeAdapterFactory.of(Task.class, "type").
+                registerSubtype(Task.class, "Task").
+                registerSubtype(Subtask.class, "Subtask").registerSubtype(Epic.class, "Epic");
+        Gson gsonWithFactory = new GsonBuilder().registerTypeAdapterFactory(factory).create();
+        try {
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/tasks/?status=NEW")).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            List<Task> tasks = gsonWithFactory.fromJson(response.body(), taskListType);
+            assertEquals(List.of(task1, task2, epic1, subtask1, subtask2, epic2), tasks,
+                    "Неверный список задач со статусом NEW");
+
+            response = client.send(HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/tasks/?from=2023-06-30T12:30&to=2023-07-04T00:00"))
+                    .GET().build(), HttpResponse.BodyHandlers.ofString());
+            tasks = gsonWithFactory.fromJson(response.body(), taskListType);
+            assertEquals(List.of(task1, epic1, subtask2), tasks, "Неверный список задач в интервале");
+
+            response = client.send(HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/tasks/?endBefore=2023-06-30T13:40"))
+                    .GET().build(), HttpResponse.BodyHandlers.ofString());
+            tasks = gsonWithFactory.fromJson(response.body(), taskListType);
+            assertEquals(List.of(task2), tasks, "Неверный список задач, заканчивающихся до срока");
+
+            response = client.send(HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/tasks/?endBefore=yesterday"))
+                    .GET().build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(400, response.statusCode(), "Неверный код ответа для некорректной даты");
+        } catch (IOException | InterruptedException e) {
+            logger.error("При отправке запроса на сервер возникло ислючение: " + e);
+            throw new RequestFailedException("При отправке запроса на сервер возникло ислючение: " + e);
+        }
+    }
+
+    @Test
+    void getTasksPageByPage() {
+        Type taskListType = new TypeToken<List<Task>>() {
+        }.getType();
+        RuntimeTypeAdapterFactory<Task> factory = RuntimeTypeAdapterFactory.of(Task.class, "type").
+                registerSubtype(Task.class, "Task").
+                registerSubtype(Subtask.class, "Subtask").registerSubtype(Epic.class, "Epic");
+        Gson gsonWithFactory = new GsonBuilder().registerTypeAdapterFactory(factory).create();
+        try {
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/tasks/task/?after=1&limit=5")).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            List<Task> tasks = gson.fromJson(response.body(), taskListType);
+            assertEquals(List.of(task2), tasks, "Неверная страница задач");
+
+            response = client.send(HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/tasks/?limit=2")).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            tasks = gsonWithFactory.fromJson(response.body(), taskListType);
+            assertEquals(List.of(task2, task1), tasks, "Неверная первая страница списка по приоритету");
+
+            response = client.send(HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/tasks/?afterStart=2023-06-30T13:00&afterId=1&limit=2"))
+                    .GET().build(), HttpResponse.BodyHandlers.ofString());
+            tasks = gsonWithFactory.fromJson(response.body(), taskListType);
+            assertEquals(List.of(epic1, subtask2), tasks, "Неверная вторая страница списка по приоритету");
+        } catch (IOException | InterruptedException e) {
+            logger.error("При отправке запроса на сервер возникло ислючение: " + e);
+            throw new RequestFailedException("При отправке запроса на сервер возникло ислючение: " + e);
+        }
+    }
+
+    @Test
+    void addTasksInBatch() {
+        URI url = URI.create("http://localhost:8080/tasks/batch/");
+        Task task = new Task("Test task", "Test task description", Status.NEW);
+        Epic epic = new Epic("Test epic", "Test epic description");
+        Subtask subtask = new Subtask("Test subtask", "Test subtask description", Status.DONE, 3);
+        Task intersectingTask = new Task("Intersecting task", "Intersecting task description",
+                LocalDateTime.of(2023, 6, 30, 13, 30), 40, Status.NEW);
+        String json = gson.toJson(List.of(task, epic, subtask, intersectingTask));
+        HttpRequest request = HttpRequest.newBuilder().uri(url).POST(HttpRequest.BodyPublishers.ofString(json)).build();
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            JsonObject jsonObject = JsonParser.parseString(response.body()).getAsJsonObject();
+            List<Integer> ids = gson.fromJson(jsonObject.get("ids"), new TypeToken<List<Integer>>() {
+            }.getType());
+            assertEquals(List.of(7, 8, 9, -1), ids, "Полученные id новых задач не совпадают с ожидаемыми");
+            assertEquals(8, taskManager.getEpic(8).getId(), "Эпик не был добавлен");
+            assertEquals(Status.IN_PROGRESS, taskManager.getEpic(3).getStatus(), "Неверный статус эпика");
+        } catch (IOException | InterruptedException e) {
+            logger.error("При отправке запроса на сервер возникло ислючение: " + e);
+            throw new RequestFailedException("При отправке запроса на сервер возникло ислючение: " + e);
+        }
+    }
+
+    @Test
+    void updateTasksInBatch() {
+        URI url = URI.create("http://localhost:8080/tasks/batch/");
+        Task task = new Task(1, "Updated task", "Updated task description", Status.DONE);
+        Subtask subtask = new Subtask(4, "Updated subtask", "Updated subtask description", Status.DONE, 3);
+        Task unknownTask = new Task(100, "Unknown task", "Unknown task description", Status.NEW);
+        String json = gson.toJson(List.of(task, subtask, unknownTask));
+        HttpRequest request = HttpRequest.newBuilder().uri(url).PUT(HttpRequest.BodyPublishers.ofString(json)).build();
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            JsonObject jsonObject = JsonParser.parseString(response.body()).getAsJsonObject();
+            List<Boolean> results = gson.fromJson(jsonObject.get("isUpdated"), new TypeToken<List<Boolean>>() {
+            }.getType());
+            assertEquals(List.of(true, true, false), results, "Неверные результаты обновления");
+            assertEquals(task, taskManager.getTask(1), "Задача не была обновлена");
+            assertEquals(subtask, taskManager.getSubtask(4), "Подзадача не была обновлена");
+        } catch (IOException | InterruptedException e) {
+            logger.error("При отправке запроса на сервер возникло ислючение: " + e);
+            throw new RequestFailedException("При отправке запроса на сервер возникло ислючение: " + e);
+        }
+    }
+
+    @Test
+    void removeTasksInBatch() {
+        URI url = URI.create("http://localhost:8080/tasks/batch/");
+        HttpRequest request = HttpRequest.newBuilder().uri(url)
+                .method("DELETE", HttpRequest.BodyPublishers.ofString("[1, 4, 6, 100]")).build();
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            JsonObject jsonObject = JsonParser.parseString(response.body()).getAsJsonObject();
+            List<Boolean> results = gson.fromJson(jsonObject.get("isRemoved"), new TypeToken<List<Boolean>>() {
+            }.getType());
+            assertEquals(List.of(true, true, true, false), results, "Неверные результаты удаления");
+            assertEquals(List.of(task2), taskManager.getAllTasks(), "Неверный список задач");
+            assertEquals(List.of(subtask2), taskManager.getAllSubtasks(), "Неверный список подзадач");
+            assertEquals(List.of(epic1), taskManager.getAllEpics(), "Неверный список эпиков");
+        } catch (IOException | InterruptedException e) {
+            logger.error("При отправке запроса на сервер возникло ислючение: " + e);
+            throw new RequestFailedException("При отправке запроса на сервер возникло ислючение: " + e);
+        }
+    }
+
     @Test
     void addTaskWhichIntersectsWithTime() {
         URI url = URI.create("http://localhost:8080/tasks/task/");
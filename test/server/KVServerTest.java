@@ -0,0 +1,131 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import http_client.KVTaskClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import server.storage.InMemoryKVStorage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KVServerTest {
+    private final URI uri = URI.create("http://localhost:" + KVServer.PORT);
+    private KVServer kvServer;
+    private ExecutorService executor;
+
+    @AfterEach
+    void afterEach() {
+        kvServer.stop();
+        executor.shutdown();
+    }
+
+    @Test
+    void requestsAreHandledInParallelOnExecutor() throws IOException {
+        AtomicInteger inProgress = new AtomicInteger();
+        AtomicInteger maxInProgress = new AtomicInteger();
+        executor = KVServer.boundedPool(4, 16);
+        kvServer = new KVServer(executor) {
+            @Override
+            protected InputStream requestBody(HttpExchange h) throws IOException {
+                maxInProgress.accumulateAndGet(inProgress.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                inProgress.decrementAndGet();
+                return super.requestBody(h);
+            }
+        };
+        kvServer.start();
+        KVTaskClient client = new KVTaskClient(uri);
+
+        List<CompletableFuture<Void>> puts = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            puts.add(client.putAsync("key" + i, "value" + i));
+        }
+        CompletableFuture.allOf(puts.toArray(new CompletableFuture<?>[0])).join();
+
+        assertTrue(maxInProgress.get() > 1, "Запросы обрабатывались по одному");
+    }
+
+    @Test
+    void largeValuesAreStreamedThrough() throws IOException {
+        executor = KVServer.boundedPool(2, 4);
+        kvServer = new KVServer(executor);
+        kvServer.start();
+        KVTaskClient client = new KVTaskClient(uri);
+        String value = "значение ".repeat(512 * 1024);
+
+        client.put("key", value);
+
+        assertEquals(value, client.load("key"), "Большое значение искажено");
+        assertEquals(1, client.loadVersioned("key").getVersion(), "Неверная версия ключа");
+    }
+
+    @Test
+    void chunkedValuesAreLimited() throws IOException, InterruptedException {
+        executor = KVServer.boundedPool(2, 4);
+        kvServer = new KVServer(executor, new InMemoryKVStorage(), 1024);
+        kvServer.start();
+        HttpClient httpClient = HttpClient.newHttpClient();
+        String value = "значение".repeat(50);
+
+        HttpResponse<Void> saved = httpClient.send(chunkedSave("key", value), HttpResponse.BodyHandlers.discarding());
+        HttpResponse<Void> rejected = httpClient.send(chunkedSave("key", "x".repeat(2048)),
+                HttpResponse.BodyHandlers.discarding());
+
+        assertEquals(200, saved.statusCode(), "Значение без Content-Length не сохранено");
+        assertEquals(413, rejected.statusCode(), "Значение длиннее предела принято");
+        assertEquals(value, new KVTaskClient(uri).load("key"), "Значение искажено");
+    }
+
+    @Test
+    void concurrentClientsDoNotLoseWrites() throws IOException {
+        executor = KVServer.virtualThreadPerRequest();
+        kvServer = new KVServer(executor);
+        kvServer.start();
+
+        List<CompletableFuture<Void>> clients = new ArrayList<>();
+        for (int c = 0; c < 8; c++) {
+            int clientId = c;
+            clients.add(CompletableFuture.runAsync(() -> {
+                KVTaskClient client = new KVTaskClient(uri);
+                for (int i = 0; i < 50; i++) {
+                    client.put("client" + clientId + "-" + i, "value" + i);
+                }
+            }));
+        }
+        CompletableFuture.allOf(clients.toArray(new CompletableFuture<?>[0])).join();
+
+        KVTaskClient client = new KVTaskClient(uri);
+        for (int c = 0; c < 8; c++) {
+            for (int i = 0; i < 50; i++) {
+                assertEquals("value" + i, client.load("client" + c + "-" + i), "Значение потеряно");
+            }
+        }
+    }
+
+    private HttpRequest chunkedSave(String key, String value) {
+        byte[] bytes = value.getBytes(UTF_8);
+        return HttpRequest.newBuilder(uri.resolve("/save/" + key + "?API_TOKEN=DEBUG"))
+                .POST(HttpRequest.BodyPublishers.ofInputStream(() -> new ByteArrayInputStream(bytes)))
+                .build();
+    }
+}
@@ -0,0 +1,327 @@
+package server.storage;
+
+import http_client.KVTaskClient;
+import kv.VersionedValue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import server.KVServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogStructuredKVStorageTest {
+    private final File directory = new File("resources/kv-storage");
+    private LogStructuredKVStorage storage;
+
+    @BeforeEach
+    void beforeEach() {
+        deleteDirectory();
+        storage = new LogStructuredKVStorage(directory);
+    }
+
+    @AfterEach
+    void afterEach() {
+        storage.close();
+        deleteDirectory();
+    }
+
+    @Test
+    void valuesSurviveReopening() {
+        storage.put("tasks", "[1, 2]");
+        storage.put("history", "первый");
+        storage.put("history", "второй");
+        storage.close();
+
+        storage = new LogStructuredKVStorage(directory);
+
+        assertEquals("[1, 2]", storage.get("tasks"), "Значение не сохранилось");
+        assertEquals("второй", storage.get("history"), "Загружено не последнее значение");
+        assertNull(storage.get("epics"), "Найдено значение, которое не сохраняли");
+    }
+
+    @Test
+    void versionsSurviveReopening() {
+        assertEquals(1, storage.put("tasks", "[1]"), "Неверная версия нового ключа");
+        assertEquals(2, storage.putIfVersion("tasks", "[1, 2]", 1), "Значение не записано");
+        assertEquals(-1, storage.putIfVersion("tasks", "[3]", 1), "Запись по устаревшей версии принята");
+        storage.close();
+
+        storage = new LogStructuredKVStorage(directory);
+
+        VersionedValue loaded = storage.getVersioned("tasks");
+        assertEquals("[1, 2]", loaded.getValue(), "Значение не сохранилось");
+        assertEquals(2, loaded.getVersion(), "Версия не сохранилась");
+        assertEquals(-1, storage.putIfVersion("epics", "[3]", 1), "Записан ключ, которого нет");
+        assertEquals(1, storage.putIfVersion("epics", "[3]", 0), "Новый ключ не записан");
+    }
+
+    @Test
+    void tornTailIsDroppedOnReopening() throws IOException {
+        storage.put("tasks", "[1, 2]");
+        storage.close();
+        File segment = directory.listFiles()[0];
+        long size = segment.length();
+        Files.write(segment.toPath(), new byte[]{0, 0, 0, 5, 0, 0}, StandardOpenOption.APPEND);
+
+        storage = new LogStructuredKVStorage(directory);
+
+        assertEquals("[1, 2]", storage.get("tasks"), "Значение не сохранилось");
+        assertEquals(size, segment.length(), "Недописанная запись не отрезана");
+        storage.put("epics", "[3]");
+        storage.close();
+        storage = new LogStructuredKVStorage(directory);
+        assertEquals("[3]", storage.get("epics"), "Запись после восстановления не сохранилась");
+    }
+
+    @Test
+    void batchSurvivesReopening() {
+        storage.put("tasks", "[1]");
+        storage.putAll(Map.of("tasks", "[1, 2]", "epics", "[3]"));
+        storage.close();
+
+        storage = new LogStructuredKVStorage(directory);
+
+        assertEquals(Map.of("tasks", "[1, 2]", "epics", "[3]"), storage.getAll(List.of("tasks", "epics", "history")),
+                "Пакет не сохранился");
+        assertEquals(2, storage.getVersioned("tasks").getVersion(), "Пакет не увеличил версию");
+    }
+
+    @Test
+    void tornBatchIsDroppedWhole() throws IOException {
+        storage.put("tasks", "[1]");
+        storage.putAll(Map.of("tasks", "[1, 2]", "epics", "[3]"));
+        storage.close();
+        File segment = directory.listFiles()[0];
+        try (FileChannel channel = FileChannel.open(segment.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(segment.length() - 1);
+        }
+
+        storage = new LogStructuredKVStorage(directory);
+
+        assertEquals("[1]", storage.get("tasks"), "Записана часть пакета");
+        assertNull(storage.get("epics"), "Записана часть пакета");
+    }
+
+    @Test
+    void streamedValueSurvivesReopening() throws IOException {
+        byte[] value = "значение ".repeat(100_000).getBytes(UTF_8);
+        assertEquals(1, storage.put("tasks", new ByteArrayInputStream(value), value.length, -1),
+                "Неверная версия нового ключа");
+        storage.close();
+
+        storage = new LogStructuredKVStorage(directory);
+
+        ByteArrayOutputStream loaded = new ByteArrayOutputStream();
+        assertTrue(storage.read("tasks", (version, length, stream) -> {
+            assertEquals(1, version, "Версия не сохранилась");
+            assertEquals(value.length, length, "Неверная длина значения");
+            stream.transferTo(loaded);
+        }), "Значение не найдено");
+        assertEquals(new String(value, UTF_8), loaded.toString(UTF_8), "Значение искажено");
+        assertFalse(storage.read("epics", (version, length, stream) -> {
+        }), "Найдено значение, которое не сохраняли");
+    }
+
+    @Test
+    void truncatedStreamIsNotStored() throws IOException {
+        storage.put("tasks", "[1]");
+        byte[] value = "[1, 2]".getBytes(UTF_8);
+
+        assertThrows(EOFException.class, () -> storage.put("tasks", new ByteArrayInputStream(value),
+                value.length + 10, -1), "Недописанное значение принято");
+
+        assertEquals("[1]", storage.get("tasks"), "Недописанное значение заменило прежнее");
+        storage.put("epics", "[3]");
+        storage.close();
+        storage = new LogStructuredKVStorage(directory);
+        assertEquals("[1]", storage.get("tasks"), "Прежнее значение потеряно");
+        assertEquals("[3]", storage.get("epics"), "Запись после недописанного значения потеряна");
+    }
+
+    @Test
+    void slowStreamDoesNotBlockOtherWrites() throws Exception {
+        BlockingInputStream slowValue = new BlockingInputStream("[1, 2]");
+        ExecutorService uploader = Executors.newSingleThreadExecutor();
+        Future<Long> upload = uploader.submit(() -> storage.put("tasks", slowValue, 6, -1));
+        slowValue.started.await();
+
+        CompletableFuture.runAsync(() -> {
+            storage.put("epics", "[3]");
+            storage.putAll(Map.of("history", "[3]"));
+            storage.getAll(List.of("epics", "history"));
+        }).get(5, TimeUnit.SECONDS);
+        assertNull(storage.get("tasks"), "Недочитанное значение видно читателям");
+        assertEquals(-1, storage.putIfVersion("tasks", "[0]", 0), "Занятая версия ключа не учтена");
+
+        slowValue.released.countDown();
+        assertEquals(1, upload.get(5, TimeUnit.SECONDS), "Неверная версия нового ключа");
+        uploader.shutdown();
+        assertEquals("[1, 2]", storage.get("tasks"), "Значение не записано");
+        storage.close();
+        storage = new LogStructuredKVStorage(directory);
+        assertEquals("[1, 2]", storage.get("tasks"), "Значение не сохранилось");
+        assertEquals("[3]", storage.get("epics"), "Запись, сделанная во время чтения значения, потеряна");
+    }
+
+    @Test
+    void newerWriteWinsOverSlowerStream() throws Exception {
+        BlockingInputStream slowValue = new BlockingInputStream("[1]");
+        ExecutorService uploader = Executors.newSingleThreadExecutor();
+        Future<Long> upload = uploader.submit(() -> storage.put("tasks", slowValue, 3, -1));
+        slowValue.started.await();
+
+        assertEquals(2, storage.put("tasks", "[2]"), "Неверная версия после занятой");
+        slowValue.released.countDown();
+        assertEquals(1, upload.get(5, TimeUnit.SECONDS), "Неверная версия значения из потока");
+        uploader.shutdown();
+
+        assertEquals("[2]", storage.get("tasks"), "Более старое значение заменило новое");
+        storage.close();
+        storage = new LogStructuredKVStorage(directory);
+        assertEquals("[2]", storage.get("tasks"), "После перезапуска загружено старое значение");
+        assertEquals(2, storage.getVersioned("tasks").getVersion(), "После перезапуска версия другая");
+    }
+
+    @Test
+    void failedStreamDoesNotHoldVersion() {
+        byte[] value = "[1, 2]".getBytes(UTF_8);
+
+        assertThrows(EOFException.class, () -> storage.put("tasks", new ByteArrayInputStream(value),
+                value.length + 10, -1), "Недописанное значение принято");
+
+        assertEquals(1, storage.putIfVersion("tasks", "[1]", 0), "Версия недописанного значения осталась занятой");
+    }
+
+    @Test
+    void slowReaderDoesNotBlockCompaction() throws Exception {
+        storage.close();
+        storage = new LogStructuredKVStorage(directory, false, 1024);
+        storage.put("tasks", "[1, 2]");
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        ByteArrayOutputStream loaded = new ByteArrayOutputStream();
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        Future<Boolean> read = reader.submit(() -> storage.read("tasks", (version, length, value) -> {
+            reading.countDown();
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            value.transferTo(loaded);
+        }));
+        reading.await();
+
+        CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 100; i++) {
+                storage.put("key" + i % 5, "x".repeat(100));
+            }
+            storage.awaitCompaction();
+        }).get(5, TimeUnit.SECONDS);
+
+        released.countDown();
+        assertTrue(read.get(5, TimeUnit.SECONDS), "Значение не найдено");
+        reader.shutdown();
+        assertEquals("[1, 2]", loaded.toString(UTF_8), "Значение из заменённого сегмента искажено");
+        assertEquals("[1, 2]", storage.get("tasks"), "Значение потеряно после сжатия");
+    }
+
+    @Test
+    void compactionKeepsOnlyLatestValues() {
+        storage.close();
+        storage = new LogStructuredKVStorage(directory, false, 1024);
+        String value = "x".repeat(100);
+        long written = 0;
+        for (int i = 0; i < 1000; i++) {
+            storage.put("key" + i % 10, value + i);
+            written += ("key" + i % 10 + value + i).length();
+        }
+        storage.awaitCompaction();
+
+        assertTrue(storage.getSize() < written / 4, "Сегменты не сжаты: " + storage.getSize() + " байт");
+        for (int i = 0; i < 10; i++) {
+            assertEquals(value + (990 + i), storage.get("key" + i), "Неверное значение после сжатия");
+        }
+        storage.close();
+        storage = new LogStructuredKVStorage(directory);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(value + (990 + i), storage.get("key" + i), "Неверное значение после перезапуска");
+        }
+    }
+
+    @Test
+    void kvServerKeepsValuesAfterRestart() throws IOException {
+        URI uri = URI.create("http://localhost:" + KVServer.PORT);
+        KVServer kvServer = new KVServer(null, storage);
+        kvServer.start();
+        new KVTaskClient(uri).put("tasks", "[1, 2]");
+        kvServer.stop();
+        storage.close();
+
+        storage = new LogStructuredKVStorage(directory);
+        kvServer = new KVServer(null, storage);
+        kvServer.start();
+        try {
+            assertEquals("[1, 2]", new KVTaskClient(uri).load("tasks"), "Значение потеряно после перезапуска");
+        } finally {
+            kvServer.stop();
+        }
+    }
+
+    /**
+     * Поток, который отдаёт данные только после released и сообщает через started, что его начали читать.
+     */
+    private static class BlockingInputStream extends ByteArrayInputStream {
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        BlockingInputStream(String value) {
+            super(value.getBytes(UTF_8));
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            started.countDown();
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.read(b, off, len);
+        }
+    }
+
+    private void deleteDirectory() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+}
@@ -0,0 +1,146 @@
+package service.collection;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DenseIdMapTest {
+    private DenseIdMap<String> map;
+
+    @BeforeEach
+    void beforeEach() {
+        map = new DenseIdMap<>();
+    }
+
+    @Test
+    void putGetAndRemove() {
+        assertNull(map.put(5, "five"), "Для нового id не должно быть предыдущего значения");
+        assertEquals("five", map.put(5, "пять"), "Неверное предыдущее значение");
+        assertEquals("пять", map.get(5), "Неверное значение по id");
+        assertEquals(1, map.size(), "Неверный размер");
+        assertTrue(map.containsKey(5), "id должен присутствовать");
+        assertFalse(map.containsKey(4), "id не должен присутствовать");
+
+        assertEquals("пять", map.remove(5), "Неверное удалённое значение");
+        assertNull(map.remove(5), "Повторное удаление должно вернуть null");
+        assertTrue(map.isEmpty(), "Отображение должно быть пустым");
+    }
+
+    @Test
+    void unknownAndForeignKeysReturnNull() {
+        map.put(1, "one");
+        assertNull(map.get(-1), "Для отрицательного id должен возвращаться null");
+        assertNull(map.get(1_000_000), "Для id за пределами массива должен возвращаться null");
+        assertNull(map.get("1"), "Для ключа другого типа должен возвращаться null");
+        assertFalse(map.containsKey((Object) null), "null не может быть ключом");
+    }
+
+    @Test
+    void rejectsNegativeIdAndNullValue() {
+        assertThrows(IllegalArgumentException.class, () -> map.put(-1, "minus"));
+        assertThrows(NullPointerException.class, () -> map.put(1, null));
+    }
+
+    @Test
+    void iteratesInIdOrder() {
+        map.put(40, "c");
+        map.put(3, "a");
+        map.put(17, "b");
+
+        assertEquals(List.of(3, 17, 40), new ArrayList<>(map.keySet()), "Неверный порядок id");
+        assertEquals(List.of("a", "b", "c"), new ArrayList<>(map.values()), "Неверный порядок значений");
+        assertEquals(Map.of(3, "a", 17, "b", 40, "c"), map, "Отображения должны быть равны");
+        assertEquals(17, map.nextId(4), "Неверный следующий id");
+        assertEquals(-1, map.nextId(41), "После последнего id следующего быть не должно");
+    }
+
+    @Test
+    void iteratorRemoveAndEntrySetValue() {
+        map.put(1, "one");
+        map.put(2, "two");
+        map.put(3, "three");
+
+        Iterator<String> iterator = map.values().iterator();
+        iterator.next();
+        iterator.next();
+        iterator.remove();
+        assertThrows(IllegalStateException.class, iterator::remove);
+
+        for (Map.Entry<Integer, String> entry : map.entrySet()) {
+            entry.setValue(entry.getValue().toUpperCase());
+        }
+        assertEquals(Map.of(1, "ONE", 3, "THREE"), map, "Неверное содержимое после изменений");
+    }
+
+    @Test
+    void clearResetsMap() {
+        for (int i = 0; i < 1000; i++) {
+            map.put(i, "value" + i);
+        }
+        map.clear();
+        assertTrue(map.isEmpty(), "Отображение должно быть пустым");
+        assertNull(map.get(500), "После очистки значений быть не должно");
+        map.put(2, "two");
+        assertEquals(List.of(2), new ArrayList<>(map.keySet()), "Неверные id после очистки");
+    }
+
+    @Test
+    void storesLargeAndSparseIds() {
+        map.put(1, "one");
+        map.put(300_000_000, "large");
+        map.put(Integer.MAX_VALUE, "max");
+        map.put(2, "two");
+
+        assertEquals(4, map.size(), "Неверный размер");
+        assertEquals("max", map.get(Integer.MAX_VALUE), "Неверное значение по наибольшему id");
+        assertEquals(List.of(1, 2, 300_000_000, Integer.MAX_VALUE), new ArrayList<>(map.keySet()),
+                "Неверный порядок id");
+        assertEquals(300_000_000, map.nextId(3), "Неверный следующий id");
+        assertEquals(Integer.MAX_VALUE, map.nextId(300_000_001), "Неверный следующий id");
+
+        assertEquals("large", map.remove(300_000_000), "Неверное удалённое значение");
+        assertEquals(List.of(1, 2, Integer.MAX_VALUE), new ArrayList<>(map.keySet()), "Неверные id после удаления");
+    }
+
+    @Test
+    void keepsOrderWhenSparseIdsBecomeDense() {
+        map.put(100, "hundred");
+        for (int i = 0; i < 100; i++) {
+            map.put(i, "value" + i);
+        }
+        for (int i = 0; i < 95; i++) {
+            map.remove(i);
+        }
+
+        assertEquals(List.of(95, 96, 97, 98, 99, 100), new ArrayList<>(map.keySet()), "Неверный порядок id");
+        assertEquals("hundred", map.get(100), "Неверное значение по id");
+    }
+
+    @Test
+    void matchesTreeMapOnRandomOperations() {
+        Random random = new Random(7);
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            int id = random.nextInt(10) == 0 ? random.nextInt(Integer.MAX_VALUE) : random.nextInt(2_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(id), map.remove(id), "Неверное удалённое значение");
+            } else {
+                String value = "value" + i;
+                assertEquals(expected.put(id, value), map.put(id, value), "Неверное предыдущее значение");
+            }
+        }
+        assertEquals(expected.size(), map.size(), "Неверный размер");
+        assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(map.entrySet()),
+                "Содержимое должно совпадать с TreeMap");
+        assertEquals(new HashMap<>(expected), map, "Отображения должны быть равны");
+    }
+}
@@ -0,0 +1,72 @@
+package service.collection;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DenseIdSetTest {
+    private DenseIdSet set;
+
+    @BeforeEach
+    void beforeEach() {
+        set = new DenseIdSet();
+    }
+
+    @Test
+    void addContainsAndRemove() {
+        assertTrue(set.add(5), "Новый id не добавлен");
+        assertFalse(set.add(5), "Повторный id добавлен");
+        assertTrue(set.contains(5), "id должен присутствовать");
+        assertFalse(set.contains(4), "id не должен присутствовать");
+        assertFalse(set.contains(-1), "Отрицательный id не должен присутствовать");
+        assertEquals(1, set.size(), "Неверный размер");
+
+        assertTrue(set.remove(5), "id не удалён");
+        assertFalse(set.remove(5), "Повторное удаление должно вернуть false");
+        assertTrue(set.isEmpty(), "Множество должно быть пустым");
+        assertThrows(IllegalArgumentException.class, () -> set.add(-1));
+    }
+
+    @Test
+    void storesLargeIdsInIdOrder() {
+        set.add(Integer.MAX_VALUE);
+        set.add(300_000_000);
+        set.add(7);
+
+        assertEquals(List.of(7, 300_000_000, Integer.MAX_VALUE), toList(), "Неверный порядок id");
+        assertTrue(set.contains(Integer.MAX_VALUE), "Наибольший id должен присутствовать");
+
+        set.removeIf(id -> id > 1000);
+        assertEquals(List.of(7), toList(), "removeIf удалил не те id");
+    }
+
+    @Test
+    void matchesTreeSetOnRandomOperations() {
+        Random random = new Random(42);
+        TreeSet<Integer> expected = new TreeSet<>();
+
+        for (int i = 0; i < 50_000; i++) {
+            int id = random.nextInt(10) == 0 ? random.nextInt(Integer.MAX_VALUE) : random.nextInt(20_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(id), set.remove(id), "Результат удаления отличается для id " + id);
+            } else {
+                assertEquals(expected.add(id), set.add(id), "Результат добавления отличается для id " + id);
+            }
+        }
+
+        assertEquals(expected.size(), set.size(), "Неверный размер");
+        assertEquals(new ArrayList<>(expected), toList(), "Неверное содержимое");
+    }
+
+    private List<Integer> toList() {
+        List<Integer> ids = new ArrayList<>();
+        set.forEach(ids::add);
+        return ids;
+    }
+}
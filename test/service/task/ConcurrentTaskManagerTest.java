@@ -0,0 +1,243 @@
+package service.task;
+
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import model.Task;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentTaskManagerTest extends TaskManagerTest<TaskManager> {
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 2_000;
+    private static final LocalDateTime BASE = LocalDateTime.of(2023, 7, 1, 0, 0);
+
+    private TaskManager taskManager;
+
+    @BeforeEach
+    public void setTaskManager() {
+        taskManager = new ConcurrentTaskManager();
+        super.setTaskManager(taskManager);
+    }
+
+    @Test
+    void concurrentEditsKeepEpicsConsistent() throws Exception {
+        List<Integer> epicIds = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            epicIds.add(taskManager.addNewEpic(new Epic("Epic" + i, "Description")));
+        }
+
+        runConcurrently(thread -> {
+            Random random = new Random(thread);
+            List<Integer> ownSubtaskIds = new ArrayList<>();
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                int epicId = epicIds.get(random.nextInt(epicIds.size()));
+                int action = random.nextInt(4);
+                if (action < 2 || ownSubtaskIds.isEmpty()) {
+                    Subtask subtask = new Subtask("Subtask", "Description",
+                            BASE.plusMinutes(random.nextInt(200_000)), random.nextInt(120),
+                            Status.values()[random.nextInt(3)], epicId);
+                    int id = taskManager.addNewSubtask(subtask);
+                    if (id != -1) {
+                        ownSubtaskIds.add(id);
+                    }
+                } else if (action == 2) {
+                    int id = ownSubtaskIds.get(random.nextInt(ownSubtaskIds.size()));
+                    Subtask stored = taskManager.getSubtask(id);
+                    Subtask update = new Subtask(id, stored.getName(), stored.getDescription(),
+                            BASE.plusMinutes(random.nextInt(200_000)), random.nextInt(120),
+                            Status.values()[random.nextInt(3)], stored.getEpicId());
+                    taskManager.updateSubtask(update);
+                } else {
+                    int id = ownSubtaskIds.remove(random.nextInt(ownSubtaskIds.size()));
+                    assertTrue(taskManager.removeSubtask(id), "Подзадача не была удалена");
+                }
+            }
+        });
+
+        for (Epic epic : taskManager.getAllEpics()) {
+            assertEpicMatchesSubtasks(epic, taskManager.getEpicSubtasks(epic.getId()));
+        }
+        assertNoIntersections();
+        assertPrioritizedTasksMatchStores();
+    }
+
+    @Test
+    void concurrentInsertsNeverAdmitIntersectingSlots() throws Exception {
+        runConcurrently(thread -> {
+            Random random = new Random(100 + thread);
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                Task task = new Task("Task", "Description", BASE.plusMinutes(random.nextInt(50_000)),
+                        1 + random.nextInt(60), Status.NEW);
+                int id = taskManager.addNewTask(task);
+                if (id != -1 && random.nextInt(5) == 0) {
+                    Task update = new Task(id, task.getName(), task.getDescription(),
+                            BASE.plusMinutes(random.nextInt(50_000)), task.getDuration(), task.getStatus());
+                    taskManager.updateTask(update);
+                }
+            }
+        });
+
+        assertNoIntersections();
+        assertPrioritizedTasksMatchStores();
+    }
+
+    @Test
+    void epicsAreReturnedAsCopies() throws Exception {
+        int epicId = taskManager.addNewEpic(new Epic("Epic", "Description"));
+        Epic epic = taskManager.getEpic(epicId);
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD / 10; i++) {
+                int id = taskManager.addNewSubtask(new Subtask("Subtask", "Description", Status.DONE, epicId));
+                for (Epic loaded : taskManager.getAllEpics()) {
+                    Status expected = loaded.getSubtaskIds().isEmpty() ? Status.NEW : Status.DONE;
+                    assertEquals(expected, loaded.getStatus(), "Статус эпика не соответствует его подзадачам");
+                }
+                taskManager.removeSubtask(id);
+            }
+        });
+
+        assertTrue(epic.getSubtaskIds().isEmpty(), "Полученный ранее эпик изменился");
+        assertEquals(Status.NEW, epic.getStatus(), "Полученный ранее эпик изменился");
+    }
+
+    @Test
+    void removedTasksDoNotReturnToHistory() throws Exception {
+        runConcurrently(thread -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD / 10; i++) {
+                int taskId = taskManager.addNewTask(new Task("Task", "Description", Status.NEW));
+                int epicId = taskManager.addNewEpic(new Epic("Epic", "Description"));
+                int subtaskId = taskManager.addNewSubtask(new Subtask("Subtask", "Description", Status.NEW, epicId));
+                if (thread % 2 == 0) {
+                    taskManager.removeTask(taskId);
+                    taskManager.removeSubtask(subtaskId);
+                    taskManager.removeEpic(epicId);
+                } else {
+                    for (int id = Math.max(1, taskId - 50); id <= subtaskId; id++) {
+                        taskManager.getTask(id);
+                        taskManager.getEpic(id);
+                        taskManager.getSubtask(id);
+                    }
+                }
+            }
+        });
+
+        for (Task task : taskManager.getHistory()) {
+            boolean isStored = taskManager.getAllTasks().contains(task)
+                    || taskManager.getAllSubtasks().contains(task)
+                    || taskManager.getAllEpics().stream().anyMatch(epic -> epic.getId().equals(task.getId()));
+            assertTrue(isStored, "В истории осталась удалённая задача " + task.getId());
+        }
+    }
+
+    @Test
+    void concurrentIdsAreUnique() throws Exception {
+        List<Integer> ids = new ArrayList<>();
+        runConcurrently(thread -> {
+            List<Integer> ownIds = new ArrayList<>();
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                ownIds.add(taskManager.addNewTask(new Task("Task", "Description", Status.NEW)));
+            }
+            synchronized (ids) {
+                ids.addAll(ownIds);
+            }
+        });
+
+        assertEquals(THREADS * OPERATIONS_PER_THREAD, new HashSet<>(ids).size(), "Найдены повторяющиеся id");
+        assertEquals(THREADS * OPERATIONS_PER_THREAD, taskManager.getAllTasks().size(),
+                "Неверное количество задач");
+    }
+
+    private void runConcurrently(ThreadBody body) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                int thread = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    body.run(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void assertEpicMatchesSubtasks(Epic epic, List<Subtask> subtasks) {
+        Set<Status> statuses = subtasks.stream().map(Task::getStatus).collect(Collectors.toSet());
+        Status expectedStatus;
+        if (statuses.isEmpty() || statuses.equals(Set.of(Status.NEW))) {
+            expectedStatus = Status.NEW;
+        } else if (statuses.equals(Set.of(Status.DONE))) {
+            expectedStatus = Status.DONE;
+        } else {
+            expectedStatus = Status.IN_PROGRESS;
+        }
+        LocalDateTime expectedStart = subtasks.stream().map(Task::getStartTime)
+                .min(Comparator.naturalOrder()).orElse(null);
+        LocalDateTime expectedEnd = subtasks.stream().map(Task::getEndTime)
+                .max(Comparator.naturalOrder()).orElse(null);
+        int expectedDuration = subtasks.stream().mapToInt(Task::getDuration).sum();
+
+        assertEquals(expectedStatus, epic.getStatus(), "Неверный статус эпика " + epic.getId());
+        assertEquals(expectedStart, epic.getStartTime(), "Неверное время начала эпика " + epic.getId());
+        assertEquals(expectedEnd, epic.getEndTime(), "Неверное время окончания эпика " + epic.getId());
+        assertEquals(expectedDuration, epic.getDuration(), "Неверная продолжительность эпика " + epic.getId());
+    }
+
+    private void assertNoIntersections() {
+        List<Task> timed = new ArrayList<>(taskManager.getAllTasks());
+        timed.addAll(taskManager.getAllSubtasks());
+        timed.removeIf(task -> task.getStartTime() == null);
+        timed.sort(Comparator.comparing(Task::getStartTime));
+        for (int i = 0; i < timed.size(); i++) {
+            Task first = timed.get(i);
+            for (int j = i + 1; j < timed.size(); j++) {
+                Task second = timed.get(j);
+                if (!second.getStartTime().isBefore(first.getEndTime())) {
+                    break;
+                }
+                assertFalse(first.intersectsWith(second) || second.intersectsWith(first),
+                        "Пересекающиеся задачи: " + first + " и " + second);
+            }
+        }
+    }
+
+    private void assertPrioritizedTasksMatchStores() {
+        List<Task> prioritized = taskManager.getPrioritizedTasks();
+        int expectedSize = taskManager.getAllTasks().size() + taskManager.getAllSubtasks().size()
+                + taskManager.getAllEpics().size();
+        assertEquals(expectedSize, prioritized.size(), "Список по приоритету не совпадает с хранилищем");
+        for (int i = 1; i < prioritized.size(); i++) {
+            assertTrue(prioritized.get(i - 1).compareTo(prioritized.get(i)) < 0,
+                    "Нарушен порядок списка по приоритету");
+        }
+    }
+
+    private interface ThreadBody {
+        void run(int thread) throws Exception;
+    }
+}
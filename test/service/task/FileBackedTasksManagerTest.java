@@ -1,6 +1,7 @@
 package service.task;
 
 import model.Epic;
+import model.Status;
 import model.Subtask;
 import model.Task;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,9 +12,12 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 
@@ -134,6 +138,41 @@ class FileBackedTasksManagerTest extends TaskManagerTest<TaskManager> {
                 "приоритету не совпадает с ожидаемым");
     }
 
+    @Test
+    void newIdsAfterLoadingDoNotOverwriteLoadedTasks() {
+        int task1Id = taskManager.addNewTask(task1);
+
+        taskManager = FileBackedTasksManager.loadFromFile(file);
+        int task2Id = taskManager.addNewTask(task2);
+
+        assertNotEquals(task1Id, task2Id, "Id новой задачи совпадает с id загруженной");
+        assertEquals(List.of(task1, task2), taskManager.getAllTasks(), "Списки задач не совпадают");
+    }
+
+    @Test
+    void binaryFileLoadsSameStateAsCsv() {
+        taskManager.addNewTask(taskWithTime1);
+        taskManager.addNewTask(task1);
+        int epicId = taskManager.addNewEpic(epic1);
+        subtaskWithTime1.setEpicId(epicId);
+        int subtaskId = taskManager.addNewSubtask(subtaskWithTime1);
+        taskManager.getSubtask(subtaskId);
+        taskManager.getEpic(epicId);
+        File binaryFile = new File("resources/tasks.bin");
+        ((FileBackedTasksManager) taskManager).exportTo(binaryFile);
+
+        TaskManager fromCsv = FileBackedTasksManager.loadFromFile(file);
+        TaskManager fromBinary = FileBackedTasksManager.loadFromFile(binaryFile);
+        binaryFile.delete();
+
+        assertEquals(fromCsv.getAllTasks(), fromBinary.getAllTasks(), "Списки задач не совпадают");
+        assertEquals(fromCsv.getAllEpics(), fromBinary.getAllEpics(), "Списки эпиков не совпадают");
+        assertEquals(fromCsv.getAllSubtasks(), fromBinary.getAllSubtasks(), "Списки подзадач не совпадают");
+        assertEquals(fromCsv.getHistory(), fromBinary.getHistory(), "Истории не совпадают");
+        assertEquals(fromCsv.getPrioritizedTasks(), fromBinary.getPrioritizedTasks(),
+                "Списки задач по приоритету не совпадают");
+    }
+
     @Test
     void checkLoadingWithInvalidFileContents() {
         createInvalidFile();
@@ -144,6 +183,152 @@ class FileBackedTasksManagerTest extends TaskManagerTest<TaskManager> {
                 "исключения");
     }
 
+    @Test
+    void loadingFileWithTooFewLinesFails() {
+        writeFile("id,type,name,status,description,startTime,duration,endTime,epic\n" +
+                "2,TASK,Test task2,NEW,Test 2 description,null,0,null\n\n\n");
+
+        ManagerSaveException exception = assertThrows(ManagerSaveException.class,
+                () -> FileBackedTasksManager.loadFromFile(file));
+        assertEquals("Неверный формат файла: " + file.getPath() + ". Количество строк в файле должно быть " +
+                "не менее 3", exception.getMessage(), "Неверное сообщение исключения");
+    }
+
+    @Test
+    void missingEmptyLineIsReportedBeforeInvalidTaskLine() {
+        writeFile("id,type,name,status,description,startTime,duration,endTime,epic\n" +
+                "2,TASK,Test task2\n" +
+                "3,TASK,Test task3,NEW,Test 3 description,null,0,null\n");
+
+        ManagerSaveException exception = assertThrows(ManagerSaveException.class,
+                () -> FileBackedTasksManager.loadFromFile(file));
+        assertEquals("Неверный формат файла: " + file.getPath() + ". В файле отсутствует пустая строка, " +
+                "разделяющая задачи и историю просмотров.", exception.getMessage(), "Неверное сообщение исключения");
+    }
+
+    @Test
+    void loadingLargeFileReadsEveryLine() {
+        StringBuilder sb = new StringBuilder("id,type,name,status,description,startTime,duration,endTime,epic\n");
+        for (int i = 1; i <= 20_000; i++) {
+            sb.append(i).append(",TASK,Task").append(i).append(",NEW,Description,null,0,null,\n");
+        }
+        sb.append("\n20000,1");
+        writeFile(sb.toString());
+
+        TaskManager loaded = FileBackedTasksManager.loadFromFile(file);
+
+        assertEquals(20_000, loaded.getAllTasks().size(), "Неверное количество задач");
+        assertEquals(List.of(loaded.getTask(20_000), loaded.getTask(1)), loaded.getHistory(),
+                "Неверная история");
+    }
+
+    @Test
+    void loadingTasksWithLargeIds() {
+        writeFile("id,type,name,status,description,startTime,duration,endTime,epic\n" +
+                "1,TASK,Task1,NEW,Description,null,0,null\n" +
+                "300000000,EPIC,Epic,NEW,Description,null,0,null\n" +
+                "2147483646,SUBTASK,Subtask,DONE,Description,null,0,null,300000000\n" +
+                "2147483647,TASK,Task2,NEW,Description,null,0,null\n" +
+                "\n2147483647,300000000");
+
+        TaskManager loaded = FileBackedTasksManager.loadFromFile(file);
+
+        assertEquals(2, loaded.getAllTasks().size(), "Неверное количество задач");
+        assertEquals(List.of(2147483646), loaded.getEpic(300_000_000).getSubtaskIds(),
+                "Неверный список подзадач эпика");
+        assertEquals(List.of(loaded.getTask(1), loaded.getTask(Integer.MAX_VALUE)),
+                loaded.getTasksPage(0, 10), "Неверная страница задач");
+        assertEquals(List.of(loaded.getTask(Integer.MAX_VALUE)), loaded.getTasksPage(1, 10),
+                "Неверная страница задач после первой");
+    }
+
+    @Test
+    void readsDoNotRewriteSnapshot() throws IOException {
+        int taskId = taskManager.addNewTask(task1);
+        int epicId = taskManager.addNewEpic(epic1);
+        long modified = file.lastModified();
+        String snapshot = Files.readString(file.toPath());
+        file.setLastModified(modified - 10_000);
+
+        taskManager.getEpic(epicId);
+        taskManager.getTask(taskId);
+
+        assertEquals(modified - 10_000, file.lastModified(), "Снимок был перезаписан");
+        assertEquals(snapshot, Files.readString(file.toPath()), "Снимок был изменён");
+        FileBackedTasksManager loaded = FileBackedTasksManager.loadFromFile(file);
+        assertEquals(taskManager.getHistory(), loaded.getHistory(), "Истории не совпадают");
+
+        taskManager.updateTask(new Task(taskId, "Task", "Description", Status.DONE));
+        assertEquals(0, FileBackedTasksManager.historyFileFor(file).length(),
+                "Журнал истории не очищен после записи снимка");
+        loaded = FileBackedTasksManager.loadFromFile(file);
+        assertEquals(List.of(loaded.getEpic(epicId), loaded.getTask(taskId)), loaded.getHistory(),
+                "Неверная история");
+    }
+
+    @Test
+    void parallelLoadingMatchesSequentialLoading() {
+        StringBuilder sb = new StringBuilder("id,type,name,status,description,startTime,duration,endTime,epic\r\n");
+        for (int i = 1; i <= 300; i += 3) {
+            sb.append(i).append(",EPIC,Epic").append(i).append(",IN_PROGRESS,Описание,2023-07-0")
+                    .append(1 + i % 9).append("T10:00,60,2023-07-10T10:00\n");
+            sb.append(i + 1).append(",SUBTASK,Subtask").append(i + 1).append(",DONE,Описание,2023-07-0")
+                    .append(1 + i % 9).append("T10:00,60,2023-07-0").append(1 + i % 9).append("T11:00,")
+                    .append(i).append("\r\n");
+            sb.append(i + 2).append(",TASK,Task").append(i + 2).append(",NEW,Описание,null,0,null\n");
+        }
+        sb.append("\n300,2,1,4");
+        writeFile(sb.toString());
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        TaskManager sequential = FileBackedTasksManager.loadFromFile(file);
+        TaskManager parallel = FileBackedTasksManager.loadFromFileInParallel(file, pool, 64);
+        pool.shutdown();
+
+        assertEquals(sequential.getAllTasks(), parallel.getAllTasks(), "Задачи не совпадают");
+        assertEquals(sequential.getAllEpics(), parallel.getAllEpics(), "Эпики не совпадают");
+        assertEquals(sequential.getAllSubtasks(), parallel.getAllSubtasks(), "Подзадачи не совпадают");
+        assertEquals(sequential.getHistory(), parallel.getHistory(), "Истории не совпадают");
+        assertEquals(sequential.getPrioritizedTasks(), parallel.getPrioritizedTasks(),
+                "Списки задач по приоритету не совпадают");
+        assertEquals(List.of(2), parallel.getEpic(1).getSubtaskIds(), "Неверный список подзадач эпика");
+    }
+
+    @Test
+    void parallelLoadingReportsSameErrorsAsSequentialLoading() {
+        String header = "id,type,name,status,description,startTime,duration,endTime,epic\n";
+        String task = "1,TASK,Task,NEW,Description,null,0,null\n";
+        List<String> contents = List.of(
+                header + task + "\n\n",
+                header + task + "2,TASK,Task2\n" + task,
+                header + task + task + "2,TASK,Task2\n" + task + "\n1",
+                header + task + task + "2,TASK,Task2,NEW,Description,null,x,null\n" + "3,TASK,Task3\n\n1",
+                header + task + task + task + "\n",
+                header + task + task + task + "\n1,x");
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        for (String content : contents) {
+            writeFile(content);
+            RuntimeException sequential = assertThrows(RuntimeException.class,
+                    () -> FileBackedTasksManager.loadFromFile(file));
+            RuntimeException parallel = assertThrows(RuntimeException.class,
+                    () -> FileBackedTasksManager.loadFromFileInParallel(file, pool, 16));
+            assertEquals(sequential.getClass(), parallel.getClass(), "Тип исключения не совпадает");
+            assertEquals(sequential.getMessage(), parallel.getMessage(), "Сообщение исключения не совпадает");
+        }
+        pool.shutdown();
+    }
+
+    private void writeFile(String content) {
+        try (FileWriter fileWriter = new FileWriter(file);
+             BufferedWriter bufferedWriter = new BufferedWriter(fileWriter)) {
+            bufferedWriter.write(content);
+        } catch (IOException e) {
+            throw new ManagerSaveException(String.format("Ошибка при попытке записи в файл: %s" +
+                    ", произошло исключение: %s", file.getPath(), e));
+        }
+    }
+
     private void createInvalidFile() {
         StringBuilder sb = new StringBuilder();
         sb.append("id,type,name,status,description,startTime,duration,endTime,epic");
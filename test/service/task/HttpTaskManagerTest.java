@@ -1,6 +1,9 @@
 package service.task;
 
+import com.sun.net.httpserver.HttpExchange;
+import http_client.KVTaskClient;
 import model.Epic;
+import model.Status;
 import model.Subtask;
 import model.Task;
 import org.apache.logging.log4j.LogManager;
@@ -13,9 +16,14 @@ import server.exceptions.ServerCreateException;
 import service.Managers;
 
 import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class HttpTaskManagerTest extends TaskManagerTest<TaskManager> {
     private TaskManager taskManager;
@@ -147,4 +155,131 @@ public class HttpTaskManagerTest extends TaskManagerTest<TaskManager> {
         assertEquals(expectedPrioritizedTasks, loadedPrioritizedTasks, "Загруженный список задач по " +
                 "приоритету не совпадает с ожидаемым");
     }
+
+    @Test
+    void onlyChangedShardsAreSent() {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < HttpTaskManager.SHARD_SIZE + 10; i++) {
+            tasks.add(new Task("Task" + i, "Description", Status.NEW));
+        }
+        taskManager.addAll(tasks);
+        KVTaskClient client = new KVTaskClient(URI.create("http://localhost:" + KVServer.PORT));
+        String firstShard = client.load("tasks-0");
+        client.put("tasks-0", "[]");
+
+        int lastId = HttpTaskManager.SHARD_SIZE + 9;
+        taskManager.updateTask(new Task(lastId, "Updated", "Description", Status.DONE));
+        taskManager.getTask(1);
+
+        assertEquals("[]", client.load("tasks-0"), "Неизменённая часть была отправлена повторно");
+        assertTrue(client.load("tasks-1").contains("\"Updated\""), "Изменённая часть не отправлена");
+        client.put("tasks-0", firstShard);
+        TaskManager loaded = Managers.getDefault();
+        loaded.load();
+        assertEquals(taskManager.getAllTasks(), loaded.getAllTasks(), "Списки задач не совпадают");
+        assertEquals(List.of(loaded.getTask(1)), loaded.getHistory(), "Неверная история");
+    }
+
+    @Test
+    void removedTasksAreRemovedFromShards() {
+        int taskId = taskManager.addNewTask(task1);
+        int epicId = taskManager.addNewEpic(epic1);
+        subtask1.setEpicId(epicId);
+        taskManager.addNewSubtask(subtask1);
+        taskManager.removeTask(taskId);
+        taskManager.removeAllEpics();
+        int newTaskId = taskManager.addNewTask(task2);
+
+        TaskManager loaded = Managers.getDefault();
+        loaded.load();
+
+        assertEquals(List.of(newTaskId), loaded.getAllTasks().stream().map(Task::getId)
+                .collect(Collectors.toList()), "Неверный список задач");
+        assertTrue(loaded.getAllEpics().isEmpty(), "Эпики не удалены");
+        assertTrue(loaded.getAllSubtasks().isEmpty(), "Подзадачи не удалены");
+    }
+
+    @Test
+    void emptiedShardsAreClearedOnServer() {
+        int epicId = taskManager.addNewEpic(epic1);
+        subtask1.setEpicId(epicId);
+        taskManager.addNewSubtask(subtask1);
+        taskManager.removeAllEpics();
+
+        KVTaskClient client = new KVTaskClient(URI.create("http://localhost:" + KVServer.PORT));
+        int shardId = epicId / HttpTaskManager.SHARD_SIZE;
+        assertEquals("[]", client.load("epics-" + shardId), "Опустевшая часть эпиков осталась на сервере");
+        assertEquals("[]", client.load("subtasks-" + shardId), "Опустевшая часть подзадач осталась на сервере");
+    }
+
+    @Test
+    void asyncSavesReachServerAfterAwaitDurability() {
+        HttpTaskManager asyncManager = new HttpTaskManager(URI.create("http://localhost:" + KVServer.PORT), true);
+        int taskId = asyncManager.addNewTask(task1);
+        for (int i = 0; i < 50; i++) {
+            asyncManager.updateTask(new Task(taskId, "Task" + i, "Description", Status.IN_PROGRESS));
+            asyncManager.getTask(taskId);
+        }
+        asyncManager.addNewTask(task2);
+        asyncManager.awaitDurability();
+
+        TaskManager loaded = Managers.getDefault();
+        loaded.load();
+
+        assertEquals(asyncManager.getAllTasks(), loaded.getAllTasks(), "Списки задач не совпадают");
+        assertEquals("Task49", loaded.getTask(taskId).getName(), "Сохранено не последнее состояние задачи");
+        asyncManager.close();
+    }
+
+    @Test
+    void changesRejectedByServerAreSentAgain() throws IOException {
+        AtomicBoolean isRejecting = startRejectingServer();
+        HttpTaskManager manager = new HttpTaskManager(URI.create("http://localhost:" + KVServer.PORT));
+        int taskId = manager.addNewTask(task1);
+        isRejecting.set(true);
+        manager.updateTask(new Task(taskId, "Updated", "Description", Status.DONE));
+        manager.getTask(taskId);
+        isRejecting.set(false);
+        manager.addNewEpic(epic1);
+
+        TaskManager loaded = Managers.getDefault();
+        loaded.load();
+
+        assertEquals("Updated", loaded.getTask(taskId).getName(), "Отклонённая часть не отправлена повторно");
+        assertEquals(manager.getHistory(), List.of(loaded.getTask(taskId)), "Отклонённая история не отправлена");
+    }
+
+    @Test
+    void awaitDurabilityResendsRejectedAsyncSaves() throws IOException {
+        AtomicBoolean isRejecting = startRejectingServer();
+        HttpTaskManager asyncManager = new HttpTaskManager(URI.create("http://localhost:" + KVServer.PORT), true);
+        isRejecting.set(true);
+        int taskId = asyncManager.addNewTask(task1);
+        asyncManager.getTask(taskId);
+        asyncManager.awaitDurability();
+        isRejecting.set(false);
+        asyncManager.awaitDurability();
+
+        TaskManager loaded = Managers.getDefault();
+        loaded.load();
+
+        assertEquals(asyncManager.getAllTasks(), loaded.getAllTasks(), "Списки задач не совпадают");
+        asyncManager.close();
+    }
+
+    private AtomicBoolean startRejectingServer() throws IOException {
+        kvServer.stop();
+        AtomicBoolean isRejecting = new AtomicBoolean();
+        kvServer = new KVServer() {
+            @Override
+            protected boolean hasAuth(HttpExchange h) {
+                if (isRejecting.get() && h.getRequestURI().getPath().startsWith("/mput")) {
+                    return false;
+                }
+                return super.hasAuth(h);
+            }
+        };
+        kvServer.start();
+        return isRejecting;
+    }
 }
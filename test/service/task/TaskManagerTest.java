@@ -8,6 +8,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -274,6 +275,37 @@ abstract class TaskManagerTest<T extends TaskManager> {
         assertEquals(task2, tasks.get(1), "Задачи не совпадают");
     }
 
+    @Test
+    void getAllTasksReturnsSameSnapshotUntilChange() {
+        taskManager.addNewTask(task1);
+
+        List<Task> snapshot = taskManager.getAllTasks();
+        assertSame(snapshot, taskManager.getAllTasks(), "Список задач копируется при каждом вызове");
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.add(task2),
+                "Возвращённый список задач можно изменить");
+
+        taskManager.addNewTask(task2);
+        List<Task> updated = taskManager.getAllTasks();
+
+        assertEquals(1, snapshot.size(), "Ранее возвращённый список задач изменился");
+        assertEquals(2, updated.size(), "Новый список задач не содержит добавленную задачу");
+    }
+
+    @Test
+    void getPrioritizedTasksReturnsSameSnapshotUntilChange() {
+        taskManager.addNewTask(taskWithTime1);
+
+        List<Task> snapshot = taskManager.getPrioritizedTasks();
+        assertSame(snapshot, taskManager.getPrioritizedTasks(), "Список по приоритету копируется при каждом " +
+                "вызове");
+
+        taskManager.addNewTask(taskWithTime2);
+
+        assertEquals(List.of(taskWithTime1), snapshot, "Ранее возвращённый список по приоритету изменился");
+        assertEquals(List.of(taskWithTime2, taskWithTime1), taskManager.getPrioritizedTasks(),
+                "Новый список по приоритету не содержит добавленную задачу");
+    }
+
     @Test
     void getAllSubtasksWithNoSubtasksAdded() {
         List<Subtask> subtasks = taskManager.getAllSubtasks();
@@ -773,6 +805,51 @@ abstract class TaskManagerTest<T extends TaskManager> {
                 "окончания подзадачи не совпадает с ожидаемым");
     }
 
+    @Test
+    void checkEpicTimeWhenRemovingEarliestAndLatestSubtasks() {
+        int epicId = taskManager.addNewEpic(epic1);
+        subtaskWithTime1.setEpicId(epicId);
+        subtaskWithTime2.setEpicId(epicId);
+        subtaskWithTime3.setEpicId(epicId);
+
+        taskManager.addNewSubtask(subtaskWithTime1);
+        int earliestId = taskManager.addNewSubtask(subtaskWithTime2);
+        int latestId = taskManager.addNewSubtask(subtaskWithTime3);
+
+        taskManager.removeSubtask(earliestId);
+        taskManager.removeSubtask(latestId);
+
+        Epic savedEpic = taskManager.getEpic(epicId);
+        assertEquals(LocalDateTime.of(2023, 7, 4, 17, 30), savedEpic.getStartTime(),
+                "Неверное время начала эпика");
+        assertEquals(40, savedEpic.getDuration(), "Неверная продолжительность эпика");
+        assertEquals(LocalDateTime.of(2023, 7, 4, 18, 10), savedEpic.getEndTime(),
+                "Неверное время окончания эпика");
+    }
+
+    @Test
+    void checkEpicTimeAndStatusWhenUpdatingSubtask() {
+        int epicId = taskManager.addNewEpic(epic1);
+        subtaskWithTime1.setEpicId(epicId);
+        subtaskWithTime2.setEpicId(epicId);
+
+        taskManager.addNewSubtask(subtaskWithTime1);
+        taskManager.addNewSubtask(subtaskWithTime2);
+
+        subtaskWithTime2.setStartTime(LocalDateTime.of(2023, 7, 6, 10, 0));
+        subtaskWithTime2.setDuration(30);
+        subtaskWithTime2.setStatus(Status.DONE);
+        taskManager.updateSubtask(subtaskWithTime2);
+
+        Epic savedEpic = taskManager.getEpic(epicId);
+        assertEquals(LocalDateTime.of(2023, 7, 4, 17, 30), savedEpic.getStartTime(),
+                "Неверное время начала эпика");
+        assertEquals(70, savedEpic.getDuration(), "Неверная продолжительность эпика");
+        assertEquals(LocalDateTime.of(2023, 7, 6, 10, 30), savedEpic.getEndTime(),
+                "Неверное время окончания эпика");
+        assertEquals(Status.IN_PROGRESS, savedEpic.getStatus(), "У эпика статус, отличный от IN_PROGRESS");
+    }
+
     @Test
     void checkTaskPrioritizationWhenUpdatingTask() {
         taskManager.addNewTask(taskWithTime1);
@@ -992,4 +1069,207 @@ abstract class TaskManagerTest<T extends TaskManager> {
         int id = taskManager.addNewTask(taskWithTime2);
         assertNotEquals(-1, id, "Задача не была добавлена");
     }
-}
\ No newline at end of file
+
+    @Test
+    void addAllAddsTasksOfAllTypesAndRejectsIntersectionsWithinBatch() {
+        int epicId = taskManager.addNewEpic(epic1);
+        subtaskWithTime1.setEpicId(epicId);
+        subtaskWithTime2.setEpicId(epicId);
+        Task intersectingTask = new Task("Intersecting task", "Intersecting task description",
+                LocalDateTime.of(2023, 6, 30, 13, 10), 30, Status.NEW);
+
+        List<Integer> ids = taskManager.addAll(List.of(taskWithTime1, epic2, subtaskWithTime1, subtaskWithTime2,
+                intersectingTask));
+
+        assertEquals(5, ids.size(), "Неверное количество результатов");
+        assertEquals(List.of(taskWithTime1.getId(), epic2.getId(), subtaskWithTime1.getId(),
+                subtaskWithTime2.getId(), -1), ids, "Неверные id добавленных задач");
+        assertEquals(List.of(taskWithTime1), taskManager.getAllTasks(), "Неверный список задач");
+        assertEquals(List.of(epic1, epic2), taskManager.getAllEpics(), "Неверный список эпиков");
+        assertEquals(List.of(subtaskWithTime1, subtaskWithTime2), taskManager.getEpicSubtasks(epicId),
+                "Неверный список подзадач эпика");
+        Epic savedEpic = taskManager.getEpic(epicId);
+        assertEquals(subtaskWithTime2.getStartTime(), savedEpic.getStartTime(), "Неверное время начала эпика");
+        assertEquals(subtaskWithTime1.getEndTime(), savedEpic.getEndTime(), "Неверное время окончания эпика");
+    }
+
+    @Test
+    void updateAllUpdatesTasksOfAllTypes() {
+        int epicId = taskManager.addNewEpic(epic1);
+        subtask1.setEpicId(epicId);
+        subtask2.setEpicId(epicId);
+        taskManager.addAll(List.of(task1, subtask1, subtask2));
+        Task updatedTask = new Task(task1.getId(), "Updated task", "Updated task description", Status.DONE);
+        Epic updatedEpic = new Epic(epicId, "Updated epic", "Updated epic description");
+        Subtask updatedSubtask1 = new Subtask(subtask1.getId(), "Updated subtask1", "Description",
+                Status.DONE, epicId);
+        Subtask updatedSubtask2 = new Subtask(subtask2.getId(), "Updated subtask2", "Description",
+                Status.DONE, epicId);
+        Task unknownTask = new Task(1000, "Unknown task", "Unknown task description", Status.NEW);
+
+        List<Boolean> results = taskManager.updateAll(List.of(updatedTask, updatedEpic, updatedSubtask1,
+                updatedSubtask2, unknownTask));
+
+        assertEquals(List.of(true, true, true, true, false), results, "Неверные результаты обновления");
+        assertEquals(updatedTask, taskManager.getTask(task1.getId()), "Задача не была обновлена");
+        assertEquals("Updated epic", taskManager.getEpic(epicId).getName(), "Эпик не был обновлён");
+        assertEquals(Status.DONE, taskManager.getEpic(epicId).getStatus(), "Неверный статус эпика");
+    }
+
+    @Test
+    void removeAllRemovesTasksOfAllTypes() {
+        int epicId = taskManager.addNewEpic(epic1);
+        subtaskWithTime1.setEpicId(epicId);
+        subtaskWithTime2.setEpicId(epicId);
+        List<Integer> ids = taskManager.addAll(List.of(task1, epic2, subtaskWithTime1, subtaskWithTime2));
+
+        List<Boolean> results = taskManager.removeAll(List.of(ids.get(0), ids.get(1), ids.get(2), 1000));
+
+        assertEquals(List.of(true, true, true, false), results, "Неверные результаты удаления");
+        assertTrue(taskManager.getAllTasks().isEmpty(), "Задача не была удалена");
+        assertEquals(List.of(epic1), taskManager.getAllEpics(), "Неверный список эпиков");
+        assertEquals(List.of(subtaskWithTime2), taskManager.getAllSubtasks(), "Неверный список подзадач");
+        Epic savedEpic = taskManager.getEpic(epicId);
+        assertEquals(subtaskWithTime2.getStartTime(), savedEpic.getStartTime(), "Неверное время начала эпика");
+        assertEquals(subtaskWithTime2.getEndTime(), savedEpic.getEndTime(), "Неверное время окончания эпика");
+    }
+
+    @Test
+    void getTasksByStatusFollowsStatusChanges() {
+        int epicId = taskManager.addNewEpic(epic1);
+        subtask1.setEpicId(epicId);
+        taskManager.addNewTask(task1);
+        taskManager.addNewTask(task2);
+        taskManager.addNewSubtask(subtask1);
+
+        assertEquals(List.of(epic1, task1, task2, subtask1), taskManager.getTasksByStatus(Status.NEW),
+                "Неверный список задач со статусом NEW");
+
+        Task updatedTask = new Task(task2.getId(), task2.getName(), task2.getDescription(), Status.IN_PROGRESS);
+        taskManager.updateTask(updatedTask);
+        Subtask updatedSubtask = new Subtask(subtask1.getId(), subtask1.getName(), subtask1.getDescription(),
+                Status.DONE, epicId);
+        taskManager.updateSubtask(updatedSubtask);
+
+        assertEquals(List.of(task1), taskManager.getTasksByStatus(Status.NEW),
+                "Неверный список задач со статусом NEW");
+        assertEquals(List.of(updatedTask), taskManager.getTasksByStatus(Status.IN_PROGRESS),
+                "Неверный список задач со статусом IN_PROGRESS");
+        assertEquals(List.of(epic1, updatedSubtask), taskManager.getTasksByStatus(Status.DONE),
+                "Неверный список задач со статусом DONE");
+
+        taskManager.removeEpic(epicId);
+        assertTrue(taskManager.getTasksByStatus(Status.DONE).isEmpty(), "Удалённые задачи остались в индексе");
+    }
+
+    @Test
+    void getTasksStartingBetweenUsesHalfOpenRange() {
+        int epicId = taskManager.addNewEpic(epic1);
+        subtaskWithTime1.setEpicId(epicId);
+        taskManager.addNewTask(taskWithTime1);
+        taskManager.addNewTask(taskWithTime2);
+        taskManager.addNewTask(task1);
+        taskManager.addNewSubtask(subtaskWithTime1);
+
+        assertEquals(List.of(taskWithTime2, taskWithTime1), taskManager.getTasksStartingBetween(
+                LocalDateTime.of(2023, 6, 30, 12, 0), LocalDateTime.of(2023, 7, 1, 0, 0)),
+                "Неверный список задач в интервале");
+        assertEquals(List.of(taskWithTime2), taskManager.getTasksStartingBetween(
+                LocalDateTime.of(2023, 6, 30, 12, 0), LocalDateTime.of(2023, 6, 30, 13, 0)),
+                "Задача, начинающаяся в конце интервала, попала в результат");
+        assertEquals(List.of(epic1, subtaskWithTime1), taskManager.getTasksStartingBetween(
+                LocalDateTime.of(2023, 7, 4, 0, 0), LocalDateTime.of(2023, 7, 5, 0, 0)),
+                "Неверный список задач в интервале");
+        assertTrue(taskManager.getTasksStartingBetween(LocalDateTime.of(2023, 7, 5, 0, 0),
+                LocalDateTime.of(2023, 7, 4, 0, 0)).isEmpty(), "Для пустого интервала должен быть пустой список");
+    }
+
+    @Test
+    void getTasksEndingBeforeFollowsTimeChanges() {
+        taskManager.addNewTask(taskWithTime1);
+        taskManager.addNewTask(taskWithTime2);
+        taskManager.addNewTask(task1);
+
+        assertEquals(List.of(taskWithTime2, taskWithTime1),
+                taskManager.getTasksEndingBefore(LocalDateTime.of(2023, 6, 30, 14, 0)),
+                "Неверный список задач, заканчивающихся до срока");
+        assertEquals(List.of(taskWithTime2), taskManager.getTasksEndingBefore(LocalDateTime.of(2023, 6, 30, 13, 40)),
+                "Задача, заканчивающаяся ровно в срок, попала в результат");
+
+        Task movedTask = new Task(taskWithTime2.getId(), taskWithTime2.getName(), taskWithTime2.getDescription(),
+                LocalDateTime.of(2023, 7, 1, 10, 0), 60, Status.NEW);
+        taskManager.updateTask(movedTask);
+
+        assertEquals(List.of(taskWithTime1), taskManager.getTasksEndingBefore(LocalDateTime.of(2023, 6, 30, 14, 0)),
+                "Индекс не учёл изменение времени задачи");
+    }
+
+    @Test
+    void getPagesByIdWalkAllEntities() {
+        int epicId = taskManager.addNewEpic(epic1);
+        taskManager.addNewEpic(epic2);
+        subtask1.setEpicId(epicId);
+        subtask2.setEpicId(epicId);
+        subtask3.setEpicId(epicId);
+        taskManager.addAll(List.of(task1, subtask1, task2, subtask2, taskWithTime1, subtask3));
+
+        assertEquals(List.of(task1, task2), taskManager.getTasksPage(0, 2), "Неверная первая страница задач");
+        assertEquals(List.of(taskWithTime1), taskManager.getTasksPage(task2.getId(), 2),
+                "Неверная вторая страница задач");
+        assertTrue(taskManager.getTasksPage(taskWithTime1.getId(), 2).isEmpty(), "Лишняя страница задач");
+
+        taskManager.removeSubtask(subtask2.getId());
+        assertEquals(List.of(subtask3), taskManager.getSubtasksPage(subtask1.getId(), 10),
+                "Неверная страница подзадач после удаления");
+        assertEquals(List.of(epic2), taskManager.getEpicsPage(epicId, 1), "Неверная страница эпиков");
+    }
+
+    @Test
+    void getPrioritizedPagesMatchPrioritizedTasks() {
+        int epicId = taskManager.addNewEpic(epic1);
+        subtaskWithTime1.setEpicId(epicId);
+        subtaskWithTime2.setEpicId(epicId);
+        subtask1.setEpicId(epicId);
+        taskManager.addAll(List.of(task1, taskWithTime1, taskWithTime2, subtaskWithTime1, subtaskWithTime2,
+                subtask1, task2));
+
+        List<Task> pagedTasks = new ArrayList<>();
+        List<Task> page = taskManager.getPrioritizedTasksPage(null, 3);
+        while (!page.isEmpty()) {
+            assertTrue(page.size() <= 3, "Страница больше запрошенного размера");
+            pagedTasks.addAll(page);
+            Task last = page.get(page.size() - 1);
+            page = taskManager.getPrioritizedTasksPage(PrioritizedCursor.after(last), 3);
+        }
+
+        assertEquals(taskManager.getPrioritizedTasks(), pagedTasks,
+                "Постраничный обход не совпадает со списком по приоритету");
+    }
+
+    @Test
+    void removeAllSubtasksResetsEpicsAndIndexes() {
+        int epicId1 = taskManager.addNewEpic(epic1);
+        int epicId2 = taskManager.addNewEpic(epic2);
+        subtaskWithTime1.setEpicId(epicId1);
+        subtaskWithTime2.setEpicId(epicId2);
+        subtaskWithTime2.setStatus(Status.DONE);
+        subtaskWithTime3.setEpicId(epicId2);
+        taskManager.addAll(List.of(taskWithTime1, subtaskWithTime1, subtaskWithTime2, subtaskWithTime3));
+
+        taskManager.removeAllSubtasks();
+
+        for (Epic epic : taskManager.getAllEpics()) {
+            assertEquals(Status.NEW, epic.getStatus(), "Статус эпика не был сброшен");
+            assertNull(epic.getStartTime(), "Время начала эпика не было сброшено");
+            assertTrue(epic.getSubtaskIds().isEmpty(), "Список подзадач эпика не был очищен");
+        }
+        assertEquals(List.of(taskWithTime1, epic1, epic2), taskManager.getPrioritizedTasks(),
+                "Неверный список задач по приоритету");
+        assertTrue(taskManager.getTasksByStatus(Status.DONE).isEmpty(), "Подзадачи остались в индексе статусов");
+        assertEquals(List.of(taskWithTime1), taskManager.getTasksEndingBefore(LocalDateTime.of(2023, 8, 1, 0, 0)),
+                "Подзадачи остались в индексе времени окончания");
+        Subtask subtaskInFreedSlot = new Subtask("Subtask", "Description",
+                subtaskWithTime1.getStartTime(), subtaskWithTime1.getDuration(), Status.NEW, epicId1);
+        assertNotEquals(-1, taskManager.addNewSubtask(subtaskInFreedSlot), "Освободившееся время осталось занятым");
+    }
+}
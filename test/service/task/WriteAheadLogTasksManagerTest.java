@@ -0,0 +1,319 @@
+package service.task;
+
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import model.Task;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import service.task.storage.CompactionPolicy;
+import service.task.storage.FsyncPolicy;
+import service.task.storage.WriteAheadLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTasksManagerTest extends TaskManagerTest<TaskManager> {
+    File file = new File("resources/wal-tasks.csv");
+
+    private FileBackedTasksManager taskManager = new FileBackedTasksManager(file, true);
+
+    @BeforeEach
+    void beforeEach() {
+        super.setTaskManager(taskManager);
+    }
+
+    @AfterEach
+    void closeManager() {
+        taskManager.close();
+    }
+
+    @Test
+    void operationsAreAppendedToLogWithoutRewritingSnapshot() throws IOException {
+        String snapshot = Files.readString(file.toPath());
+
+        int taskId = taskManager.addNewTask(task1);
+        taskManager.getTask(taskId);
+        taskManager.removeTask(taskId);
+
+        assertEquals(snapshot, Files.readString(file.toPath()), "Снимок был перезаписан");
+        List<String> records = WriteAheadLog.readRecords(FileBackedTasksManager.logFileFor(file));
+        assertEquals(List.of("PUT," + taskId + ",TASK,Test Task1,NEW,Test Task1 description,null,0,null",
+                "DEL," + taskId), records, "Неверные записи журнала");
+        List<String> historyRecords = WriteAheadLog.readRecords(FileBackedTasksManager.historyFileFor(file));
+        assertEquals(List.of("VIEW," + taskId, "DEL," + taskId), historyRecords,
+                "Неверные записи журнала истории");
+    }
+
+    @Test
+    void tornLogTailIsDroppedOnLoading() throws IOException {
+        int task1Id = taskManager.addNewTask(task1);
+        int task2Id = taskManager.addNewTask(task2);
+        taskManager.getTask(task1Id);
+        taskManager.close();
+        Files.writeString(FileBackedTasksManager.logFileFor(file).toPath(), "PUT,3,TASK,Test",
+                StandardOpenOption.APPEND);
+        Files.writeString(FileBackedTasksManager.historyFileFor(file).toPath(), "VIEW,",
+                StandardOpenOption.APPEND);
+
+        taskManager = FileBackedTasksManager.loadFromFile(file);
+        taskManager.getTask(task2Id);
+        taskManager.close();
+        FileBackedTasksManager loaded = FileBackedTasksManager.loadFromFile(file);
+
+        assertEquals(List.of(task1Id, task2Id), loaded.getAllTasks().stream().map(Task::getId)
+                .collect(Collectors.toList()), "Неверный список задач");
+        assertEquals(List.of(task1Id, task2Id), loaded.getHistory().stream().map(Task::getId)
+                .collect(Collectors.toList()), "Неверная история");
+        loaded.close();
+    }
+
+    @Test
+    void viewsDoNotGrowTaskLog() {
+        int taskId = taskManager.addNewTask(task1);
+        long size = FileBackedTasksManager.logFileFor(file).length();
+
+        for (int i = 0; i < 100; i++) {
+            taskManager.getTask(taskId);
+        }
+
+        assertEquals(size, FileBackedTasksManager.logFileFor(file).length(), "Просмотры попали в журнал задач");
+    }
+
+    @Test
+    void historyLogIsCompactedAndReplayedAfterRemoveAll() {
+        int task1Id = taskManager.addNewTask(task1);
+        int task2Id = taskManager.addNewTask(task2);
+        int epicId = taskManager.addNewEpic(epic1);
+        for (int i = 0; i < 10_000; i++) {
+            taskManager.getTask(i % 2 == 0 ? task1Id : task2Id);
+        }
+        taskManager.getEpic(epicId);
+        taskManager.removeAllEpics();
+        taskManager.getTask(task1Id);
+        taskManager.close();
+
+        assertTrue(FileBackedTasksManager.historyFileFor(file).length() < 128 * 1024,
+                "Журнал истории не был свёрнут");
+        FileBackedTasksManager loaded = FileBackedTasksManager.loadFromFile(file);
+        assertEquals(taskManager.getHistory(), loaded.getHistory(), "Истории не совпадают");
+        assertEquals(List.of(task2Id, task1Id), loaded.getHistory().stream().map(Task::getId)
+                .collect(Collectors.toList()), "Неверная история");
+        loaded.close();
+    }
+
+    @Test
+    void loadingReplaysLogOnTopOfSnapshot() {
+        int task1Id = taskManager.addNewTask(taskWithTime1);
+        int task2Id = taskManager.addNewTask(taskWithTime2);
+        int epicId = taskManager.addNewEpic(epic1);
+        subtaskWithTime1.setEpicId(epicId);
+        subtaskWithTime2.setEpicId(epicId);
+        int subtask1Id = taskManager.addNewSubtask(subtaskWithTime1);
+        int subtask2Id = taskManager.addNewSubtask(subtaskWithTime2);
+        taskManager.updateSubtask(new Subtask(subtask1Id, subtaskWithTime1.getName(),
+                subtaskWithTime1.getDescription(), subtaskWithTime1.getStartTime(), subtaskWithTime1.getDuration(),
+                Status.DONE, epicId));
+        taskManager.removeTask(task2Id);
+        taskManager.getSubtask(subtask2Id);
+        taskManager.getTask(task1Id);
+        taskManager.getEpic(epicId);
+        taskManager.getSubtask(subtask2Id);
+        taskManager.close();
+
+        FileBackedTasksManager loaded = FileBackedTasksManager.loadFromFile(file);
+
+        assertEquals(taskManager.getAllTasks(), loaded.getAllTasks(), "Списки задач не совпадают");
+        assertEquals(taskManager.getAllEpics(), loaded.getAllEpics(), "Списки эпиков не совпадают");
+        assertEquals(taskManager.getAllSubtasks(), loaded.getAllSubtasks(), "Списки подзадач не совпадают");
+        assertEquals(taskManager.getHistory(), loaded.getHistory(), "Истории не совпадают");
+        assertEquals(taskManager.getPrioritizedTasks(), loaded.getPrioritizedTasks(),
+                "Списки задач по приоритету не совпадают");
+        assertEquals(Status.IN_PROGRESS, loaded.getEpic(epicId).getStatus(), "Неверный статус эпика");
+        assertEquals(List.of(subtask1Id, subtask2Id), loaded.getEpic(epicId).getSubtaskIds(),
+                "Неверный список подзадач эпика");
+        loaded.close();
+    }
+
+    @Test
+    void loadingReplaysRemovalOfAllTasks() {
+        taskManager.addNewTask(task1);
+        int epic1Id = taskManager.addNewEpic(epic1);
+        int epic2Id = taskManager.addNewEpic(epic2);
+        subtask1.setEpicId(epic1Id);
+        subtask2.setEpicId(epic2Id);
+        int subtask1Id = taskManager.addNewSubtask(subtask1);
+        taskManager.addNewSubtask(subtask2);
+        taskManager.getSubtask(subtask1Id);
+        taskManager.getEpic(epic2Id);
+        taskManager.removeAllTasks();
+        taskManager.removeAllSubtasks();
+        taskManager.close();
+
+        FileBackedTasksManager loaded = FileBackedTasksManager.loadFromFile(file);
+
+        assertTrue(loaded.getAllTasks().isEmpty(), "Задачи не были удалены");
+        assertTrue(loaded.getAllSubtasks().isEmpty(), "Подзадачи не были удалены");
+        assertEquals(List.of(epic1, epic2), loaded.getAllEpics(), "Списки эпиков не совпадают");
+        assertTrue(loaded.getEpic(epic1Id).getSubtaskIds().isEmpty(), "У эпика остались подзадачи");
+        assertEquals(List.of(epic2, epic1), loaded.getHistory(), "Истории не совпадают");
+
+        loaded.removeAllEpics();
+        loaded.close();
+        FileBackedTasksManager reloaded = FileBackedTasksManager.loadFromFile(file);
+        assertTrue(reloaded.getAllEpics().isEmpty(), "Эпики не были удалены");
+        assertTrue(reloaded.getHistory().isEmpty(), "История не была очищена");
+        reloaded.close();
+    }
+
+    @Test
+    void loadedManagerKeepsAppendingToLog() {
+        int taskId = taskManager.addNewTask(task1);
+        taskManager.close();
+
+        FileBackedTasksManager loaded = FileBackedTasksManager.loadFromFile(file);
+        int newTaskId = loaded.addNewTask(task2);
+        loaded.close();
+
+        assertNotEquals(taskId, newTaskId, "Id новой задачи совпадает с id загруженной");
+        FileBackedTasksManager reloaded = FileBackedTasksManager.loadFromFile(file);
+        assertEquals(List.of(task1, task2), reloaded.getAllTasks(), "Списки задач не совпадают");
+        reloaded.close();
+    }
+
+    @Test
+    void loadingWithoutPolicyUsesDefaultPolicy() {
+        taskManager.addNewTask(task1);
+        taskManager.close();
+
+        FileBackedTasksManager loaded = FileBackedTasksManager.loadFromFile(file, null);
+        loaded.addNewTask(task2);
+        loaded.close();
+
+        FileBackedTasksManager reloaded = FileBackedTasksManager.loadFromFile(file);
+        assertEquals(List.of(task1, task2), reloaded.getAllTasks(), "Списки задач не совпадают");
+        reloaded.close();
+    }
+
+    @Test
+    void parallelLoadingUsesGivenLogSettings() {
+        for (int i = 0; i < 25; i++) {
+            taskManager.addNewTask(new Task("Task" + i, "Description", Status.NEW));
+        }
+        taskManager.close();
+        ForkJoinPool pool = new ForkJoinPool(2);
+
+        FileBackedTasksManager loaded = FileBackedTasksManager.loadFromFileInParallel(file, pool,
+                new CompactionPolicy(1024 * 1024, 10), FsyncPolicy.always(), true);
+        pool.shutdown();
+        loaded.awaitCompaction();
+
+        assertTrue(WriteAheadLog.readRecords(FileBackedTasksManager.logFileFor(file)).size() < 10,
+                "Журнал не сжат по переданным порогам");
+        assertEquals(taskManager.getAllTasks(), loaded.getAllTasks(), "Списки задач не совпадают");
+        loaded.close();
+    }
+
+    @Test
+    void snapshotModeRemovesStaleLog() {
+        taskManager.addNewTask(task1);
+        taskManager.close();
+
+        new FileBackedTasksManager(file);
+
+        assertFalse(FileBackedTasksManager.logFileFor(file).exists(), "Журнал не был удалён");
+        assertTrue(FileBackedTasksManager.loadFromFile(file).getAllTasks().isEmpty(),
+                "Загружены задачи из устаревшего журнала");
+    }
+
+    @Test
+    void logIsCompactedIntoSnapshotAfterThreshold() {
+        taskManager.close();
+        taskManager = new FileBackedTasksManager(file, new CompactionPolicy(1024 * 1024, 10));
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            ids.add(taskManager.addNewTask(new Task("Task" + i, "Description", Status.NEW)));
+            taskManager.getTask(ids.get(0));
+        }
+        taskManager.awaitCompaction();
+
+        assertFalse(FileBackedTasksManager.segmentFileFor(file).exists(), "Сегмент журнала не был удалён");
+        assertTrue(Files.exists(FileBackedTasksManager.logFileFor(file).toPath()), "Журнал не найден");
+        taskManager.close();
+        FileBackedTasksManager loaded = FileBackedTasksManager.loadFromFile(file);
+        assertEquals(taskManager.getAllTasks(), loaded.getAllTasks(), "Списки задач не совпадают");
+        assertEquals(taskManager.getHistory(), loaded.getHistory(), "Истории не совпадают");
+        loaded.close();
+    }
+
+    @Test
+    void compactionKeepsLogBounded() throws IOException {
+        taskManager.close();
+        taskManager = new FileBackedTasksManager(file, new CompactionPolicy(4096, 1_000_000));
+        int taskId = taskManager.addNewTask(task1);
+        for (int i = 0; i < 2_000; i++) {
+            taskManager.updateTask(new Task(taskId, "Task" + i, "Description", Status.IN_PROGRESS));
+            if (i % 100 == 0) {
+                taskManager.awaitCompaction();
+            }
+        }
+        taskManager.awaitCompaction();
+
+        assertTrue(Files.size(FileBackedTasksManager.logFileFor(file).toPath()) < 4096 + 100 * 64,
+                "Журнал не был сокращён");
+        taskManager.close();
+        FileBackedTasksManager loaded = FileBackedTasksManager.loadFromFile(file);
+        assertEquals("Task1999", loaded.getTask(taskId).getName(), "Неверное имя задачи");
+        loaded.close();
+    }
+
+    @Test
+    void loadingAppliesSegmentLeftAfterInterruptedCompaction() throws IOException {
+        int task1Id = taskManager.addNewTask(task1);
+        taskManager.close();
+        Files.move(FileBackedTasksManager.logFileFor(file).toPath(),
+                FileBackedTasksManager.segmentFileFor(file).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        FileBackedTasksManager withSegment = FileBackedTasksManager.loadFromFile(file);
+        int task2Id = withSegment.addNewTask(task2);
+        withSegment.getTask(task1Id);
+        withSegment.close();
+
+        assertFalse(FileBackedTasksManager.segmentFileFor(file).exists(), "Сегмент журнала не был удалён");
+        FileBackedTasksManager loaded = FileBackedTasksManager.loadFromFile(file);
+        assertEquals(List.of(task1, task2), loaded.getAllTasks(), "Списки задач не совпадают");
+        assertEquals(List.of(task1), loaded.getHistory(), "Истории не совпадают");
+        assertNotEquals(task1Id, task2Id, "Id новой задачи совпадает с id загруженной");
+        loaded.close();
+    }
+
+    @Test
+    void asyncWritesAreRecoveredAfterAwaitDurability() throws IOException {
+        taskManager.close();
+        taskManager = new FileBackedTasksManager(file, CompactionPolicy.DEFAULT, FsyncPolicy.always(), true);
+        for (int i = 0; i < 500; i++) {
+            int id = taskManager.addNewTask(new Task("Task" + i, "Description", Status.NEW));
+            taskManager.getTask(id);
+        }
+        taskManager.awaitDurability();
+
+        assertEquals(500, WriteAheadLog.readRecords(FileBackedTasksManager.logFileFor(file)).size(),
+                "Не все записи попали в журнал");
+        assertEquals(500, WriteAheadLog.readRecords(FileBackedTasksManager.historyFileFor(file)).size(),
+                "Не все просмотры попали в журнал истории");
+        taskManager.close();
+        FileBackedTasksManager loaded = FileBackedTasksManager.loadFromFile(file);
+        assertEquals(taskManager.getAllTasks(), loaded.getAllTasks(), "Списки задач не совпадают");
+        assertEquals(taskManager.getHistory(), loaded.getHistory(), "Истории не совпадают");
+        loaded.close();
+    }
+}
@@ -0,0 +1,59 @@
+package service.task.index;
+
+import model.Status;
+import model.Task;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PrioritizedTaskIndexTest {
+    private PrioritizedTaskIndex index;
+    private Task early;
+    private Task late;
+    private Task withoutTime;
+
+    @BeforeEach
+    void beforeEach() {
+        index = new PrioritizedTaskIndex();
+        early = new Task(1, "Early", "Description", LocalDateTime.of(2023, 7, 1, 10, 0), 30, Status.NEW);
+        late = new Task(2, "Late", "Description", LocalDateTime.of(2023, 7, 1, 12, 0), 30, Status.NEW);
+        withoutTime = new Task(3, "Without time", "Description", Status.NEW);
+        index.add(withoutTime);
+        index.add(late);
+        index.add(early);
+    }
+
+    @Test
+    void tasksAreOrderedByStartTimeWithNullsLast() {
+        assertEquals(List.of(early, late, withoutTime), index.getTasks(), "Неверный порядок задач");
+    }
+
+    @Test
+    void reindexFindsTaskWhoseStartTimeWasChangedInPlace() {
+        early.setStartTime(LocalDateTime.of(2023, 7, 1, 13, 0));
+
+        assertTrue(index.reindex(early), "Задача не найдена в индексе");
+        assertEquals(List.of(late, early, withoutTime), index.getTasks(), "Неверный порядок задач");
+        assertEquals(3, index.size(), "Старая запись задачи осталась в индексе");
+    }
+
+    @Test
+    void reindexIgnoresUnknownTask() {
+        Task unknown = new Task(4, "Unknown", "Description", Status.NEW);
+
+        assertFalse(index.reindex(unknown), "Отсутствующая задача была переиндексирована");
+        assertFalse(index.contains(4), "Отсутствующая задача попала в индекс");
+    }
+
+    @Test
+    void removeUsesStoredKey() {
+        late.setStartTime(null);
+
+        assertTrue(index.remove(late.getId()), "Задача не удалена");
+        assertEquals(List.of(early, withoutTime), index.getTasks(), "Неверный порядок задач");
+    }
+}
@@ -0,0 +1,123 @@
+package service.task.index;
+
+import model.Status;
+import model.Task;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimeSlotIndexTest {
+    private static final LocalDateTime BASE = LocalDateTime.of(2023, 7, 1, 0, 0);
+    private TimeSlotIndex index;
+
+    @BeforeEach
+    void beforeEach() {
+        index = new TimeSlotIndex();
+    }
+
+    @Test
+    void emptyIndexHasNoIntersections() {
+        assertFalse(index.intersectsWith(task(1, 10, 30)), "Пустой индекс нашёл пересечение");
+    }
+
+    @Test
+    void taskWithoutStartTimeIsNotIndexed() {
+        index.add(new Task(1, "Task", "Description", Status.NEW));
+
+        assertEquals(0, index.size(), "Задача без времени начала попала в индекс");
+        assertFalse(index.intersectsWith(new Task(2, "Task", "Description", Status.NEW)),
+                "Задача без времени начала пересекается с другой задачей");
+    }
+
+    @Test
+    void findsIntersectionWithNeighbours() {
+        index.add(task(1, 0, 30));
+        index.add(task(2, 60, 30));
+
+        assertTrue(index.intersectsWith(task(3, 20, 20)), "Не найдено пересечение с предыдущим интервалом");
+        assertTrue(index.intersectsWith(task(3, 40, 30)), "Не найдено пересечение со следующим интервалом");
+        assertTrue(index.intersectsWith(task(3, -10, 200)), "Не найдено пересечение с вложенными интервалами");
+        assertFalse(index.intersectsWith(task(3, 30, 30)), "Найдено пересечение у смежных интервалов");
+    }
+
+    @Test
+    void findsIntersectionEndingTogether() {
+        index.add(task(1, 30, 10));
+
+        assertTrue(index.intersectsWith(task(2, 0, 40)),
+                "Не найдено пересечение с интервалом, заканчивающимся одновременно");
+    }
+
+    @Test
+    void ignoresSlotOfTheSameTask() {
+        index.add(task(1, 0, 30));
+
+        assertFalse(index.intersectsWith(task(1, 10, 30)), "Задача пересекается сама с собой");
+    }
+
+    @Test
+    void removedSlotIsFree() {
+        index.add(task(1, 0, 30));
+        index.remove(1);
+
+        assertFalse(index.intersectsWith(task(2, 0, 30)), "Удалённый интервал остался в индексе");
+        assertEquals(0, index.size(), "Удалённый интервал остался в индексе");
+    }
+
+    @Test
+    void readdingTaskReplacesItsSlot() {
+        index.add(task(1, 0, 30));
+        index.add(task(1, 100, 30));
+
+        assertEquals(1, index.size(), "Старый интервал задачи остался в индексе");
+        assertFalse(index.intersectsWith(task(2, 0, 30)), "Старый интервал задачи остался в индексе");
+        assertTrue(index.intersectsWith(task(2, 110, 30)), "Новый интервал задачи не попал в индекс");
+    }
+
+    @Test
+    void matchesLinearScan() {
+        Random random = new Random(42);
+        List<Task> admitted = new ArrayList<>();
+
+        for (int i = 1; i <= 5_000; i++) {
+            Task candidate;
+            boolean isUpdate = !admitted.isEmpty() && random.nextInt(4) == 0;
+            if (isUpdate) {
+                Task existing = admitted.get(random.nextInt(admitted.size()));
+                candidate = task(existing.getId(), random.nextInt(2_000), random.nextInt(20));
+            } else {
+                candidate = task(i, random.nextInt(2_000), random.nextInt(20));
+            }
+
+            boolean expected = linearScan(admitted, candidate);
+            assertEquals(expected, index.intersectsWith(candidate),
+                    "Результат индекса отличается от полного перебора для " + candidate);
+
+            if (!expected) {
+                admitted.removeIf(task -> task.getId().equals(candidate.getId()));
+                admitted.add(candidate);
+                index.add(candidate);
+            }
+        }
+    }
+
+    private static boolean linearScan(List<Task> tasks, Task task) {
+        for (Task existing : tasks) {
+            if (!existing.getId().equals(task.getId())
+                    && (existing.intersectsWith(task) || task.intersectsWith(existing))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Task task(int id, int startMinute, int duration) {
+        return new Task(id, "Task" + id, "Description", BASE.plusMinutes(startMinute), duration, Status.NEW);
+    }
+}
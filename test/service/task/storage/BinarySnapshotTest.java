@@ -0,0 +1,116 @@
+package service.task.storage;
+
+import model.Epic;
+import model.Status;
+import model.Subtask;
+import model.Task;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import service.task.exceptions.ManagerSaveException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinarySnapshotTest {
+    private final File file = new File("resources/snapshot.bin");
+
+    @AfterEach
+    void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    void snapshotIsReadBackUnchanged() {
+        Task task = new Task(1, "Задача", "Описание", LocalDateTime.of(2023, 7, 1, 10, 15), 30, Status.NEW);
+        Task taskWithSeconds = new Task(2, "Task", null, LocalDateTime.of(1969, 12, 31, 23, 59, 30, 5), 1,
+                Status.DONE);
+        Task taskWithoutTime = new Task(3, null, "Description", Status.IN_PROGRESS);
+        Epic epic = new Epic(4, "Epic", "Description", LocalDateTime.of(2023, 7, 2, 0, 0), 90,
+                LocalDateTime.of(2023, 7, 3, 0, 0), Status.IN_PROGRESS);
+        Subtask subtask1 = new Subtask(5, "Subtask1", "Description", LocalDateTime.of(2023, 7, 2, 0, 0), 60,
+                Status.DONE, 4);
+        Subtask subtask2 = new Subtask(6, "Subtask2", "Description", LocalDateTime.of(2023, 7, 3, 0, 0), 0,
+                Status.NEW, 4);
+        epic.addSubtaskId(5);
+        epic.addSubtaskId(6);
+
+        BinarySnapshot.write(file, List.of(task, taskWithSeconds, taskWithoutTime), List.of(epic),
+                List.of(subtask1, subtask2), List.of(6, 1, 4));
+        Snapshot snapshot = BinarySnapshot.read(file);
+
+        assertEquals(List.of(task, taskWithSeconds, taskWithoutTime), List.copyOf(snapshot.getIdToTask().values()),
+                "Задачи не совпадают");
+        assertEquals(List.of(subtask1, subtask2), List.copyOf(snapshot.getIdToSubtask().values()),
+                "Подзадачи не совпадают");
+        Epic loadedEpic = snapshot.getIdToEpic().get(4);
+        assertEquals(epic, loadedEpic, "Эпики не совпадают");
+        assertEquals(epic.getEndTime(), loadedEpic.getEndTime(), "Время окончания эпика не совпадает");
+        assertEquals(List.of(5, 6), loadedEpic.getSubtaskIds(), "Неверный список подзадач эпика");
+        assertEquals(4, snapshot.getIdToSubtask().get(5).getEpicId(), "Неверный эпик подзадачи");
+        assertEquals(List.of(6, 1, 4), snapshot.getHistoryIds(), "Истории не совпадают");
+    }
+
+    @Test
+    void stringsLongerThanBufferAreSupported() {
+        char[] chars = new char[200_000];
+        Arrays.fill(chars, 'ж');
+        Task task = new Task(1, new String(chars), "Description", Status.NEW);
+
+        BinarySnapshot.write(file, List.of(task), List.of(), List.of(), List.of());
+
+        assertEquals(task, BinarySnapshot.read(file).getIdToTask().get(1), "Задачи не совпадают");
+    }
+
+    @Test
+    void truncatedFileIsRejected() throws IOException {
+        BinarySnapshot.write(file, List.of(new Task(1, "Task", "Description", Status.NEW)), List.of(), List.of(),
+                List.of(1));
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length - 3));
+
+        ManagerSaveException exception = assertThrows(ManagerSaveException.class, () -> BinarySnapshot.read(file));
+        assertEquals("Неверный формат файла: " + file.getPath() + ". Неожиданный конец файла",
+                exception.getMessage(), "Неверное сообщение исключения");
+    }
+
+    @Test
+    void corruptedFileIsRejected() throws IOException {
+        BinarySnapshot.write(file, List.of(new Task(1, "Task", "Description", Status.NEW)), List.of(), List.of(),
+                List.of(1));
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        bytes[bytes.length - 8] ^= 0x20;
+        Files.write(file.toPath(), bytes);
+
+        ManagerSaveException exception = assertThrows(ManagerSaveException.class, () -> BinarySnapshot.read(file));
+        assertEquals("Неверный формат файла: " + file.getPath() + ". Контрольная сумма не совпадает",
+                exception.getMessage(), "Неверное сообщение исключения");
+    }
+
+    @Test
+    void unknownStatusIsRejected() throws IOException {
+        BinarySnapshot.write(file, List.of(new Task(1, "Task", "Description", Status.NEW)), List.of(), List.of(),
+                List.of());
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        int statusOffset = 8;
+        assertEquals(Status.NEW.ordinal() + 1, bytes[statusOffset], "Неверное смещение статуса");
+        bytes[statusOffset] = 9;
+        Files.write(file.toPath(), bytes);
+
+        ManagerSaveException exception = assertThrows(ManagerSaveException.class, () -> BinarySnapshot.read(file));
+        assertEquals("Неверный формат файла: " + file.getPath() + ". Неизвестный статус 9",
+                exception.getMessage(), "Неверное сообщение исключения");
+    }
+
+    @Test
+    void fileWithoutHeaderIsRejected() throws IOException {
+        Files.writeString(file.toPath(), "id,type,name,status,description,startTime,duration,endTime,epic\n");
+
+        assertThrows(ManagerSaveException.class, () -> BinarySnapshot.read(file));
+    }
+}
@@ -0,0 +1,130 @@
+package service.task.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+    private final File file = new File("resources/test.log");
+    private final File segment = new File("resources/test.log.1");
+
+    @BeforeEach
+    void deleteFiles() {
+        file.delete();
+        segment.delete();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        deleteFiles();
+    }
+
+    @Test
+    void operationRecordsAreWrittenOnlyAfterFlush() {
+        WriteAheadLog log = new WriteAheadLog(file, true);
+        log.append("PUT,1");
+        log.append("PUT,2");
+
+        assertTrue(WriteAheadLog.readRecords(file).isEmpty(), "Записи попали в файл до flush");
+        log.flush();
+        assertEquals(List.of("PUT,1", "PUT,2"), WriteAheadLog.readRecords(file), "Неверные записи журнала");
+        assertEquals(2, log.getRecordCount(), "Неверное количество записей");
+        assertEquals(30, log.getSize(), "Неверный размер журнала");
+        log.close();
+    }
+
+    @Test
+    void asyncLogWritesAllOperationsBeforeDurabilityIsReported() {
+        WriteAheadLog log = new WriteAheadLog(file, true, 0, FsyncPolicy.every(50), true);
+        for (int i = 0; i < 1_000; i++) {
+            log.append("VIEW," + i);
+            log.flush();
+        }
+        log.awaitDurability();
+
+        List<String> records = WriteAheadLog.readRecords(file);
+        assertEquals(1_000, records.size(), "Не все записи попали в журнал");
+        assertEquals("VIEW,999", records.get(999), "Нарушен порядок записей");
+        log.close();
+    }
+
+    @Test
+    void rotationMovesWrittenRecordsToSegment() {
+        WriteAheadLog log = new WriteAheadLog(file, true, 0, FsyncPolicy.never(), true);
+        log.append("PUT,1");
+        log.flush();
+        log.rotateTo(segment);
+        log.append("PUT,2");
+        log.flush();
+        log.rotateTo(segment);
+        log.append("PUT,3");
+        log.close();
+
+        assertEquals(List.of("PUT,1", "PUT,2"), WriteAheadLog.readRecords(segment), "Неверные записи сегмента");
+        assertEquals(List.of("PUT,3"), WriteAheadLog.readRecords(file), "Неверные записи журнала");
+        assertEquals(1, log.getRecordCount(), "Неверное количество записей");
+    }
+
+    @Test
+    void tornTailIsTruncatedOnRecovery() throws IOException {
+        WriteAheadLog log = new WriteAheadLog(file, true);
+        log.append("PUT,1");
+        log.append("PUT,2");
+        log.close();
+        long validLength = file.length();
+        Files.writeString(file.toPath(), "PUT,3,TASK,Недописанн", StandardOpenOption.APPEND);
+
+        List<String> records = new ArrayList<>();
+        int count = WriteAheadLog.recover(file, (record, index) -> records.add(record));
+
+        assertEquals(2, count, "Неверное количество записей");
+        assertEquals(List.of("PUT,1", "PUT,2"), records, "Неверные записи журнала");
+        assertEquals(validLength, file.length(), "Недописанная запись не отрезана");
+        log = new WriteAheadLog(file, false, count);
+        log.append("PUT,4");
+        log.close();
+        assertEquals(List.of("PUT,1", "PUT,2", "PUT,4"), WriteAheadLog.readRecords(file),
+                "Неверные записи журнала");
+    }
+
+    @Test
+    void recordWithWrongChecksumAndEverythingAfterItAreDropped() throws IOException {
+        WriteAheadLog log = new WriteAheadLog(file, true);
+        log.append("PUT,1");
+        log.append("PUT,2");
+        log.append("PUT,3");
+        log.close();
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file.toPath(), bytes);
+
+        assertEquals(List.of("PUT,1"), WriteAheadLog.readRecords(file), "Неверные записи журнала");
+        assertEquals(1, WriteAheadLog.recover(file, (record, index) -> {
+        }), "Неверное количество записей");
+        assertEquals(bytes.length / 3, file.length(), "Повреждённый хвост не отрезан");
+    }
+
+    @Test
+    void recordsWithoutChecksumAreTreatedAsTornTail() throws IOException {
+        Files.writeString(file.toPath(), "PUT,1\nVIEW,1\n");
+
+        assertEquals(List.of(), WriteAheadLog.readRecords(file), "Записи без контрольной суммы прочитаны");
+        assertEquals(0, WriteAheadLog.recover(file, (record, index) -> {
+        }), "Неверное количество записей");
+        assertEquals(0, file.length(), "Записи без контрольной суммы не отрезаны");
+    }
+
+    @Test
+    void intervalMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> FsyncPolicy.every(0));
+    }
+}